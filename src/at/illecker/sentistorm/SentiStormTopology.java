@@ -17,16 +17,21 @@
 package at.illecker.sentistorm;
 
 import java.util.Arrays;
-import java.util.TreeMap;
 
 import at.illecker.sentistorm.bolt.FeatureGenerationBolt;
 import at.illecker.sentistorm.bolt.POSTaggerBolt;
+import at.illecker.sentistorm.bolt.PipelineBolt;
 import at.illecker.sentistorm.bolt.PreprocessorBolt;
+import at.illecker.sentistorm.bolt.SVMBatchBolt;
 import at.illecker.sentistorm.bolt.SVMBolt;
 import at.illecker.sentistorm.bolt.TokenizerBolt;
+import at.illecker.sentistorm.commons.ArkTaggedToken;
 import at.illecker.sentistorm.commons.Configuration;
+import at.illecker.sentistorm.commons.featurevector.SparseVector;
+import at.illecker.sentistorm.commons.util.io.kyro.SparseVectorSerializer;
 import at.illecker.sentistorm.commons.util.io.kyro.TaggedTokenSerializer;
 import at.illecker.sentistorm.spout.DatasetSpout;
+import at.illecker.sentistorm.spout.LoadGeneratorSpout;
 import at.illecker.sentistorm.spout.TwitterStreamSpout;
 import backtype.storm.Config;
 import backtype.storm.StormSubmitter;
@@ -34,8 +39,6 @@ import backtype.storm.topology.IRichSpout;
 import backtype.storm.topology.TopologyBuilder;
 import cmu.arktweetnlp.Tagger.TaggedToken;
 
-import com.esotericsoftware.kryo.serializers.DefaultSerializers.TreeMapSerializer;
-
 public class SentiStormTopology {
   public static final String TOPOLOGY_NAME = "senti-storm-topology";
 
@@ -73,7 +76,40 @@ public class SentiStormTopology {
     // Create Spout
     IRichSpout spout;
     String spoutID = "";
-    if (consumerKey.isEmpty()) {
+    String replayFile = (String) Configuration
+        .get("sentistorm.spout.replay.file");
+    if (Configuration.get("sentistorm.spout.load.generator", false)) {
+      if (Configuration.get("sentistorm.spout.startup.timeout.ms") != null) {
+        conf.put(LoadGeneratorSpout.CONF_STARTUP_TIMEOUT_MS,
+            (Integer) Configuration.get("sentistorm.spout.startup.timeout.ms"));
+      }
+      if (Configuration.get("sentistorm.spout.startup.sleep.ms") != null) {
+        conf.put(LoadGeneratorSpout.CONF_STARTUP_SLEEP_MS,
+            (Integer) Configuration.get("sentistorm.spout.startup.sleep.ms"));
+      }
+      conf.put(LoadGeneratorSpout.CONF_DISTRIBUTION,
+          Configuration.get("sentistorm.spout.load.distribution", "constant"));
+      conf.put(LoadGeneratorSpout.CONF_RATE,
+          Configuration.get("sentistorm.spout.load.rate", 1000));
+      conf.put(LoadGeneratorSpout.CONF_RATE_STEP,
+          Configuration.get("sentistorm.spout.load.rate.step", 0));
+      conf.put(LoadGeneratorSpout.CONF_RATE_STEP_MS,
+          Configuration.get("sentistorm.spout.load.rate.step.ms", 60000));
+      conf.put(LoadGeneratorSpout.CONF_RATE_MAX,
+          Configuration.get("sentistorm.spout.load.rate.max", 0));
+      conf.put(LoadGeneratorSpout.CONF_BURST_SIZE,
+          Configuration.get("sentistorm.spout.load.burst.size", 100));
+      conf.put(LoadGeneratorSpout.CONF_MAX_REPLAYS,
+          Configuration.get("sentistorm.spout.load.max.replays", 0));
+      System.out.println("LoadGeneratorSpout using "
+          + conf.get(LoadGeneratorSpout.CONF_DISTRIBUTION) + " arrivals");
+      spout = new LoadGeneratorSpout();
+      spoutID = LoadGeneratorSpout.ID;
+    } else if (consumerKey.isEmpty() && (replayFile == null)) {
+      if (Configuration.get("sentistorm.spout.startup.timeout.ms") != null) {
+        conf.put(DatasetSpout.CONF_STARTUP_TIMEOUT_MS,
+            (Integer) Configuration.get("sentistorm.spout.startup.timeout.ms"));
+      }
       if (Configuration.get("sentistorm.spout.startup.sleep.ms") != null) {
         conf.put(DatasetSpout.CONF_STARTUP_SLEEP_MS,
             (Integer) Configuration.get("sentistorm.spout.startup.sleep.ms"));
@@ -86,26 +122,51 @@ public class SentiStormTopology {
         conf.put(DatasetSpout.CONF_TUPLE_SLEEP_NS,
             (Integer) Configuration.get("sentistorm.spout.tuple.sleep.ns"));
       }
+      conf.put(DatasetSpout.CONF_RELIABLE,
+          Configuration.get("sentistorm.spout.reliable", false));
+      conf.put(DatasetSpout.CONF_MAX_REPLAYS,
+          Configuration.get("sentistorm.spout.max.replays", 3));
       spout = new DatasetSpout();
       spoutID = DatasetSpout.ID;
     } else {
+      if (Configuration.get("sentistorm.spout.startup.timeout.ms") != null) {
+        conf.put(TwitterStreamSpout.CONF_STARTUP_TIMEOUT_MS,
+            (Integer) Configuration.get("sentistorm.spout.startup.timeout.ms"));
+      }
       if (Configuration.get("sentistorm.spout.startup.sleep.ms") != null) {
         conf.put(TwitterStreamSpout.CONF_STARTUP_SLEEP_MS,
             (Integer) Configuration.get("sentistorm.spout.startup.sleep.ms"));
       }
+      conf.put(TwitterStreamSpout.CONF_BUFFER_CAPACITY,
+          Configuration.get("sentistorm.spout.buffer.capacity", 1000));
+      conf.put(TwitterStreamSpout.CONF_BATCH_SIZE,
+          Configuration.get("sentistorm.spout.batch.size", 100));
+      if (Configuration.get("sentistorm.spout.spill.dir") != null) {
+        conf.put(TwitterStreamSpout.CONF_SPILL_DIR,
+            (String) Configuration.get("sentistorm.spout.spill.dir"));
+      }
+      conf.put(TwitterStreamSpout.CONF_SPILL_SEGMENT_MB,
+          Configuration.get("sentistorm.spout.spill.segment.mb", 16));
+      conf.put(TwitterStreamSpout.CONF_SPILL_SEGMENTS,
+          Configuration.get("sentistorm.spout.spill.segments", 8));
+      if (replayFile != null) {
+        System.out.println("TwitterSpout replaying: " + replayFile);
+        conf.put(TwitterStreamSpout.CONF_REPLAY_FILE, replayFile);
+        conf.put(TwitterStreamSpout.CONF_REPLAY_TWEETS_PER_SEC,
+            Configuration.get("sentistorm.spout.replay.tweets.per.sec", 0));
+        conf.put(TwitterStreamSpout.CONF_REPLAY_LOOP,
+            Configuration.get("sentistorm.spout.replay.loop", false));
+      }
+      conf.put(TwitterStreamSpout.CONF_RELIABLE,
+          Configuration.get("sentistorm.spout.reliable", false));
+      conf.put(TwitterStreamSpout.CONF_MAX_REPLAYS,
+          Configuration.get("sentistorm.spout.max.replays", 3));
       spout = new TwitterStreamSpout(consumerKey, consumerSecret, accessToken,
           accessTokenSecret, keyWords,
           (String) Configuration.get("sentistorm.spout.filter.language"));
       spoutID = TwitterStreamSpout.ID;
     }
 
-    // Create Bolts
-    TokenizerBolt tokenizerBolt = new TokenizerBolt();
-    PreprocessorBolt preprocessorBolt = new PreprocessorBolt();
-    POSTaggerBolt posTaggerBolt = new POSTaggerBolt();
-    FeatureGenerationBolt featureGenerationBolt = new FeatureGenerationBolt();
-    SVMBolt svmBolt = new SVMBolt();
-
     // Create Topology
     TopologyBuilder builder = new TopologyBuilder();
 
@@ -113,35 +174,62 @@ public class SentiStormTopology {
     builder.setSpout(spoutID, spout,
         Configuration.get("sentistorm.spout.parallelism", 1));
 
-    // Set Spout --> TokenizerBolt
-    builder.setBolt(TokenizerBolt.ID, tokenizerBolt,
-        Configuration.get("sentistorm.bolt.tokenizer.parallelism", 1))
-        .shuffleGrouping(spoutID);
+    boolean fused = Configuration.get("sentistorm.topology.fused", false);
+    if (fused) {
+      // Spout --> PipelineBolt (tokenize, preprocess, tag, featurize and
+      // classify within one bolt)
+      builder.setBolt(PipelineBolt.ID, new PipelineBolt(),
+          Configuration.get("sentistorm.bolt.pipeline.parallelism", 1))
+          .shuffleGrouping(spoutID);
+
+    } else {
+      // Create Bolts
+      TokenizerBolt tokenizerBolt = new TokenizerBolt();
+      PreprocessorBolt preprocessorBolt = new PreprocessorBolt();
+      POSTaggerBolt posTaggerBolt = new POSTaggerBolt();
+      FeatureGenerationBolt featureGenerationBolt = new FeatureGenerationBolt();
 
-    // TokenizerBolt --> PreprocessorBolt
-    builder.setBolt(PreprocessorBolt.ID, preprocessorBolt,
-        Configuration.get("sentistorm.bolt.preprocessor.parallelism", 1))
-        .shuffleGrouping(TokenizerBolt.ID);
+      // Spout --> TokenizerBolt
+      builder.setBolt(TokenizerBolt.ID, tokenizerBolt,
+          Configuration.get("sentistorm.bolt.tokenizer.parallelism", 1))
+          .shuffleGrouping(spoutID);
 
-    // PreprocessorBolt --> POSTaggerBolt
-    builder.setBolt(POSTaggerBolt.ID, posTaggerBolt,
-        Configuration.get("sentistorm.bolt.postagger.parallelism", 1))
-        .shuffleGrouping(PreprocessorBolt.ID);
+      // TokenizerBolt --> PreprocessorBolt
+      builder.setBolt(PreprocessorBolt.ID, preprocessorBolt,
+          Configuration.get("sentistorm.bolt.preprocessor.parallelism", 1))
+          .shuffleGrouping(TokenizerBolt.ID);
 
-    // POSTaggerBolt --> FeatureGenerationBolt
-    builder.setBolt(FeatureGenerationBolt.ID, featureGenerationBolt,
-        Configuration.get("sentistorm.bolt.featuregeneration.parallelism", 1))
-        .shuffleGrouping(POSTaggerBolt.ID);
+      // PreprocessorBolt --> POSTaggerBolt
+      builder.setBolt(POSTaggerBolt.ID, posTaggerBolt,
+          Configuration.get("sentistorm.bolt.postagger.parallelism", 1))
+          .shuffleGrouping(PreprocessorBolt.ID);
 
-    // FeatureGenerationBolt --> SVMBolt
-    builder.setBolt(SVMBolt.ID, svmBolt,
-        Configuration.get("sentistorm.bolt.svm.parallelism", 1))
-        .shuffleGrouping(FeatureGenerationBolt.ID);
+      // POSTaggerBolt --> FeatureGenerationBolt
+      builder.setBolt(FeatureGenerationBolt.ID, featureGenerationBolt,
+          Configuration.get("sentistorm.bolt.featuregeneration.parallelism", 1))
+          .shuffleGrouping(POSTaggerBolt.ID);
+
+      if (Configuration.get("sentistorm.bolt.svm.batch.size", 1) > 1) {
+        // FeatureGenerationBolt --> SVMBatchBolt
+        builder.setBolt(SVMBatchBolt.ID, new SVMBatchBolt(),
+            Configuration.get("sentistorm.bolt.svm.parallelism", 1))
+            .shuffleGrouping(FeatureGenerationBolt.ID);
+      } else {
+        // FeatureGenerationBolt --> SVMBolt
+        builder.setBolt(SVMBolt.ID, new SVMBolt(),
+            Configuration.get("sentistorm.bolt.svm.parallelism", 1))
+            .shuffleGrouping(FeatureGenerationBolt.ID);
+      }
+    }
 
     // Set topology config
     conf.setNumWorkers(Configuration.get("sentistorm.workers.num", 1));
 
-    if (Configuration.get("sentistorm.spout.max.pending") != null) {
+    // max.pending would close the open-loop load of the load generator
+    if (Configuration.get("sentistorm.spout.load.generator", false)) {
+      System.out.println("LoadGeneratorSpout ignores "
+          + "sentistorm.spout.max.pending to keep the load open");
+    } else if (Configuration.get("sentistorm.spout.max.pending") != null) {
       conf.setMaxSpoutPending((Integer) Configuration
           .get("sentistorm.spout.max.pending"));
     }
@@ -167,10 +255,22 @@ public class SentiStormTopology {
         Configuration.get("sentistorm.bolt.featuregeneration.logging", false));
     conf.put(SVMBolt.CONF_LOGGING,
         Configuration.get("sentistorm.bolt.svm.logging", false));
+    conf.put(SVMBatchBolt.CONF_LOGGING,
+        Configuration.get("sentistorm.bolt.svm.logging", false));
+    conf.put(SVMBatchBolt.CONF_BATCH_SIZE,
+        Configuration.get("sentistorm.bolt.svm.batch.size", 1));
+    conf.put(SVMBatchBolt.CONF_BATCH_TIMEOUT_MS,
+        Configuration.get("sentistorm.bolt.svm.batch.timeout.ms", 1000));
+    conf.put(PipelineBolt.CONF_LOGGING,
+        Configuration.get("sentistorm.bolt.pipeline.logging", false));
+    conf.put(PipelineBolt.CONF_MODEL,
+        Configuration.get("sentistorm.bolt.postagger.model"));
 
     conf.put(Config.TOPOLOGY_FALL_BACK_ON_JAVA_SERIALIZATION, false);
     conf.registerSerialization(TaggedToken.class, TaggedTokenSerializer.class);
-    conf.registerSerialization(TreeMap.class, TreeMapSerializer.class);
+    conf.registerSerialization(ArkTaggedToken.class,
+        TaggedTokenSerializer.class);
+    conf.registerSerialization(SparseVector.class, SparseVectorSerializer.class);
 
     // conf.put(Config.TOPOLOGY_RECEIVER_BUFFER_SIZE, 8);
     // conf.put(Config.TOPOLOGY_TRANSFER_BUFFER_SIZE, 32);
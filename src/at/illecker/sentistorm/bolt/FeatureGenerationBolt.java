@@ -16,6 +16,7 @@
  */
 package at.illecker.sentistorm.bolt;
 
+import java.io.File;
 import java.util.List;
 import java.util.Map;
 
@@ -24,13 +25,14 @@ import org.slf4j.LoggerFactory;
 
 import at.illecker.sentistorm.commons.Configuration;
 import at.illecker.sentistorm.commons.Dataset;
-import at.illecker.sentistorm.commons.FeaturedTweet;
+import at.illecker.sentistorm.commons.ReadinessGate;
+import at.illecker.sentistorm.commons.ResourceRegistry;
+import at.illecker.sentistorm.commons.StartupLoader;
 import at.illecker.sentistorm.commons.featurevector.CombinedFeatureVectorGenerator;
 import at.illecker.sentistorm.commons.featurevector.FeatureVectorGenerator;
-import at.illecker.sentistorm.commons.tfidf.TfIdfNormalization;
-import at.illecker.sentistorm.commons.tfidf.TfType;
-import at.illecker.sentistorm.commons.tfidf.TweetTfIdf;
-import at.illecker.sentistorm.commons.util.io.SerializationUtils;
+import at.illecker.sentistorm.commons.featurevector.FeatureVectorGeneratorFile;
+import at.illecker.sentistorm.commons.featurevector.SparseVector;
+import at.illecker.sentistorm.commons.svm.SVM;
 import backtype.storm.task.TopologyContext;
 import backtype.storm.topology.BasicOutputCollector;
 import backtype.storm.topology.OutputFieldsDeclarer;
@@ -48,6 +50,7 @@ public class FeatureGenerationBolt extends BaseBasicBolt {
       .getLogger(FeatureGenerationBolt.class);
   private boolean m_logging = false;
   private Dataset m_dataset;
+  private ResourceRegistry.Resource<FeatureVectorGeneratorFile> m_fvgFile;
   private FeatureVectorGenerator m_fvg = null;
 
   @Override
@@ -58,6 +61,9 @@ public class FeatureGenerationBolt extends BaseBasicBolt {
 
   @Override
   public void prepare(Map config, TopologyContext context) {
+    // load the shared resources of the worker concurrently
+    StartupLoader.start();
+
     this.m_dataset = Configuration.getDataSetSemEval2013();
 
     // Optional set logging
@@ -67,20 +73,25 @@ public class FeatureGenerationBolt extends BaseBasicBolt {
       m_logging = false;
     }
 
-    // TODO serialize CombinedFeatureVectorGenerator
-    List<FeaturedTweet> featuredTrainTweets = SerializationUtils
-        .deserialize(m_dataset.getTrainDataSerializationFile());
-    if (featuredTrainTweets != null) {
-      TweetTfIdf tweetTfIdf = TweetTfIdf.createFromTaggedTokens(
-          FeaturedTweet.getTaggedTokensFromTweets(featuredTrainTweets),
-          TfType.LOG, TfIdfNormalization.COS, true);
+    // Load Feature Vector Generator, shared by all tasks of the worker
+    String fvgFile = m_dataset.getDatasetPath() + File.separator
+        + SVM.FEATURE_VECTOR_GENERATOR_FILE_BIN;
+    m_fvgFile = FeatureVectorGeneratorFile.acquire(fvgFile);
+    if (m_fvgFile == null) {
+      LOG.error("Could not load FeatureVectorGenerator! File: " + fvgFile);
+      throw new RuntimeException();
+    }
+    LOG.info("Load CombinedFeatureVectorGenerator...");
+    m_fvg = m_fvgFile.get().createFeatureVectorGenerator();
 
-      LOG.info("Load CombinedFeatureVectorGenerator...");
-      m_fvg = new CombinedFeatureVectorGenerator(true, tweetTfIdf);
+    // publish readiness to the spouts of the worker
+    ReadinessGate.ready(context);
+  }
 
-    } else {
-      LOG.error("TaggedTweets could not be found! File is missing: "
-          + m_dataset.getTrainDataSerializationFile());
+  @Override
+  public void cleanup() {
+    if (m_fvgFile != null) {
+      m_fvgFile.release();
     }
   }
 
@@ -91,7 +102,7 @@ public class FeatureGenerationBolt extends BaseBasicBolt {
         .getValueByField("taggedTokens");
 
     // Generate Feature Vector
-    Map<Integer, Double> featureVector = m_fvg
+    SparseVector featureVector = m_fvg
         .generateFeatureVector(taggedTokens);
 
     if (m_logging) {
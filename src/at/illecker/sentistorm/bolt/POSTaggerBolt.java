@@ -16,7 +16,6 @@
  */
 package at.illecker.sentistorm.bolt;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -24,7 +23,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import at.illecker.sentistorm.commons.Configuration;
-import at.illecker.sentistorm.commons.util.io.SerializationUtils;
+import at.illecker.sentistorm.commons.ReadinessGate;
+import at.illecker.sentistorm.commons.ResourceRegistry;
+import at.illecker.sentistorm.commons.StartupLoader;
+import at.illecker.sentistorm.components.BatchPOSTagger;
 import backtype.storm.task.TopologyContext;
 import backtype.storm.topology.BasicOutputCollector;
 import backtype.storm.topology.OutputFieldsDeclarer;
@@ -34,8 +36,6 @@ import backtype.storm.tuple.Tuple;
 import backtype.storm.tuple.Values;
 import cmu.arktweetnlp.Tagger.TaggedToken;
 import cmu.arktweetnlp.impl.Model;
-import cmu.arktweetnlp.impl.ModelSentence;
-import cmu.arktweetnlp.impl.Sentence;
 import cmu.arktweetnlp.impl.features.FeatureExtractor;
 
 public class POSTaggerBolt extends BaseBasicBolt {
@@ -47,8 +47,9 @@ public class POSTaggerBolt extends BaseBasicBolt {
       .getLogger(POSTaggerBolt.class);
   private boolean m_logging = false;
 
-  private Model m_model;
-  private FeatureExtractor m_featureExtractor;
+  private ResourceRegistry.Resource<Model> m_model;
+  private ResourceRegistry.Resource<FeatureExtractor> m_featureExtractor;
+  private BatchPOSTagger m_tagger;
 
   @Override
   public void declareOutputFields(OutputFieldsDeclarer declarer) {
@@ -58,6 +59,9 @@ public class POSTaggerBolt extends BaseBasicBolt {
 
   @Override
   public void prepare(Map config, TopologyContext context) {
+    // load the shared resources of the worker concurrently
+    StartupLoader.start();
+
     // Optional set logging
     if (config.get(CONF_LOGGING) != null) {
       m_logging = (Boolean) config.get(CONF_LOGGING);
@@ -65,14 +69,32 @@ public class POSTaggerBolt extends BaseBasicBolt {
       m_logging = false;
     }
 
-    // Load POS Tagger
+    // Load POS Tagger, shared by all tasks of the worker
     String taggingModel = Configuration.get("sentistorm.bolt.postagger.model");
     LOG.info("Load POS Tagger model: " + taggingModel + "_model.ser");
-    m_model = SerializationUtils.deserialize(taggingModel + "_model.ser");
+    m_model = ResourceRegistry.acquireSerialized(taggingModel + "_model.ser");
     LOG.info("Load POS Tagger featureExtractor : " + taggingModel
         + "_featureExtractor.ser");
-    m_featureExtractor = SerializationUtils.deserialize(taggingModel
+    m_featureExtractor = ResourceRegistry.acquireSerialized(taggingModel
         + "_featureExtractor.ser");
+    if ((m_model == null) || (m_featureExtractor == null)) {
+      LOG.error("Could not load POS Tagger model: " + taggingModel);
+      throw new RuntimeException();
+    }
+    m_tagger = new BatchPOSTagger(m_model.get(), m_featureExtractor.get());
+
+    // publish readiness to the spouts of the worker
+    ReadinessGate.ready(context);
+  }
+
+  @Override
+  public void cleanup() {
+    if (m_model != null) {
+      m_model.release();
+    }
+    if (m_featureExtractor != null) {
+      m_featureExtractor.release();
+    }
   }
 
   @Override
@@ -82,7 +104,7 @@ public class POSTaggerBolt extends BaseBasicBolt {
         .getValueByField("preprocessedTokens");
 
     // POS Tagging
-    List<TaggedToken> taggedTokens = tag(preprocessedTokens);
+    List<TaggedToken> taggedTokens = m_tagger.tag(preprocessedTokens);
 
     if (m_logging) {
       LOG.info("Tweet: " + taggedTokens);
@@ -92,20 +114,4 @@ public class POSTaggerBolt extends BaseBasicBolt {
     collector.emit(new Values(text, taggedTokens));
   }
 
-  private List<TaggedToken> tag(List<String> tokens) {
-    Sentence sentence = new Sentence();
-    sentence.tokens = tokens;
-    ModelSentence ms = new ModelSentence(sentence.T());
-    m_featureExtractor.computeFeatures(sentence, ms);
-    m_model.greedyDecode(ms, false);
-
-    List<TaggedToken> taggedTokens = new ArrayList<TaggedToken>();
-    for (int t = 0; t < sentence.T(); t++) {
-      TaggedToken tt = new TaggedToken(tokens.get(t),
-          m_model.labelVocab.name(ms.labels[t]));
-      taggedTokens.add(tt);
-    }
-    return taggedTokens;
-  }
-
 }
@@ -0,0 +1,186 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.illecker.sentistorm.bolt;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import at.illecker.sentistorm.commons.Configuration;
+import at.illecker.sentistorm.commons.Dataset;
+import at.illecker.sentistorm.commons.ReadinessGate;
+import at.illecker.sentistorm.commons.ResourceRegistry;
+import at.illecker.sentistorm.commons.SentimentClass;
+import at.illecker.sentistorm.commons.StartupLoader;
+import at.illecker.sentistorm.commons.featurevector.CombinedFeatureVectorGenerator;
+import at.illecker.sentistorm.commons.featurevector.FeatureVectorGenerator;
+import at.illecker.sentistorm.commons.featurevector.FeatureVectorGeneratorFile;
+import at.illecker.sentistorm.commons.featurevector.SparseVector;
+import at.illecker.sentistorm.commons.svm.SVM;
+import at.illecker.sentistorm.commons.svm.SVMModelFile;
+import at.illecker.sentistorm.commons.svm.SVMPredictor;
+import at.illecker.sentistorm.components.BatchPOSTagger;
+import at.illecker.sentistorm.components.Preprocessor;
+import at.illecker.sentistorm.components.Tokenizer;
+import backtype.storm.task.TopologyContext;
+import backtype.storm.topology.BasicOutputCollector;
+import backtype.storm.topology.OutputFieldsDeclarer;
+import backtype.storm.topology.base.BaseBasicBolt;
+import backtype.storm.tuple.Tuple;
+import cmu.arktweetnlp.Tagger.TaggedToken;
+import cmu.arktweetnlp.impl.Model;
+import cmu.arktweetnlp.impl.features.FeatureExtractor;
+
+/**
+ * Fused bolt which runs the whole SentiStorm pipeline (tokenize, preprocess,
+ * POS tagging, feature vector generation and SVM classification) in-process.
+ *
+ * It replaces the chain of TokenizerBolt, PreprocessorBolt, POSTaggerBolt,
+ * FeatureGenerationBolt and SVMBolt and avoids the serialization and transfer
+ * of intermediate results between them. The bolt is scaled by its parallelism
+ * hint only.
+ */
+public class PipelineBolt extends BaseBasicBolt {
+  public static final String ID = "pipeline-bolt";
+  public static final String CONF_LOGGING = ID + ".logging";
+  public static final String CONF_MODEL = ID + ".model";
+  private static final long serialVersionUID = 2818376563488733196L;
+  private static final Logger LOG = LoggerFactory.getLogger(PipelineBolt.class);
+  private boolean m_logging = false;
+  private Dataset m_dataset;
+
+  private Preprocessor m_preprocessor;
+  private ResourceRegistry.Resource<Model> m_posModel;
+  private ResourceRegistry.Resource<FeatureExtractor> m_featureExtractor;
+  private BatchPOSTagger m_tagger;
+  private ResourceRegistry.Resource<FeatureVectorGeneratorFile> m_fvgFile;
+  private FeatureVectorGenerator m_fvg = null;
+  private ResourceRegistry.Resource<SVMModelFile> m_svmModel;
+  private SVMPredictor m_predictor;
+
+  @Override
+  public void declareOutputFields(OutputFieldsDeclarer declarer) {
+    // no output tuples
+  }
+
+  @Override
+  public void prepare(Map config, TopologyContext context) {
+    // load the shared resources of the worker concurrently
+    StartupLoader.start();
+
+    this.m_dataset = Configuration.getDataSetSemEval2013();
+
+    // Optional set logging
+    if (config.get(CONF_LOGGING) != null) {
+      m_logging = (Boolean) config.get(CONF_LOGGING);
+    } else {
+      m_logging = false;
+    }
+
+    // Load Preprocessor
+    m_preprocessor = Preprocessor.getInstance();
+
+    // Load POS Tagger
+    String taggingModel = (String) config.get(CONF_MODEL);
+    if (taggingModel == null) {
+      taggingModel = Configuration.get("sentistorm.bolt.postagger.model");
+    }
+    LOG.info("Load POS Tagger model: " + taggingModel + "_model.ser");
+    m_posModel = ResourceRegistry
+        .acquireSerialized(taggingModel + "_model.ser");
+    LOG.info("Load POS Tagger featureExtractor : " + taggingModel
+        + "_featureExtractor.ser");
+    m_featureExtractor = ResourceRegistry.acquireSerialized(taggingModel
+        + "_featureExtractor.ser");
+    if ((m_posModel == null) || (m_featureExtractor == null)) {
+      LOG.error("Could not load POS Tagger model: " + taggingModel);
+      throw new RuntimeException();
+    }
+    m_tagger = new BatchPOSTagger(m_posModel.get(), m_featureExtractor.get());
+
+    // Load Feature Vector Generator, shared by all tasks of the worker
+    String fvgFile = m_dataset.getDatasetPath() + File.separator
+        + SVM.FEATURE_VECTOR_GENERATOR_FILE_BIN;
+    m_fvgFile = FeatureVectorGeneratorFile.acquire(fvgFile);
+    if (m_fvgFile == null) {
+      LOG.error("Could not load FeatureVectorGenerator! File: " + fvgFile);
+      throw new RuntimeException();
+    }
+    LOG.info("Load CombinedFeatureVectorGenerator...");
+    m_fvg = m_fvgFile.get().createFeatureVectorGenerator();
+
+    // Load SVM model
+    LOG.info("Loading SVM model...");
+    m_svmModel = SVMModelFile.acquire(m_dataset.getDatasetPath()
+        + File.separator + SVM.SVM_MODEL_FILE_BIN);
+
+    if (m_svmModel == null) {
+      LOG.error("Could not load SVM model! File: " + m_dataset.getDatasetPath()
+          + File.separator + SVM.SVM_MODEL_FILE_BIN);
+      throw new RuntimeException();
+    }
+    m_predictor = m_svmModel.get().createPredictor();
+
+    // publish readiness to the spouts of the worker
+    ReadinessGate.ready(context);
+  }
+
+  @Override
+  public void cleanup() {
+    if (m_posModel != null) {
+      m_posModel.release();
+    }
+    if (m_featureExtractor != null) {
+      m_featureExtractor.release();
+    }
+    if (m_fvgFile != null) {
+      m_fvgFile.release();
+    }
+    if (m_svmModel != null) {
+      m_svmModel.release();
+    }
+  }
+
+  @Override
+  public void execute(Tuple tuple, BasicOutputCollector collector) {
+    String text = tuple.getStringByField("text");
+
+    // Tokenize
+    List<String> tokens = Tokenizer.tokenize(text);
+
+    // Preprocess
+    List<String> preprocessedTokens = m_preprocessor.preprocess(tokens);
+
+    // POS Tagging
+    List<TaggedToken> taggedTokens = m_tagger.tag(preprocessedTokens);
+
+    // Generate Feature Vector
+    SparseVector featureVector = m_fvg
+        .generateFeatureVector(taggedTokens);
+
+    double predictedClass = m_predictor.predict(featureVector);
+
+    if (m_logging) {
+      LOG.info("Tweet: " + text + " predictedSentiment: "
+          + SentimentClass.fromScore(m_dataset, (int) predictedClass));
+    }
+  }
+
+}
@@ -16,13 +16,18 @@
  */
 package at.illecker.sentistorm.bolt;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import at.illecker.sentistorm.commons.ReadinessGate;
+import at.illecker.sentistorm.commons.StartupLoader;
+import at.illecker.sentistorm.commons.wordnet.WordNet;
 import at.illecker.sentistorm.components.Preprocessor;
+import backtype.storm.metric.api.IMetric;
 import backtype.storm.task.TopologyContext;
 import backtype.storm.topology.BasicOutputCollector;
 import backtype.storm.topology.OutputFieldsDeclarer;
@@ -48,6 +53,9 @@ public class PreprocessorBolt extends BaseBasicBolt {
 
   @Override
   public void prepare(Map config, TopologyContext context) {
+    // load the shared resources of the worker concurrently
+    StartupLoader.start();
+
     // Optional set logging
     if (config.get(CONF_LOGGING) != null) {
       m_logging = (Boolean) config.get(CONF_LOGGING);
@@ -56,6 +64,21 @@ public class PreprocessorBolt extends BaseBasicBolt {
     }
     // Load Preprocessor
     m_preprocessor = Preprocessor.getInstance();
+
+    // Report hit rates of the WordNet caches
+    final WordNet wordNet = WordNet.getInstance();
+    context.registerMetric("wordnet-cache", new IMetric() {
+      @Override
+      public Object getValueAndReset() {
+        Map<String, Double> hitRates = new HashMap<String, Double>();
+        hitRates.put("stems.hitRate", wordNet.getStemCacheHitRate());
+        hitRates.put("contains.hitRate", wordNet.getContainsCacheHitRate());
+        return hitRates;
+      }
+    }, 60);
+
+    // publish readiness to the spouts of the worker
+    ReadinessGate.ready(context);
   }
 
   @Override
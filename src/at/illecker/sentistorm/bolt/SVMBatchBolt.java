@@ -0,0 +1,178 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.illecker.sentistorm.bolt;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import at.illecker.sentistorm.commons.Configuration;
+import at.illecker.sentistorm.commons.Dataset;
+import at.illecker.sentistorm.commons.ReadinessGate;
+import at.illecker.sentistorm.commons.ResourceRegistry;
+import at.illecker.sentistorm.commons.SentimentClass;
+import at.illecker.sentistorm.commons.StartupLoader;
+import at.illecker.sentistorm.commons.featurevector.SparseVector;
+import at.illecker.sentistorm.commons.svm.BatchPredictor;
+import at.illecker.sentistorm.commons.svm.SVM;
+import at.illecker.sentistorm.commons.svm.SVMModelFile;
+import backtype.storm.Config;
+import backtype.storm.Constants;
+import backtype.storm.task.OutputCollector;
+import backtype.storm.task.TopologyContext;
+import backtype.storm.topology.OutputFieldsDeclarer;
+import backtype.storm.topology.base.BaseRichBolt;
+import backtype.storm.tuple.Tuple;
+
+public class SVMBatchBolt extends BaseRichBolt {
+  public static final String ID = "support-vector-maschine-batch-bolt";
+  public static final String CONF_LOGGING = ID + ".logging";
+  public static final String CONF_BATCH_SIZE = ID + ".batch.size";
+  public static final String CONF_BATCH_TIMEOUT_MS = ID + ".batch.timeout.ms";
+  private static final long serialVersionUID = 3518924517346386627L;
+  private static final Logger LOG = LoggerFactory.getLogger(SVMBatchBolt.class);
+  private boolean m_logging = false;
+  private int m_batchSize = 32;
+  private long m_batchTimeoutMs = 1000;
+  private Dataset m_dataset;
+  private OutputCollector m_collector;
+  private ResourceRegistry.Resource<SVMModelFile> m_model;
+  private BatchPredictor m_predictor;
+  private List<Tuple> m_batch;
+  private long m_batchStartMs;
+
+  @Override
+  public void declareOutputFields(OutputFieldsDeclarer declarer) {
+    // no output tuples
+  }
+
+  @Override
+  public Map<String, Object> getComponentConfiguration() {
+    // tick tuples flush pending tuples when no further tuples arrive, an idle
+    // partial batch therefore waits up to one second longer than its timeout
+    Map<String, Object> conf = new HashMap<String, Object>();
+    conf.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS, 1);
+    return conf;
+  }
+
+  @Override
+  public void prepare(Map config, TopologyContext context,
+      OutputCollector collector) {
+    // load the shared resources of the worker concurrently
+    StartupLoader.start();
+
+    this.m_collector = collector;
+
+    // Optional set logging
+    if (config.get(CONF_LOGGING) != null) {
+      m_logging = (Boolean) config.get(CONF_LOGGING);
+    } else {
+      m_logging = false;
+    }
+    // Optional set batch size and timeout
+    if (config.get(CONF_BATCH_SIZE) != null) {
+      m_batchSize = ((Number) config.get(CONF_BATCH_SIZE)).intValue();
+    }
+    if (config.get(CONF_BATCH_TIMEOUT_MS) != null) {
+      m_batchTimeoutMs = ((Number) config.get(CONF_BATCH_TIMEOUT_MS))
+          .longValue();
+    }
+
+    LOG.info("Loading SVM model...");
+    m_dataset = Configuration.getDataSetSemEval2013();
+    // the model is shared by all tasks of the worker
+    m_model = SVMModelFile.acquire(m_dataset.getDatasetPath() + File.separator
+        + SVM.SVM_MODEL_FILE_BIN);
+
+    if (m_model == null) {
+      LOG.error("Could not load SVM model! File: " + m_dataset.getDatasetPath()
+          + File.separator + SVM.SVM_MODEL_FILE_BIN);
+      throw new RuntimeException();
+    }
+
+    m_predictor = m_model.get().createBatchPredictor(m_batchSize);
+    m_batch = new ArrayList<Tuple>(m_batchSize);
+    LOG.info("Batch size: " + m_batchSize + " timeout: " + m_batchTimeoutMs
+        + " ms");
+
+    // publish readiness to the spouts of the worker
+    ReadinessGate.ready(context);
+  }
+
+  @Override
+  public void execute(Tuple tuple) {
+    if (isTickTuple(tuple)) {
+      if ((!m_batch.isEmpty())
+          && (System.currentTimeMillis() - m_batchStartMs >= m_batchTimeoutMs)) {
+        flush();
+      }
+      return;
+    }
+
+    SparseVector featureVector = (SparseVector) tuple
+        .getValueByField("featureVector");
+
+    if (m_batch.isEmpty()) {
+      m_batchStartMs = System.currentTimeMillis();
+    }
+    m_predictor.add(featureVector);
+    m_batch.add(tuple);
+
+    if ((m_batch.size() >= m_batchSize)
+        || (System.currentTimeMillis() - m_batchStartMs >= m_batchTimeoutMs)) {
+      flush();
+    }
+  }
+
+  @Override
+  public void cleanup() {
+    if ((m_batch != null) && (!m_batch.isEmpty())) {
+      flush();
+    }
+    if (m_model != null) {
+      m_model.release();
+    }
+  }
+
+  private void flush() {
+    double[] predictedClasses = m_predictor.predict();
+
+    for (int i = 0; i < m_batch.size(); i++) {
+      Tuple tuple = m_batch.get(i);
+      if (m_logging) {
+        LOG.info("Tweet: " + tuple.getStringByField("text")
+            + " predictedSentiment: "
+            + SentimentClass.fromScore(m_dataset, (int) predictedClasses[i]));
+      }
+      m_collector.ack(tuple);
+    }
+
+    m_predictor.clear();
+    m_batch.clear();
+  }
+
+  private static boolean isTickTuple(Tuple tuple) {
+    return Constants.SYSTEM_COMPONENT_ID.equals(tuple.getSourceComponent())
+        && Constants.SYSTEM_TICK_STREAM_ID.equals(tuple.getSourceStreamId());
+  }
+
+}
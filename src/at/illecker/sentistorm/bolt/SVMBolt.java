@@ -19,18 +19,19 @@ package at.illecker.sentistorm.bolt;
 import java.io.File;
 import java.util.Map;
 
-import libsvm.svm;
-import libsvm.svm_model;
-import libsvm.svm_node;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import at.illecker.sentistorm.commons.Configuration;
 import at.illecker.sentistorm.commons.Dataset;
+import at.illecker.sentistorm.commons.ReadinessGate;
+import at.illecker.sentistorm.commons.ResourceRegistry;
 import at.illecker.sentistorm.commons.SentimentClass;
+import at.illecker.sentistorm.commons.StartupLoader;
+import at.illecker.sentistorm.commons.featurevector.SparseVector;
 import at.illecker.sentistorm.commons.svm.SVM;
-import at.illecker.sentistorm.commons.util.io.SerializationUtils;
+import at.illecker.sentistorm.commons.svm.SVMModelFile;
+import at.illecker.sentistorm.commons.svm.SVMPredictor;
 import backtype.storm.task.TopologyContext;
 import backtype.storm.topology.BasicOutputCollector;
 import backtype.storm.topology.OutputFieldsDeclarer;
@@ -44,7 +45,8 @@ public class SVMBolt extends BaseBasicBolt {
   private static final Logger LOG = LoggerFactory.getLogger(SVMBolt.class);
   private boolean m_logging = false;
   private Dataset m_dataset;
-  private svm_model m_model;
+  private ResourceRegistry.Resource<SVMModelFile> m_model;
+  private SVMPredictor m_predictor;
 
   @Override
   public void declareOutputFields(OutputFieldsDeclarer declarer) {
@@ -53,6 +55,9 @@ public class SVMBolt extends BaseBasicBolt {
 
   @Override
   public void prepare(Map config, TopologyContext context) {
+    // load the shared resources of the worker concurrently
+    StartupLoader.start();
+
     // Optional set logging
     if (config.get(CONF_LOGGING) != null) {
       m_logging = (Boolean) config.get(CONF_LOGGING);
@@ -62,34 +67,35 @@ public class SVMBolt extends BaseBasicBolt {
 
     LOG.info("Loading SVM model...");
     m_dataset = Configuration.getDataSetSemEval2013();
-    m_model = SerializationUtils.deserialize(m_dataset.getDatasetPath()
-        + File.separator + SVM.SVM_MODEL_FILE_SER);
+    // the model is shared by all SVMBolt tasks of the worker
+    m_model = SVMModelFile.acquire(m_dataset.getDatasetPath() + File.separator
+        + SVM.SVM_MODEL_FILE_BIN);
 
     if (m_model == null) {
       LOG.error("Could not load SVM model! File: " + m_dataset.getDatasetPath()
-          + File.separator + SVM.SVM_MODEL_FILE_SER);
+          + File.separator + SVM.SVM_MODEL_FILE_BIN);
       throw new RuntimeException();
     }
+    m_predictor = m_model.get().createPredictor();
+
+    // publish readiness to the spouts of the worker
+    ReadinessGate.ready(context);
+  }
+
+  @Override
+  public void cleanup() {
+    if (m_model != null) {
+      m_model.release();
+    }
   }
 
   @Override
   public void execute(Tuple tuple, BasicOutputCollector collector) {
     String text = tuple.getStringByField("text");
-    Map<Integer, Double> featureVector = (Map<Integer, Double>) tuple
+    SparseVector featureVector = (SparseVector) tuple
         .getValueByField("featureVector");
 
-    // Create feature nodes
-    svm_node[] testNodes = new svm_node[featureVector.size()];
-    int i = 0;
-    for (Map.Entry<Integer, Double> feature : featureVector.entrySet()) {
-      svm_node node = new svm_node();
-      node.index = feature.getKey();
-      node.value = feature.getValue();
-      testNodes[i] = node;
-      i++;
-    }
-
-    double predictedClass = svm.svm_predict(m_model, testNodes);
+    double predictedClass = m_predictor.predict(featureVector);
 
     if (m_logging) {
       LOG.info("Tweet: " + text + " predictedSentiment: "
@@ -22,6 +22,8 @@ import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import at.illecker.sentistorm.commons.ReadinessGate;
+import at.illecker.sentistorm.commons.StartupLoader;
 import at.illecker.sentistorm.components.Tokenizer;
 import backtype.storm.task.TopologyContext;
 import backtype.storm.topology.BasicOutputCollector;
@@ -47,12 +49,18 @@ public class TokenizerBolt extends BaseBasicBolt {
 
   @Override
   public void prepare(Map config, TopologyContext context) {
+    // load the shared resources of the worker concurrently
+    StartupLoader.start();
+
     // Optional set logging
     if (config.get(CONF_LOGGING) != null) {
       m_logging = (Boolean) config.get(CONF_LOGGING);
     } else {
       m_logging = false;
     }
+
+    // publish readiness to the spouts of the worker
+    ReadinessGate.ready(context);
   }
 
   @Override
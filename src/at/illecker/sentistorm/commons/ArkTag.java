@@ -0,0 +1,131 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.illecker.sentistorm.commons;
+
+import cmu.arktweetnlp.Tagger.TaggedToken;
+import cmu.arktweetnlp.impl.Vocabulary;
+import edu.mit.jwi.item.POS;
+
+/**
+ * Tag set of the ark-tweet-nlp POS tagger
+ * http://www.ark.cs.cmu.edu/TweetNLP/annot_guidelines.pdf
+ *
+ * The ordinal of a tag is its byte code on the wire.
+ */
+public enum ArkTag {
+  COMMON_NOUN("N", POS.NOUN), //
+  PRONOUN("O", POS.NOUN), //
+  PROPER_NOUN("^", POS.NOUN), //
+  NOMINAL_POSSESSIVE("S", POS.NOUN), //
+  PROPER_NOUN_POSSESSIVE("Z", POS.NOUN), //
+  NOMINAL_VERBAL("L", null), //
+  PROPER_NOUN_VERBAL("M", null), //
+  VERB("V", POS.VERB), //
+  ADJECTIVE("A", POS.ADJECTIVE), //
+  ADVERB("R", POS.ADVERB), //
+  INTERJECTION("!", null), //
+  DETERMINER("D", null), //
+  PREPOSITION("P", null), //
+  CONJUNCTION("&", null), //
+  VERB_PARTICLE("T", null), //
+  EXISTENTIAL("X", null), //
+  EXISTENTIAL_VERBAL("Y", null), //
+  HASHTAG("#", null), //
+  AT_MENTION("@", null), //
+  DISCOURSE_MARKER("~", null), //
+  URL("U", null), //
+  EMOTICON("E", null), //
+  NUMERAL("$", null), //
+  PUNCTUATION(",", null), //
+  OTHER("G", null);
+
+  private static final ArkTag[] VALUES = values();
+  private static final ArkTag[] ASCII_TAGS = new ArkTag[128];
+  static {
+    for (ArkTag arkTag : VALUES) {
+      ASCII_TAGS[arkTag.m_tag.charAt(0)] = arkTag;
+    }
+  }
+
+  private final String m_tag;
+  private final POS m_pos;
+
+  private ArkTag(String tag, POS pos) {
+    m_tag = tag;
+    m_pos = pos;
+  }
+
+  /**
+   * @return Returns the tag string of the ark-tweet-nlp tagger
+   */
+  public String getTag() {
+    return m_tag;
+  }
+
+  /**
+   * @return Returns the WordNet POS tag or null if there is none
+   */
+  public POS getPOS() {
+    return m_pos;
+  }
+
+  public byte getCode() {
+    return (byte) ordinal();
+  }
+
+  public static ArkTag fromCode(byte code) {
+    return VALUES[code];
+  }
+
+  /**
+   * @param tag the tag string of the ark-tweet-nlp tagger
+   * @return Returns the ArkTag or null if the tag is not an Ark tag
+   */
+  public static ArkTag fromTag(String tag) {
+    if (tag.length() != 1) {
+      return null;
+    }
+    char c = tag.charAt(0);
+    return (c < ASCII_TAGS.length) ? ASCII_TAGS[c] : null;
+  }
+
+  /**
+   * @return Returns the ArkTag of a tagged token or null if its tag is not an
+   *         Ark tag (e.g., Penn Treebank tags of another model)
+   */
+  public static ArkTag of(TaggedToken taggedToken) {
+    if (taggedToken instanceof ArkTaggedToken) {
+      return ((ArkTaggedToken) taggedToken).getArkTag();
+    }
+    return fromTag(taggedToken.tag);
+  }
+
+  /**
+   * Maps the label ids of a tagger model to ArkTags once, so tagging does not
+   * need to look up the label names.
+   *
+   * @return Returns the ArkTag of each label id or null for non Ark labels
+   */
+  public static ArkTag[] fromLabels(Vocabulary labelVocab) {
+    ArkTag[] arkTags = new ArkTag[labelVocab.size()];
+    for (int i = 0; i < arkTags.length; i++) {
+      arkTags[i] = fromTag(labelVocab.name(i));
+    }
+    return arkTags;
+  }
+
+}
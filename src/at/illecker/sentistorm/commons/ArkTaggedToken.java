@@ -0,0 +1,58 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.illecker.sentistorm.commons;
+
+import cmu.arktweetnlp.Tagger.TaggedToken;
+import cmu.arktweetnlp.impl.Vocabulary;
+
+/**
+ * TaggedToken which carries its ArkTag. The tag string is the shared string of
+ * the ArkTag and is kept for display only.
+ */
+public class ArkTaggedToken extends TaggedToken {
+  private static final long serialVersionUID = -3720465914820462437L;
+  private final ArkTag m_arkTag;
+
+  public ArkTaggedToken(String token, ArkTag arkTag) {
+    super(token, arkTag.getTag());
+    m_arkTag = arkTag;
+  }
+
+  public ArkTag getArkTag() {
+    return m_arkTag;
+  }
+
+  /**
+   * Creates the tagged token of a predicted label
+   *
+   * @param token the token
+   * @param label the label id predicted by the tagger model
+   * @param labelTags the ArkTags of the label ids (ArkTag.fromLabels)
+   * @param labelVocab the label vocabulary of the tagger model
+   * @return Returns an ArkTaggedToken or a plain TaggedToken if the label is
+   *         not an Ark tag
+   */
+  public static TaggedToken create(String token, int label,
+      ArkTag[] labelTags, Vocabulary labelVocab) {
+    ArkTag arkTag = labelTags[label];
+    if (arkTag != null) {
+      return new ArkTaggedToken(token, arkTag);
+    }
+    return new TaggedToken(token, labelVocab.name(label));
+  }
+
+}
@@ -47,7 +47,9 @@ public class Configuration {
   public static final String GLOBAL_RESOURCES_DICT = "global.resources.dict";
   public static final String GLOBAL_RESOURCES_DICT_SENTIMENT = "global.resources.dict.sentiment";
   public static final String GLOBAL_RESOURCES_DICT_SLANG = "global.resources.dict.slang";
+  public static final String GLOBAL_RESOURCES_DICT_UNICODE_PATH = "global.resources.dict.unicode.path";
   public static final String GLOBAL_RESOURCES_DICT_WORDNET_PATH = "global.resources.dict.wordnet.path";
+  public static final String GLOBAL_RESOURCES_DICT_WORDNET_COMPILED_PATH = "global.resources.dict.wordnet.compiled.path";
 
   public static final Map CONFIG = readConfig();
 
@@ -130,8 +132,16 @@ public class Configuration {
     return (List<Map>) CONFIG.get(GLOBAL_RESOURCES_DICT_SLANG);
   }
 
+  public static String getUnicodeSymbolsDict() {
+    return (String) CONFIG.get(GLOBAL_RESOURCES_DICT_UNICODE_PATH);
+  }
+
   public static String getWordNetDict() {
     return (String) CONFIG.get(GLOBAL_RESOURCES_DICT_WORDNET_PATH);
   }
 
+  public static String getWordNetCompiledDict() {
+    return (String) CONFIG.get(GLOBAL_RESOURCES_DICT_WORDNET_COMPILED_PATH);
+  }
+
 }
@@ -19,10 +19,10 @@ package at.illecker.sentistorm.commons;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 import at.illecker.sentistorm.commons.featurevector.CombinedFeatureVectorGenerator;
 import at.illecker.sentistorm.commons.featurevector.FeatureVectorGenerator;
+import at.illecker.sentistorm.commons.featurevector.SparseVector;
 import at.illecker.sentistorm.commons.tfidf.TfIdfNormalization;
 import at.illecker.sentistorm.commons.tfidf.TfType;
 import at.illecker.sentistorm.commons.tfidf.TweetTfIdf;
@@ -33,15 +33,15 @@ import at.illecker.sentistorm.components.Tokenizer;
 import cmu.arktweetnlp.Tagger.TaggedToken;
 
 public final class FeaturedTweet extends Tweet implements Serializable {
-  private static final long serialVersionUID = -1917356433934166756L;
+  private static final long serialVersionUID = 2473640427135896127L;
   private final List<String> m_tokens;
   private final List<String> m_preprocessedTokens;
   private final List<TaggedToken> m_taggedTokens;
-  private final Map<Integer, Double> m_featureVector; // dense vector
+  private final SparseVector m_featureVector;
 
   public FeaturedTweet(long id, String text, double score, List<String> tokens,
       List<String> preprocessedTokens, List<TaggedToken> taggedTokens,
-      Map<Integer, Double> featureVector) {
+      SparseVector featureVector) {
     super(id, text, score);
     m_tokens = tokens;
     m_preprocessedTokens = preprocessedTokens;
@@ -51,7 +51,7 @@ public final class FeaturedTweet extends Tweet implements Serializable {
 
   public FeaturedTweet(Tweet tweet, List<String> tokens,
       List<String> preprocessedTokens, List<TaggedToken> taggedTokens,
-      Map<Integer, Double> featureVector) {
+      SparseVector featureVector) {
     this(tweet.getId(), tweet.getText(), tweet.getScore(), tokens,
         preprocessedTokens, taggedTokens, featureVector);
   }
@@ -68,7 +68,7 @@ public final class FeaturedTweet extends Tweet implements Serializable {
     return m_taggedTokens;
   }
 
-  public Map<Integer, Double> getFeatureVector() {
+  public SparseVector getFeatureVector() {
     return m_featureVector;
   }
 
@@ -105,7 +105,7 @@ public final class FeaturedTweet extends Tweet implements Serializable {
 
     // POS Tagging
     List<List<TaggedToken>> taggedTweets = postTagger
-        .tagTweets(preprocessedTweets);
+        .tagTweetsParallel(preprocessedTweets);
 
     // Load Feature Vector Generator
     TweetTfIdf tweetTfIdf = TweetTfIdf.createFromTaggedTokens(taggedTweets,
@@ -117,7 +117,7 @@ public final class FeaturedTweet extends Tweet implements Serializable {
     List<FeaturedTweet> featuredTweets = new ArrayList<FeaturedTweet>();
     for (int i = 0; i < tweets.size(); i++) {
       List<TaggedToken> taggedTweet = taggedTweets.get(i);
-      Map<Integer, Double> featureVector = fvg
+      SparseVector featureVector = fvg
           .generateFeatureVector(taggedTweet);
 
       featuredTweets.add(new FeaturedTweet(tweets.get(i), tokenizedTweets
@@ -0,0 +1,187 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.illecker.sentistorm.commons;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import at.illecker.sentistorm.commons.util.TimeUtils;
+import backtype.storm.generated.Grouping;
+import backtype.storm.task.TopologyContext;
+
+/**
+ * Readiness signal of the bolt tasks within a worker JVM.
+ *
+ * Each bolt publishes its readiness at the end of prepare and a spout waits
+ * until all downstream tasks of its worker are ready before it starts
+ * emitting. Tasks of other workers are not visible to the gate, if some
+ * downstream tasks are in other workers the spout falls back to a fixed
+ * startup sleep for them.
+ */
+public class ReadinessGate {
+  private static final Logger LOG = LoggerFactory
+      .getLogger(ReadinessGate.class);
+  // ready task ids of each topology
+  private static final Map<String, Set<Integer>> READY_TASKS = new HashMap<String, Set<Integer>>();
+
+  public static void ready(TopologyContext context) {
+    ready(context.getStormId(), context.getThisTaskId());
+  }
+
+  public static void ready(String stormId, int taskId) {
+    synchronized (READY_TASKS) {
+      Set<Integer> tasks = READY_TASKS.get(stormId);
+      if (tasks == null) {
+        tasks = new HashSet<Integer>();
+        READY_TASKS.put(stormId, tasks);
+      }
+      tasks.add(taskId);
+      READY_TASKS.notifyAll();
+    }
+  }
+
+  /**
+   * Waits until all given tasks are ready or the timeout expires.
+   *
+   * @return Returns true if all tasks are ready, e.g., if there are no tasks
+   */
+  public static boolean await(String stormId, Collection<Integer> tasks,
+      long timeoutMs) throws InterruptedException {
+    if (tasks.isEmpty()) {
+      return true;
+    }
+    long deadline = System.currentTimeMillis() + timeoutMs;
+    synchronized (READY_TASKS) {
+      while (true) {
+        Set<Integer> readyTasks = READY_TASKS.get(stormId);
+        if ((readyTasks != null) && readyTasks.containsAll(tasks)) {
+          return true;
+        }
+        long remainingMs = deadline - System.currentTimeMillis();
+        if (remainingMs <= 0) {
+          return false;
+        }
+        READY_TASKS.wait(remainingMs);
+      }
+    }
+  }
+
+  /**
+   * Waits until all downstream tasks of this spout within its worker are
+   * ready or the timeout expires. If some downstream tasks are in other
+   * workers, it waits at least remoteSleepMs since the start of the call.
+   *
+   * @param timeoutMs the max wait for the tasks of this worker
+   * @param remoteSleepMs the wait for the tasks of other workers
+   * @return Returns true if all tasks of this worker are ready
+   */
+  public static boolean awaitDownstream(TopologyContext context,
+      long timeoutMs, long remoteSleepMs) {
+    List<Integer> downstreamTasks = getDownstreamTasks(context);
+    List<Integer> tasks = getLocalTasks(context, downstreamTasks);
+    int remoteTasks = downstreamTasks.size() - tasks.size();
+    LOG.info("Waiting for " + tasks.size() + " downstream tasks...");
+    long startTime = System.currentTimeMillis();
+    boolean ready;
+    try {
+      ready = await(context.getStormId(), tasks, timeoutMs);
+      if (ready) {
+        LOG.info("All downstream tasks ready after "
+            + (System.currentTimeMillis() - startTime) + " ms");
+      } else {
+        LOG.error("Downstream tasks not ready after " + timeoutMs + " ms");
+      }
+    } catch (InterruptedException e) {
+      LOG.error("InterruptedException: " + e.getMessage());
+      Thread.currentThread().interrupt();
+      return false;
+    }
+
+    if (remoteTasks > 0) {
+      long sleepMs = remoteSleepMs
+          - (System.currentTimeMillis() - startTime);
+      if (sleepMs > 0) {
+        LOG.info("Waiting " + sleepMs + " ms for " + remoteTasks
+            + " downstream tasks of other workers...");
+        TimeUtils.sleepMillis(sleepMs);
+      }
+    }
+    return ready;
+  }
+
+  /**
+   * @return Returns the tasks of this worker which are reachable by the
+   *         streams of this component
+   */
+  public static List<Integer> getLocalDownstreamTasks(TopologyContext context) {
+    return getLocalTasks(context, getDownstreamTasks(context));
+  }
+
+  private static List<Integer> getLocalTasks(TopologyContext context,
+      List<Integer> tasks) {
+    List<Integer> workerTasks = context.getThisWorkerTasks();
+    List<Integer> localTasks = new ArrayList<Integer>();
+    for (Integer task : tasks) {
+      if (workerTasks.contains(task)) {
+        localTasks.add(task);
+      }
+    }
+    return localTasks;
+  }
+
+  /**
+   * @return Returns the tasks of all workers which are reachable by the
+   *         streams of this component
+   */
+  public static List<Integer> getDownstreamTasks(TopologyContext context) {
+    // breadth-first search over the stream targets
+    Set<String> components = new HashSet<String>();
+    LinkedList<String> queue = new LinkedList<String>();
+    queue.add(context.getThisComponentId());
+    while (!queue.isEmpty()) {
+      Map<String, Map<String, Grouping>> targets = context.getTargets(queue
+          .removeFirst());
+      if (targets == null) {
+        continue;
+      }
+      for (Map<String, Grouping> streamTargets : targets.values()) {
+        for (String component : streamTargets.keySet()) {
+          // skip system components, e.g., ackers
+          if ((!component.startsWith("__")) && components.add(component)) {
+            queue.add(component);
+          }
+        }
+      }
+    }
+
+    List<Integer> tasks = new ArrayList<Integer>();
+    for (String component : components) {
+      tasks.addAll(context.getComponentTasks(component));
+    }
+    return tasks;
+  }
+
+}
@@ -0,0 +1,192 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.illecker.sentistorm.commons;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import at.illecker.sentistorm.commons.util.io.SerializationUtils;
+
+/**
+ * JVM-wide registry of heavy read-only resources, e.g., the POS tagger model
+ * or the SVM model.
+ *
+ * A resource is identified by its path and version, loaded lazily by the
+ * first acquire and shared by all later acquires. Each acquire has to be
+ * released, e.g., in the cleanup of a bolt. The resource is dropped, and
+ * closed if it is Closeable, when its last reference is released. Different
+ * resources are loaded concurrently.
+ */
+public class ResourceRegistry {
+  private static final Logger LOG = LoggerFactory
+      .getLogger(ResourceRegistry.class);
+  private static final Map<String, Entry> ENTRIES = new HashMap<String, Entry>();
+
+  public interface Loader<T> {
+    /**
+     * @return Returns the loaded resource or null if it could not be loaded
+     */
+    T load();
+  }
+
+  public static final class Resource<T> {
+    private final Entry m_entry;
+    private boolean m_released = false;
+
+    private Resource(Entry entry) {
+      m_entry = entry;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get() {
+      return (T) m_entry.m_value;
+    }
+
+    /**
+     * Releases this reference, further releases are ignored.
+     */
+    public void release() {
+      synchronized (this) {
+        if (m_released) {
+          return;
+        }
+        m_released = true;
+      }
+      ResourceRegistry.release(m_entry);
+    }
+  }
+
+  private static final class Entry {
+    final String m_key;
+    int m_references = 0;
+    boolean m_loaded = false;
+    volatile Object m_value = null;
+
+    Entry(String key) {
+      m_key = key;
+    }
+  }
+
+  /**
+   * Acquires a resource of the file system or the jar, the last modification
+   * time of the file is its version.
+   */
+  public static <T> Resource<T> acquireFile(String fileName, Loader<T> loader) {
+    return acquire(fileName,
+        String.valueOf(new File(fileName).lastModified()), loader);
+  }
+
+  /**
+   * Acquires a Java serialized resource of the file system or the jar.
+   */
+  public static <T extends Serializable> Resource<T> acquireSerialized(
+      final String fileName) {
+    return acquireFile(fileName, new Loader<T>() {
+      @Override
+      public T load() {
+        return SerializationUtils.deserialize(fileName);
+      }
+    });
+  }
+
+  /**
+   * @param path the path of the resource
+   * @param version the version of the resource
+   * @param loader loads the resource if it is not loaded yet
+   * @return Returns a reference of the shared resource or null if it could not
+   *         be loaded
+   */
+  public static <T> Resource<T> acquire(String path, String version,
+      Loader<T> loader) {
+    String key = path + "@" + version;
+    Entry entry;
+    synchronized (ENTRIES) {
+      entry = ENTRIES.get(key);
+      if (entry == null) {
+        entry = new Entry(key);
+        ENTRIES.put(key, entry);
+      }
+      entry.m_references++;
+    }
+
+    // load outside of the registry lock
+    synchronized (entry) {
+      if (!entry.m_loaded) {
+        long startTime = System.currentTimeMillis();
+        try {
+          entry.m_value = loader.load();
+        } catch (RuntimeException e) {
+          // a later acquire retries the load
+          release(entry);
+          throw e;
+        } catch (Error e) {
+          release(entry);
+          throw e;
+        }
+        entry.m_loaded = true;
+        if (entry.m_value != null) {
+          LOG.info("Loaded " + key + " in "
+              + (System.currentTimeMillis() - startTime) + " ms");
+        }
+      } else if (entry.m_value != null) {
+        LOG.info("Shared " + key);
+      }
+    }
+
+    if (entry.m_value == null) {
+      release(entry);
+      return null;
+    }
+    return new Resource<T>(entry);
+  }
+
+  /**
+   * @return Returns the number of loaded or loading resources
+   */
+  public static int size() {
+    synchronized (ENTRIES) {
+      return ENTRIES.size();
+    }
+  }
+
+  private static void release(Entry entry) {
+    synchronized (ENTRIES) {
+      entry.m_references--;
+      if (entry.m_references > 0) {
+        return;
+      }
+      ENTRIES.remove(entry.m_key);
+    }
+    LOG.info("Released " + entry.m_key);
+    Object value = entry.m_value;
+    if (value instanceof Closeable) {
+      try {
+        ((Closeable) value).close();
+      } catch (IOException e) {
+        LOG.error("IOException: " + e.getMessage());
+      }
+    }
+  }
+
+}
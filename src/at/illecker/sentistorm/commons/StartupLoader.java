@@ -0,0 +1,149 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.illecker.sentistorm.commons;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import at.illecker.sentistorm.commons.dict.FirstNames;
+import at.illecker.sentistorm.commons.dict.SentimentDictionary;
+import at.illecker.sentistorm.commons.dict.SlangCorrection;
+import at.illecker.sentistorm.commons.dict.StopWords;
+import at.illecker.sentistorm.commons.wordnet.WordNet;
+
+/**
+ * Loads the dictionary singletons of a worker concurrently.
+ *
+ * WordNet, SlangCorrection, FirstNames, StopWords and SentimentDictionary are
+ * otherwise initialized one after another by their first access. start
+ * submits them to a startup pool once per JVM, a later getInstance call only
+ * waits for the initialization of its own class.
+ */
+public class StartupLoader {
+  private static final Logger LOG = LoggerFactory
+      .getLogger(StartupLoader.class);
+  // futures of the started loads, empty until start is called
+  private static final List<Future<Object>> FUTURES =
+      new ArrayList<Future<Object>>();
+
+  /**
+   * Starts loading all resources, further calls are ignored.
+   */
+  public static synchronized void start() {
+    if (!FUTURES.isEmpty()) {
+      return;
+    }
+    final long startTime = System.currentTimeMillis();
+    int threads = Configuration.get("sentistorm.startup.threads", 5);
+    ExecutorService executorService = Executors.newFixedThreadPool(threads,
+        new ThreadFactory() {
+          private final AtomicInteger m_count = new AtomicInteger();
+
+          @Override
+          public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "startup-loader-"
+                + m_count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+
+    List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+    tasks.add(new Callable<Object>() {
+      @Override
+      public Object call() {
+        return WordNet.getInstance();
+      }
+    });
+    tasks.add(new Callable<Object>() {
+      @Override
+      public Object call() {
+        return SlangCorrection.getInstance();
+      }
+    });
+    tasks.add(new Callable<Object>() {
+      @Override
+      public Object call() {
+        return FirstNames.getInstance();
+      }
+    });
+    tasks.add(new Callable<Object>() {
+      @Override
+      public Object call() {
+        return StopWords.getInstance();
+      }
+    });
+    tasks.add(new Callable<Object>() {
+      @Override
+      public Object call() {
+        return SentimentDictionary.getInstance();
+      }
+    });
+
+    for (Callable<Object> task : tasks) {
+      FUTURES.add(executorService.submit(task));
+    }
+    executorService.submit(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          await();
+          LOG.info("Startup resources loaded after "
+              + (System.currentTimeMillis() - startTime) + " ms");
+        } catch (RuntimeException e) {
+          // already logged by await
+        }
+      }
+    });
+    // threads terminate when all loads are done
+    executorService.shutdown();
+  }
+
+  /**
+   * Starts loading all resources if not started yet and waits until all of
+   * them are loaded.
+   */
+  public static void await() {
+    List<Future<Object>> futures;
+    synchronized (StartupLoader.class) {
+      start();
+      futures = new ArrayList<Future<Object>>(FUTURES);
+    }
+    try {
+      for (Future<Object> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      LOG.error("InterruptedException: " + e.getMessage());
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      LOG.error("ExecutionException: " + e.getMessage());
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+}
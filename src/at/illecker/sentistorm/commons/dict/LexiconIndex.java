@@ -0,0 +1,150 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.illecker.sentistorm.commons.dict;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merged index of several sentiment word lists.
+ *
+ * Each term is stored once in an open addressing hash table and maps to a
+ * record of (wordListId, score) pairs held in primitive arrays and sorted by
+ * wordListId. A single lookup returns the scores of all word lists without
+ * boxing or allocation. The index is immutable and thread-safe.
+ */
+public class LexiconIndex {
+  private final String[] m_terms; // hash table, length is a power of two
+  private final int[] m_recordStart; // record start of each slot
+  private final int[] m_recordEnd; // record end of each slot (exclusive)
+  private final int[] m_wordListIds;
+  private final double[] m_scores;
+  private final int m_mask;
+  private final int m_size;
+
+  public LexiconIndex(List<? extends Map<String, Double>> wordLists) {
+    // collect records of each term
+    Map<String, List<Integer>> termLists = new LinkedHashMap<String, List<Integer>>();
+    int totalScores = 0;
+    for (int i = 0; i < wordLists.size(); i++) {
+      for (String term : wordLists.get(i).keySet()) {
+        List<Integer> ids = termLists.get(term);
+        if (ids == null) {
+          ids = new ArrayList<Integer>(2);
+          termLists.put(term, ids);
+        }
+        ids.add(i);
+        totalScores++;
+      }
+    }
+    m_size = termLists.size();
+
+    // load factor <= 0.5
+    int capacity = Integer.highestOneBit(Math.max(2, m_size) * 2);
+    if (capacity < m_size * 2) {
+      capacity <<= 1;
+    }
+    m_mask = capacity - 1;
+    m_terms = new String[capacity];
+    m_recordStart = new int[capacity];
+    m_recordEnd = new int[capacity];
+    m_wordListIds = new int[totalScores];
+    m_scores = new double[totalScores];
+
+    int pos = 0;
+    for (Map.Entry<String, List<Integer>> entry : termLists.entrySet()) {
+      String term = entry.getKey();
+      int slot = hash(term) & m_mask;
+      while (m_terms[slot] != null) {
+        slot = (slot + 1) & m_mask;
+      }
+      m_terms[slot] = term;
+      m_recordStart[slot] = pos;
+      for (Integer id : entry.getValue()) {
+        m_wordListIds[pos] = id;
+        m_scores[pos] = wordLists.get(id).get(term);
+        pos++;
+      }
+      m_recordEnd[slot] = pos;
+    }
+  }
+
+  private static int hash(String term) {
+    int h = term.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   *
+   * @return Returns the number of distinct terms
+   */
+  public int size() {
+    return m_size;
+  }
+
+  /**
+   *
+   * @param term the term
+   * @return Returns the slot of the term or -1 if the term is not indexed
+   */
+  public int find(String term) {
+    int slot = hash(term) & m_mask;
+    String current;
+    while ((current = m_terms[slot]) != null) {
+      if (current.equals(term)) {
+        return slot;
+      }
+      slot = (slot + 1) & m_mask;
+    }
+    return -1;
+  }
+
+  /**
+   *
+   * @param slot the slot returned by find
+   * @return Returns the first record position (inclusive)
+   */
+  public int getRecordStart(int slot) {
+    return m_recordStart[slot];
+  }
+
+  /**
+   *
+   * @param slot the slot returned by find
+   * @return Returns the last record position (exclusive)
+   */
+  public int getRecordEnd(int slot) {
+    return m_recordEnd[slot];
+  }
+
+  public int getWordListId(int recordPos) {
+    return m_wordListIds[recordPos];
+  }
+
+  public double getScore(int recordPos) {
+    return m_scores[recordPos];
+  }
+
+  @Override
+  public String toString() {
+    return "LexiconIndex [terms=" + m_size + ", scores=" + m_scores.length
+        + ", capacity=" + m_terms.length + "]";
+  }
+
+}
@@ -0,0 +1,137 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.illecker.sentistorm.commons.dict;
+
+import java.util.Arrays;
+
+/**
+ * Trie of prefixes which answers the longest prefix of a word in time
+ * proportional to the length of the word without allocating objects.
+ *
+ * Children are stored in sorted char arrays and looked up by binary search.
+ * The trie is not synchronized, lookups are thread-safe as long as no prefix
+ * is added concurrently.
+ */
+public class PrefixTrie<V> {
+  private Node m_root = new Node();
+  private int m_size = 0;
+
+  private static final class Node {
+    private char[] m_labels = new char[0];
+    private Node[] m_children = new Node[0];
+    private Object m_value = null;
+    private boolean m_isPrefix = false;
+
+    private Node child(char c) {
+      int i = Arrays.binarySearch(m_labels, c);
+      return (i >= 0) ? m_children[i] : null;
+    }
+
+    private Node getOrAddChild(char c) {
+      int i = Arrays.binarySearch(m_labels, c);
+      if (i >= 0) {
+        return m_children[i];
+      }
+      int pos = -(i + 1);
+      int length = m_labels.length;
+      char[] labels = new char[length + 1];
+      Node[] children = new Node[length + 1];
+      System.arraycopy(m_labels, 0, labels, 0, pos);
+      System.arraycopy(m_children, 0, children, 0, pos);
+      System.arraycopy(m_labels, pos, labels, pos + 1, length - pos);
+      System.arraycopy(m_children, pos, children, pos + 1, length - pos);
+      Node node = new Node();
+      labels[pos] = c;
+      children[pos] = node;
+      // publish complete arrays only
+      m_children = children;
+      m_labels = labels;
+      return node;
+    }
+  }
+
+  /**
+   * Adds a prefix or replaces the value of an existing prefix
+   *
+   * @param prefix the prefix
+   * @param value the value of the prefix
+   */
+  public void put(String prefix, V value) {
+    Node node = m_root;
+    for (int i = 0; i < prefix.length(); i++) {
+      node = node.getOrAddChild(prefix.charAt(i));
+    }
+    if (!node.m_isPrefix) {
+      m_size++;
+    }
+    node.m_value = value;
+    node.m_isPrefix = true;
+  }
+
+  public void clear() {
+    m_root = new Node();
+    m_size = 0;
+  }
+
+  public int size() {
+    return m_size;
+  }
+
+  /**
+   *
+   * @param word the word
+   * @return Returns the length of the longest prefix of the word or -1 if no
+   *         prefix matches
+   */
+  public int longestPrefixLength(String word) {
+    Node node = m_root;
+    int length = node.m_isPrefix ? 0 : -1;
+    for (int i = 0; i < word.length(); i++) {
+      node = node.child(word.charAt(i));
+      if (node == null) {
+        break;
+      }
+      if (node.m_isPrefix) {
+        length = i + 1;
+      }
+    }
+    return length;
+  }
+
+  /**
+   *
+   * @param word the word
+   * @return Returns the value of the longest prefix of the word or null if no
+   *         prefix matches
+   */
+  @SuppressWarnings("unchecked")
+  public V longestPrefixValue(String word) {
+    Node node = m_root;
+    Object value = node.m_isPrefix ? node.m_value : null;
+    for (int i = 0; i < word.length(); i++) {
+      node = node.child(word.charAt(i));
+      if (node == null) {
+        break;
+      }
+      if (node.m_isPrefix) {
+        value = node.m_value;
+      }
+    }
+    return (V) value;
+  }
+
+}
@@ -0,0 +1,127 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.illecker.sentistorm.commons.dict;
+
+import java.util.Arrays;
+
+/**
+ * Accumulates the sentiment scores of a sentence for each word list in
+ * primitive arrays. It is the allocation free counterpart of a map of
+ * {@link SentimentResult}s and uses the same thresholds.
+ */
+public class SentimentAccumulator {
+  private final int[] m_posCount;
+  private final int[] m_neutralCount;
+  private final int[] m_negCount;
+  private final int[] m_count;
+  private final double[] m_sum;
+  private final double[] m_maxPos; // NaN if not set
+  private final double[] m_maxNeg; // NaN if not set
+
+  public SentimentAccumulator(int wordListCount) {
+    m_posCount = new int[wordListCount];
+    m_neutralCount = new int[wordListCount];
+    m_negCount = new int[wordListCount];
+    m_count = new int[wordListCount];
+    m_sum = new double[wordListCount];
+    m_maxPos = new double[wordListCount];
+    m_maxNeg = new double[wordListCount];
+    clear();
+  }
+
+  public void clear() {
+    Arrays.fill(m_posCount, 0);
+    Arrays.fill(m_neutralCount, 0);
+    Arrays.fill(m_negCount, 0);
+    Arrays.fill(m_count, 0);
+    Arrays.fill(m_sum, 0);
+    Arrays.fill(m_maxPos, Double.NaN);
+    Arrays.fill(m_maxNeg, Double.NaN);
+  }
+
+  public int getWordListCount() {
+    return m_count.length;
+  }
+
+  public void addScore(int wordListId, double score) {
+    m_count[wordListId]++;
+    m_sum[wordListId] += score;
+
+    if (score < SentimentResult.NEGATIVE_THRESHOLD) { // NEGATIVE
+      m_negCount[wordListId]++;
+      if (Double.isNaN(m_maxNeg[wordListId])
+          || (score < m_maxNeg[wordListId])) { // MAX_NEG_SCORE
+        m_maxNeg[wordListId] = score;
+      }
+    } else if (score > SentimentResult.POSITIVE_THRESHOLD) { // POSITIVE
+      m_posCount[wordListId]++;
+      if (Double.isNaN(m_maxPos[wordListId])
+          || (score > m_maxPos[wordListId])) { // MAX_POS_SCORE
+        m_maxPos[wordListId] = score;
+      }
+    } else if ((score >= SentimentResult.NEGATIVE_THRESHOLD)
+        && (score <= SentimentResult.POSITIVE_THRESHOLD)) { // NEUTRAL
+      m_neutralCount[wordListId]++;
+    }
+  }
+
+  public int getPosCount(int wordListId) {
+    return m_posCount[wordListId];
+  }
+
+  public int getNeutralCount(int wordListId) {
+    return m_neutralCount[wordListId];
+  }
+
+  public int getNegCount(int wordListId) {
+    return m_negCount[wordListId];
+  }
+
+  public double getSum(int wordListId) {
+    return m_sum[wordListId];
+  }
+
+  public int getCount(int wordListId) {
+    return m_count[wordListId];
+  }
+
+  public boolean hasMaxPos(int wordListId) {
+    return !Double.isNaN(m_maxPos[wordListId]);
+  }
+
+  public double getMaxPos(int wordListId) {
+    return m_maxPos[wordListId];
+  }
+
+  public boolean hasMaxNeg(int wordListId) {
+    return !Double.isNaN(m_maxNeg[wordListId]);
+  }
+
+  public double getMaxNeg(int wordListId) {
+    return m_maxNeg[wordListId];
+  }
+
+  public String toString(int wordListId) {
+    return "SentimentResult [posCount=" + m_posCount[wordListId]
+        + ", neutralCount=" + m_neutralCount[wordListId] + ", negCount="
+        + m_negCount[wordListId] + ", sum=" + m_sum[wordListId] + ", count="
+        + m_count[wordListId] + ", maxPos="
+        + (hasMaxPos(wordListId) ? m_maxPos[wordListId] : null) + ", maxNeg="
+        + (hasMaxNeg(wordListId) ? m_maxNeg[wordListId] : null) + "]";
+  }
+
+}
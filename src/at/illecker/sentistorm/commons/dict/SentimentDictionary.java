@@ -24,8 +24,9 @@ import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import at.illecker.sentistorm.commons.ArkTag;
 import at.illecker.sentistorm.commons.Configuration;
-import at.illecker.sentistorm.commons.util.StringUtils;
+import at.illecker.sentistorm.commons.util.TokenClassifier;
 import at.illecker.sentistorm.commons.util.io.FileUtils;
 import at.illecker.sentistorm.commons.util.io.IOUtils;
 import at.illecker.sentistorm.commons.util.io.SerializationUtils;
@@ -44,6 +45,21 @@ public class SentimentDictionary {
   private WordNet m_wordnet;
   private List<Map<String, Double>> m_wordLists = null;
   private List<WordListMap<Double>> m_wordListMaps = null;
+  private LexiconIndex m_lexicon = null;
+  // word list ids and scores of a word, the dictionary is shared by all
+  // threads of the JVM
+  private final ThreadLocal<int[]> m_wordListIds = new ThreadLocal<int[]>() {
+    @Override
+    protected int[] initialValue() {
+      return new int[getSentimentWordListCount()];
+    }
+  };
+  private final ThreadLocal<double[]> m_scores = new ThreadLocal<double[]>() {
+    @Override
+    protected double[] initialValue() {
+      return new double[getSentimentWordListCount()];
+    }
+  };
 
   private SentimentDictionary() {
     m_wordnet = WordNet.getInstance();
@@ -92,6 +108,14 @@ public class SentimentDictionary {
         }
       }
     }
+
+    // merge all word lists, ids of wordListMaps start after m_wordLists
+    List<Map<String, Double>> wordListsToMerge = new ArrayList<Map<String, Double>>();
+    wordListsToMerge.addAll(m_wordLists);
+    wordListsToMerge.addAll(m_wordListMaps);
+    m_lexicon = new LexiconIndex(wordListsToMerge);
+    LOG.info("Merged " + wordListsToMerge.size() + " word lists into "
+        + m_lexicon);
   }
 
   public static SentimentDictionary getInstance() {
@@ -111,44 +135,98 @@ public class SentimentDictionary {
   }
 
   public Map<Integer, Double> getWordSentiments(String word) {
-    Map<Integer, Double> sentimentScores = new HashMap<Integer, Double>();
+    int[] wordListIds = m_wordListIds.get();
+    double[] scores = m_scores.get();
+    int count = getWordSentiments(word, wordListIds, scores);
 
-    // 1) check wordLists
-    for (int i = 0; i < m_wordLists.size(); i++) {
-      Double sentimentScore = m_wordLists.get(i).get(word);
-      if (sentimentScore != null) {
-        sentimentScores.put(i, sentimentScore);
-      }
+    if (LOGGING) {
+      LOG.info("getWordSentiment('" + word + "'): "
+          + toString(wordListIds, scores, count));
     }
+    if (count == 0) {
+      return null;
+    }
+    Map<Integer, Double> sentimentScores = new HashMap<Integer, Double>();
+    for (int i = 0; i < count; i++) {
+      sentimentScores.put(wordListIds[i], scores[i]);
+    }
+    return sentimentScores;
+  }
 
-    // 2) check wordListMaps including regex
+  /**
+   * Looks up the sentiment scores of a word in all word lists using one probe
+   * of the merged lexicon index. Wildcard entries of word lists including
+   * regex are only checked if the word list has no exact entry.
+   *
+   * @param word the word
+   * @param wordListIds output of the word list ids sorted ascending
+   * @param scores output of the scores
+   * @return Returns the number of word lists containing the word
+   */
+  private int getWordSentiments(String word, int[] wordListIds,
+      double[] scores) {
+    int count = 0;
     int wordListMapOffset = m_wordLists.size();
-    for (int i = 0; i < m_wordListMaps.size(); i++) {
-      Double sentimentScore = m_wordListMaps.get(i).matchKey(word);
-      if (sentimentScore != null) {
-        sentimentScores.put(i + wordListMapOffset, sentimentScore);
+    int wordListCount = wordListMapOffset + m_wordListMaps.size();
+    // next word list including regex to check for wildcard entries
+    int nextRegexWordList = wordListMapOffset;
+
+    int slot = m_lexicon.find(word);
+    if (slot >= 0) {
+      int end = m_lexicon.getRecordEnd(slot);
+      for (int k = m_lexicon.getRecordStart(slot); k < end; k++) {
+        int wordListId = m_lexicon.getWordListId(k);
+        while (nextRegexWordList < wordListId) {
+          count = addWildcardSentiment(word, nextRegexWordList, wordListIds,
+              scores, count);
+          nextRegexWordList++;
+        }
+        wordListIds[count] = wordListId;
+        scores[count] = m_lexicon.getScore(k);
+        count++;
+        if (wordListId >= nextRegexWordList) {
+          nextRegexWordList = wordListId + 1;
+        }
       }
     }
-
-    if (LOGGING) {
-      LOG.info("getWordSentiment('" + word + "'): " + sentimentScores);
+    while (nextRegexWordList < wordListCount) {
+      count = addWildcardSentiment(word, nextRegexWordList, wordListIds,
+          scores, count);
+      nextRegexWordList++;
     }
+    return count;
+  }
 
-    return (sentimentScores.size() > 0) ? sentimentScores : null;
+  private int addWildcardSentiment(String word, int wordListId,
+      int[] wordListIds, double[] scores, int count) {
+    Double score = m_wordListMaps.get(wordListId - m_wordLists.size())
+        .matchPrefix(word);
+    if (score != null) {
+      wordListIds[count] = wordListId;
+      scores[count] = score;
+      count++;
+    }
+    return count;
   }
 
-  private Map<Integer, Double> getWordSentiment(String word, String tag,
-      boolean usePTB) {
+  private int getWordSentiment(TaggedToken taggedToken, int[] wordListIds,
+      double[] scores) {
+    String word = taggedToken.token;
+    ArkTag arkTag = ArkTag.of(taggedToken);
     // convert tag to POS (NOUN, VERB, ADJECTIVE, ADVERB)
-    POS posTag;
-    if (usePTB) {
-      posTag = POSTag.convertPTB(tag);
-    } else {
-      posTag = POSTag.convertArk(tag);
-    }
+    POS posTag = POSTag.convertArk(arkTag);
 
-    boolean wordIsHashtag = tag.equals("#") || tag.equals("HT");
-    boolean wordIsEmoticon = tag.equals("E") || tag.equals("UH");
+    boolean wordIsHashtag;
+    boolean wordIsEmoticon;
+    if (arkTag != null) {
+      wordIsHashtag = (arkTag == ArkTag.HASHTAG);
+      wordIsEmoticon = (arkTag == ArkTag.EMOTICON);
+    } else { // Penn Treebank tags
+      wordIsHashtag = taggedToken.tag.equals("HT");
+      wordIsEmoticon = taggedToken.tag.equals("UH");
+    }
+    int properties = TokenClassifier.classify(word,
+        TokenClassifier.PUNCTUATIONS | TokenClassifier.UNDERSCORES);
 
     // check for Hashtags
     if (wordIsHashtag && (word.length() > 1)) {
@@ -157,12 +235,13 @@ public class SentimentDictionary {
       } else {
         word = word.substring(1);
       }
-    } else if ((!wordIsEmoticon) && StringUtils.consitsOfPunctuations(word)) {
+    } else if ((!wordIsEmoticon)
+        && TokenClassifier.isSet(properties, TokenClassifier.PUNCTUATIONS)) {
       // ignore all punctuations except emoticons
-      return null;
-    } else if (StringUtils.consitsOfUnderscores(word)) {
+      return 0;
+    } else if (TokenClassifier.isSet(properties, TokenClassifier.UNDERSCORES)) {
       // ignore tokens with one or more underscores
-      return null;
+      return 0;
     }
 
     // if word is not an emoticon then toLowerCase
@@ -170,18 +249,18 @@ public class SentimentDictionary {
       word = word.toLowerCase();
     }
 
-    Map<Integer, Double> sentimentScores = getWordSentiments(word);
-    // use word stemming if sentimentScore is null
-    if (sentimentScores == null) {
+    int count = getWordSentiments(word, wordListIds, scores);
+    // use word stemming if no sentiment score was found
+    if (count == 0) {
       if (LOGGING) {
         LOG.info("findStems for (" + word + "," + posTag + ")");
       }
       List<String> stemmedWords = m_wordnet.findStems(word, posTag);
       for (String stemmedWord : stemmedWords) {
         if (!stemmedWord.equals(word)) {
-          sentimentScores = getWordSentiments(stemmedWord);
+          count = getWordSentiments(stemmedWord, wordListIds, scores);
         }
-        if (sentimentScores != null) {
+        if (count > 0) {
           break;
         }
       }
@@ -189,9 +268,30 @@ public class SentimentDictionary {
 
     if (LOGGING) {
       LOG.info("getWordSentimentWithStemming('" + word + "'\'" + posTag
-          + "'): " + sentimentScores);
+          + "'): " + toString(wordListIds, scores, count));
+    }
+    return count;
+  }
+
+  /**
+   * Adds the sentiment scores of all words of a sentence to an accumulator
+   *
+   * @param sentence the tagged tokens of the sentence
+   * @param sentiments accumulator of getSentimentWordListCount() word lists
+   */
+  public void getSentenceSentiment(List<TaggedToken> sentence,
+      SentimentAccumulator sentiments) {
+    if (LOGGING) {
+      LOG.info("TaggedSentence: " + sentence.toString());
+    }
+    int[] wordListIds = m_wordListIds.get();
+    double[] scores = m_scores.get();
+    for (TaggedToken word : sentence) {
+      int count = getWordSentiment(word, wordListIds, scores);
+      for (int i = 0; i < count; i++) {
+        sentiments.addScore(wordListIds[i], scores[i]);
+      }
     }
-    return sentimentScores;
   }
 
   public Map<Integer, SentimentResult> getSentenceSentiment(
@@ -200,25 +300,19 @@ public class SentimentDictionary {
     if (LOGGING) {
       LOG.info("TaggedSentence: " + sentence.toString());
     }
+    int[] wordListIds = m_wordListIds.get();
+    double[] scores = m_scores.get();
     for (TaggedToken word : sentence) {
-      Map<Integer, Double> wordSentiments = getWordSentiment(word.token,
-          word.tag, false);
-      if (wordSentiments != null) {
-        for (Map.Entry<Integer, Double> wordSentiment : wordSentiments
-            .entrySet()) {
-
-          int key = wordSentiment.getKey();
-          double sentimentScore = wordSentiment.getValue();
-
-          SentimentResult sentimentResult = sentenceSentiments.get(key);
-          if (sentimentResult == null) {
-            sentimentResult = new SentimentResult();
-          }
-          // add score value
-          sentimentResult.addScore(sentimentScore);
-          // update sentimentResult
+      int count = getWordSentiment(word, wordListIds, scores);
+      for (int i = 0; i < count; i++) {
+        int key = wordListIds[i];
+        SentimentResult sentimentResult = sentenceSentiments.get(key);
+        if (sentimentResult == null) {
+          sentimentResult = new SentimentResult();
           sentenceSentiments.put(key, sentimentResult);
         }
+        // add score value
+        sentimentResult.addScore(scores[i]);
       }
     }
     if (LOGGING) {
@@ -227,6 +321,17 @@ public class SentimentDictionary {
     return (sentenceSentiments.size() > 0) ? sentenceSentiments : null;
   }
 
+  private static String toString(int[] wordListIds, double[] scores, int count) {
+    StringBuilder sb = new StringBuilder("{");
+    for (int i = 0; i < count; i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      sb.append(wordListIds[i]).append('=').append(scores[i]);
+    }
+    return sb.append('}').toString();
+  }
+
   public List<Map<Integer, SentimentResult>> getSentiment(
       List<List<TaggedToken>> tweets) {
     List<Map<Integer, SentimentResult>> tweetSentiments = new ArrayList<Map<Integer, SentimentResult>>();
@@ -16,16 +16,19 @@
  */
 package at.illecker.sentistorm.commons.dict;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.List;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.Map;
 import java.util.TreeMap;
 
+/**
+ * Word list which supports wildcard entries, e.g., 'abandon*' matches all
+ * words starting with 'abandon'. Wildcard entries are compiled into a
+ * {@link PrefixTrie}, the longest matching wildcard entry wins.
+ */
 public class WordListMap<V> extends TreeMap<String, V> {
   private static final long serialVersionUID = -8818638227574467468L;
-  private List<String> m_startStrings = new ArrayList<String>();
-  private boolean m_startStringsIsSorted = false;
+  private transient PrefixTrie<V> m_startStrings = new PrefixTrie<V>();
 
   @Override
   public V put(String key, V value) {
@@ -33,45 +36,59 @@ public class WordListMap<V> extends TreeMap<String, V> {
       String startString = key.substring(0, key.length() - 1);
       // LOG.info("Add startStrings: '" + key + "' startingWith: '" +
       // startString + "'");
-      m_startStrings.add(startString);
-      m_startStringsIsSorted = false;
+      m_startStrings.put(startString, value);
     }
     return super.put(key, value);
   }
 
-  private String searchForMatchingKey(String key) {
-    if (!m_startStringsIsSorted) {
-      Collections.sort(m_startStrings);
-      m_startStringsIsSorted = true;
+  @Override
+  public V remove(Object key) {
+    V value = super.remove(key);
+    if ((key instanceof String) && ((String) key).endsWith("*")) {
+      buildStartStrings();
     }
-    // Comparator checks if a key starts with given key string
-    Comparator<String> startsWithComparator = new Comparator<String>() {
-      public int compare(String currentItem, String key) {
-        if (key.startsWith(currentItem)) {
-          return 0;
-        }
-        return currentItem.compareTo(key);
-      }
-    };
+    return value;
+  }
 
-    // binarySearch in sorted list
-    int index = Collections.binarySearch(m_startStrings, key,
-        startsWithComparator);
-    if (index >= 0) {
-      return m_startStrings.get(index);
-    }
-    return null;
+  @Override
+  public void clear() {
+    super.clear();
+    m_startStrings.clear();
   }
 
   public V matchKey(String key) {
     V result = super.get(key);
     if (result == null) {
-      String matchingKey = searchForMatchingKey(key);
-      if (matchingKey != null) {
-        // LOG.info("Found match: " + key + "*" + " for " + key);
-        result = super.get(key + "*");
-      }
+      result = m_startStrings.longestPrefixValue(key);
     }
     return result;
   }
+
+  /**
+   *
+   * @param key the word
+   * @return Returns the value of the longest wildcard entry matching the word
+   *         or null
+   */
+  public V matchPrefix(String key) {
+    return m_startStrings.longestPrefixValue(key);
+  }
+
+  private void buildStartStrings() {
+    PrefixTrie<V> startStrings = new PrefixTrie<V>();
+    for (Map.Entry<String, V> entry : entrySet()) {
+      String key = entry.getKey();
+      if (key.endsWith("*")) {
+        startStrings.put(key.substring(0, key.length() - 1), entry.getValue());
+      }
+    }
+    m_startStrings = startStrings;
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException,
+      ClassNotFoundException {
+    in.defaultReadObject();
+    buildStartStrings();
+  }
+
 }
@@ -17,7 +17,6 @@
 package at.illecker.sentistorm.commons.featurevector;
 
 import java.util.List;
-import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,22 +38,41 @@ public class CombinedFeatureVectorGenerator extends FeatureVectorGenerator {
   private SentimentFeatureVectorGenerator m_sentimentFeatureVectorGenerator = null;
   private TfIdfFeatureVectorGenerator m_tfidfFeatureVectorGenerator = null;
   private POSFeatureVectorGenerator m_POSFeatureVectorGenerator = null;
+  private final boolean m_normalizePOSCounts;
+  private final TweetTfIdf m_tweetTfIdf;
 
   public CombinedFeatureVectorGenerator(boolean normalizePOSCounts,
       TweetTfIdf tweetTfIdf) {
+    m_normalizePOSCounts = normalizePOSCounts;
+    m_tweetTfIdf = tweetTfIdf;
     m_sentimentFeatureVectorGenerator = new SentimentFeatureVectorGenerator(1);
 
     m_POSFeatureVectorGenerator = new POSFeatureVectorGenerator(
-        normalizePOSCounts,
-        m_sentimentFeatureVectorGenerator.getFeatureVectorSize() + 1);
+        normalizePOSCounts, getPOSVectorStartId());
 
     m_tfidfFeatureVectorGenerator = new TfIdfFeatureVectorGenerator(tweetTfIdf,
-        m_sentimentFeatureVectorGenerator.getFeatureVectorSize()
-            + m_POSFeatureVectorGenerator.getFeatureVectorSize() + 1);
+        getTfIdfVectorStartId());
 
     LOG.info("VectorSize: " + getFeatureVectorSize());
   }
 
+  public boolean isNormalizePOSCounts() {
+    return m_normalizePOSCounts;
+  }
+
+  public TweetTfIdf getTweetTfIdf() {
+    return m_tweetTfIdf;
+  }
+
+  public int getPOSVectorStartId() {
+    return m_sentimentFeatureVectorGenerator.getFeatureVectorSize() + 1;
+  }
+
+  public int getTfIdfVectorStartId() {
+    return getPOSVectorStartId()
+        + m_POSFeatureVectorGenerator.getFeatureVectorSize();
+  }
+
   @Override
   public int getFeatureVectorSize() {
     return m_sentimentFeatureVectorGenerator.getFeatureVectorSize()
@@ -63,17 +81,14 @@ public class CombinedFeatureVectorGenerator extends FeatureVectorGenerator {
   }
 
   @Override
-  public Map<Integer, Double> generateFeatureVector(List<TaggedToken> tweet) {
-    Map<Integer, Double> featureVector = m_sentimentFeatureVectorGenerator
-        .generateFeatureVector(tweet);
-
-    featureVector.putAll(m_POSFeatureVectorGenerator
-        .generateFeatureVector(tweet));
+  public void generateFeatureVector(List<TaggedToken> tweet,
+      SparseVector.Builder featureVector) {
+    m_sentimentFeatureVectorGenerator.generateFeatureVector(tweet,
+        featureVector);
 
-    featureVector.putAll(m_tfidfFeatureVectorGenerator
-        .generateFeatureVector(tweet));
+    m_POSFeatureVectorGenerator.generateFeatureVector(tweet, featureVector);
 
-    return featureVector;
+    m_tfidfFeatureVectorGenerator.generateFeatureVector(tweet, featureVector);
   }
 
   public static void main(String[] args) {
@@ -110,14 +125,14 @@ public class CombinedFeatureVectorGenerator extends FeatureVectorGenerator {
 
     // Combined Feature Vector Generation
     for (List<TaggedToken> taggedTokens : taggedTweets) {
-      Map<Integer, Double> combinedFeatureVector = cfvg
+      SparseVector combinedFeatureVector = cfvg
           .generateFeatureVector(taggedTokens);
 
       // Generate feature vector string
       String featureVectorStr = "";
-      for (Map.Entry<Integer, Double> feature : combinedFeatureVector
-          .entrySet()) {
-        featureVectorStr += " " + feature.getKey() + ":" + feature.getValue();
+      for (int i = 0; i < combinedFeatureVector.size(); i++) {
+        featureVectorStr += " " + combinedFeatureVector.getIndex(i) + ":"
+            + combinedFeatureVector.getValue(i);
       }
       LOG.info("Tweet: '" + taggedTokens + "'");
       LOG.info("CombinedFeatureVector: " + featureVectorStr);
@@ -18,7 +18,6 @@ package at.illecker.sentistorm.commons.featurevector;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,19 +30,33 @@ public abstract class FeatureVectorGenerator {
 
   public abstract int getFeatureVectorSize();
 
-  public abstract Map<Integer, Double> generateFeatureVector(
-      List<TaggedToken> tweet);
+  /**
+   * Appends the features of a tweet to a builder
+   *
+   * @param tweet the tagged tokens of the tweet
+   * @param featureVector the builder the features are put into
+   */
+  public abstract void generateFeatureVector(List<TaggedToken> tweet,
+      SparseVector.Builder featureVector);
 
-  public List<Map<Integer, Double>> generateFeatureVectors(
+  public SparseVector generateFeatureVector(List<TaggedToken> tweet) {
+    SparseVector.Builder featureVector = new SparseVector.Builder();
+    generateFeatureVector(tweet, featureVector);
+    return featureVector.build();
+  }
+
+  public List<SparseVector> generateFeatureVectors(
       List<List<TaggedToken>> tweets) {
     return generateFeatureVectors(tweets, false);
   }
 
-  public List<Map<Integer, Double>> generateFeatureVectors(
+  public List<SparseVector> generateFeatureVectors(
       List<List<TaggedToken>> taggedTweets, boolean logging) {
-    List<Map<Integer, Double>> featuredVectors = new ArrayList<Map<Integer, Double>>();
+    List<SparseVector> featuredVectors = new ArrayList<SparseVector>();
+    SparseVector.Builder builder = new SparseVector.Builder();
     for (List<TaggedToken> tweet : taggedTweets) {
-      Map<Integer, Double> featureVector = generateFeatureVector(tweet);
+      generateFeatureVector(tweet, builder);
+      SparseVector featureVector = builder.build();
       if (logging) {
         LOG.info("Tweet: " + tweet);
         LOG.info("FeatureVector: " + featureVector);
@@ -0,0 +1,215 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.illecker.sentistorm.commons.featurevector;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import at.illecker.sentistorm.commons.ResourceRegistry;
+import at.illecker.sentistorm.commons.tfidf.TfIdfNormalization;
+import at.illecker.sentistorm.commons.tfidf.TfType;
+import at.illecker.sentistorm.commons.tfidf.TweetTfIdf;
+import at.illecker.sentistorm.commons.util.io.IOUtils;
+
+/**
+ * Versioned binary artifact of a prepared CombinedFeatureVectorGenerator.
+ *
+ * It stores the TfIdf settings, the IDF table with the term ids and the vector
+ * offsets of the partial generators, but none of the training tweets. An
+ * artifact loaded by the {@link ResourceRegistry} is shared by all users
+ * within the JVM, e.g., all FeatureGenerationBolt tasks of a worker, and each
+ * of them creates its own generator of the shared TweetTfIdf.
+ */
+public class FeatureVectorGeneratorFile {
+  private static final Logger LOG = LoggerFactory
+      .getLogger(FeatureVectorGeneratorFile.class);
+  private static final int MAGIC = 0x46564742; // "FVGB"
+  private static final int VERSION = 1;
+
+  private final TweetTfIdf m_tweetTfIdf;
+  private final boolean m_normalizePOSCounts;
+  private final int m_posVectorStartId;
+  private final int m_tfIdfVectorStartId;
+  private final int m_vectorSize;
+
+  private FeatureVectorGeneratorFile(TweetTfIdf tweetTfIdf,
+      boolean normalizePOSCounts, int posVectorStartId,
+      int tfIdfVectorStartId, int vectorSize) {
+    m_tweetTfIdf = tweetTfIdf;
+    m_normalizePOSCounts = normalizePOSCounts;
+    m_posVectorStartId = posVectorStartId;
+    m_tfIdfVectorStartId = tfIdfVectorStartId;
+    m_vectorSize = vectorSize;
+  }
+
+  public TweetTfIdf getTweetTfIdf() {
+    return m_tweetTfIdf;
+  }
+
+  /**
+   * Creates a new generator of the shared TweetTfIdf and checks that its
+   * vector layout matches the layout of the training.
+   */
+  public CombinedFeatureVectorGenerator createFeatureVectorGenerator() {
+    CombinedFeatureVectorGenerator fvg = new CombinedFeatureVectorGenerator(
+        m_normalizePOSCounts, m_tweetTfIdf);
+    if ((fvg.getPOSVectorStartId() != m_posVectorStartId)
+        || (fvg.getTfIdfVectorStartId() != m_tfIdfVectorStartId)
+        || (fvg.getFeatureVectorSize() != m_vectorSize)) {
+      LOG.error("Feature vector layout does not match the layout of the "
+          + "training! Expected POS start: " + m_posVectorStartId
+          + " TfIdf start: " + m_tfIdfVectorStartId + " size: "
+          + m_vectorSize);
+      throw new RuntimeException();
+    }
+    return fvg;
+  }
+
+  /**
+   * Writes the artifact to a temporary file which replaces the artifact file
+   * after it was closed, a failed write does not leave a truncated artifact.
+   */
+  public static void write(CombinedFeatureVectorGenerator fvg, String fileName) {
+    TweetTfIdf tweetTfIdf = fvg.getTweetTfIdf();
+    Map<String, Double> idf = tweetTfIdf.getInverseDocFreq();
+    // terms ordered by their ids
+    String[] terms = new String[tweetTfIdf.getTermIds().size()];
+    for (Map.Entry<String, Integer> termId : tweetTfIdf.getTermIds()
+        .entrySet()) {
+      terms[termId.getValue()] = termId.getKey();
+    }
+
+    File tmpFile = new File(fileName + ".tmp");
+    DataOutputStream out = null;
+    try {
+      out = new DataOutputStream(new BufferedOutputStream(
+          new FileOutputStream(tmpFile)));
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeUTF(tweetTfIdf.getTfType().name());
+      out.writeUTF(tweetTfIdf.getTfIdfNormalization().name());
+      out.writeBoolean(tweetTfIdf.isUsePOSTags());
+      out.writeBoolean(fvg.isNormalizePOSCounts());
+      out.writeInt(fvg.getPOSVectorStartId());
+      out.writeInt(fvg.getTfIdfVectorStartId());
+      out.writeInt(fvg.getFeatureVectorSize());
+      out.writeInt(terms.length);
+      for (String term : terms) {
+        out.writeUTF(term);
+        out.writeDouble(idf.get(term));
+      }
+      out.close();
+      out = null;
+
+      IOUtils.moveAtomically(tmpFile, new File(fileName));
+      LOG.info("Wrote FeatureVectorGenerator with " + terms.length
+          + " terms to " + fileName);
+    } catch (IOException e) {
+      LOG.error("IOException: " + e.getMessage());
+      throw new RuntimeException(e);
+    } finally {
+      if (out != null) {
+        try {
+          out.close();
+        } catch (IOException ignore) {
+        }
+      }
+      if (tmpFile.exists() && !tmpFile.delete()) {
+        LOG.error("Could not delete " + tmpFile);
+      }
+    }
+  }
+
+  /**
+   * Acquires the shared artifact of the file from the {@link ResourceRegistry}.
+   */
+  public static ResourceRegistry.Resource<FeatureVectorGeneratorFile> acquire(
+      final String fileName) {
+    return ResourceRegistry.acquireFile(fileName,
+        new ResourceRegistry.Loader<FeatureVectorGeneratorFile>() {
+          @Override
+          public FeatureVectorGeneratorFile load() {
+            return FeatureVectorGeneratorFile.load(fileName);
+          }
+        });
+  }
+
+  /**
+   * Loads an artifact, use the {@link ResourceRegistry} to share it within the
+   * JVM.
+   *
+   * @param fileName the artifact file within the jar or the file system
+   * @return Returns the artifact or null if the file could not be read
+   */
+  public static FeatureVectorGeneratorFile load(String fileName) {
+    long startTime = System.currentTimeMillis();
+    InputStream is = IOUtils.getInputStream(fileName);
+    if (is == null) {
+      return null;
+    }
+    DataInputStream in = new DataInputStream(is);
+    try {
+      if ((in.readInt() != MAGIC) || (in.readInt() != VERSION)) {
+        LOG.error("Unsupported FeatureVectorGenerator file: " + fileName);
+        throw new RuntimeException();
+      }
+      TfType tfType = TfType.valueOf(in.readUTF());
+      TfIdfNormalization normalization = TfIdfNormalization.valueOf(in
+          .readUTF());
+      boolean usePOSTags = in.readBoolean();
+      boolean normalizePOSCounts = in.readBoolean();
+      int posVectorStartId = in.readInt();
+      int tfIdfVectorStartId = in.readInt();
+      int vectorSize = in.readInt();
+      int size = in.readInt();
+      Map<String, Double> idf = new HashMap<String, Double>(2 * size);
+      Map<String, Integer> termIds = new HashMap<String, Integer>(2 * size);
+      for (int i = 0; i < size; i++) {
+        String term = in.readUTF();
+        idf.put(term, in.readDouble());
+        termIds.put(term, i);
+      }
+
+      LOG.info("Loaded FeatureVectorGenerator with " + size + " terms from "
+          + fileName + " in " + (System.currentTimeMillis() - startTime)
+          + " ms");
+      return new FeatureVectorGeneratorFile(
+          TweetTfIdf.createFromInverseDocFreq(idf, termIds, tfType,
+              normalization, usePOSTags), normalizePOSCounts,
+          posVectorStartId, tfIdfVectorStartId, vectorSize);
+    } catch (IOException e) {
+      LOG.error("IOException: " + e.getMessage());
+      return null;
+    } finally {
+      try {
+        in.close();
+      } catch (IOException ignore) {
+      }
+    }
+  }
+
+}
@@ -18,12 +18,11 @@ package at.illecker.sentistorm.commons.featurevector;
 
 import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import at.illecker.sentistorm.commons.ArkTag;
 import at.illecker.sentistorm.commons.Configuration;
 import cmu.arktweetnlp.Tagger.TaggedToken;
 
@@ -54,9 +53,8 @@ public class POSFeatureVectorGenerator extends FeatureVectorGenerator {
   }
 
   @Override
-  public Map<Integer, Double> generateFeatureVector(
-      List<TaggedToken> taggedTokens) {
-    Map<Integer, Double> resultFeatureVector = new TreeMap<Integer, Double>();
+  public void generateFeatureVector(List<TaggedToken> taggedTokens,
+      SparseVector.Builder resultFeatureVector) {
     double[] posTags = countPOSTagsFromTaggedTokens(taggedTokens, m_normalize);
     if (posTags != null) {
       if (posTags[0] != 0) // nouns
@@ -79,7 +77,6 @@ public class POSFeatureVectorGenerator extends FeatureVectorGenerator {
     if (LOGGING) {
       LOG.info("POStags: " + Arrays.toString(posTags));
     }
-    return resultFeatureVector;
   }
 
   private double[] countPOSTagsFromTaggedTokens(List<TaggedToken> taggedTokens,
@@ -90,25 +87,42 @@ public class POSFeatureVectorGenerator extends FeatureVectorGenerator {
     int wordCount = 0;
     for (TaggedToken word : taggedTokens) {
       wordCount++;
-      String arkTag = word.tag;
+      ArkTag arkTag = ArkTag.of(word);
+      if (arkTag == null) {
+        continue;
+      }
       // http://www.ark.cs.cmu.edu/TweetNLP/annot_guidelines.pdf
-      if (arkTag.equals("N") || arkTag.equals("O") || arkTag.equals("^")
-          || arkTag.equals("Z")) {
-        posTags[0]++;
-      } else if (arkTag.equals("V") || arkTag.equals("T")) {
-        posTags[1]++;
-      } else if (arkTag.equals("A")) {
-        posTags[2]++;
-      } else if (arkTag.equals("R")) {
-        posTags[3]++;
-      } else if (arkTag.equals("!")) {
-        posTags[4]++;
-      } else if (arkTag.equals(",")) {
-        posTags[5]++;
-      } else if (arkTag.equals("#")) {
-        posTags[6]++;
-      } else if (arkTag.equals("E")) {
-        posTags[7]++;
+      switch (arkTag) {
+        case COMMON_NOUN:
+        case PRONOUN:
+        case PROPER_NOUN:
+        case PROPER_NOUN_POSSESSIVE:
+          posTags[0]++;
+          break;
+        case VERB:
+        case VERB_PARTICLE:
+          posTags[1]++;
+          break;
+        case ADJECTIVE:
+          posTags[2]++;
+          break;
+        case ADVERB:
+          posTags[3]++;
+          break;
+        case INTERJECTION:
+          posTags[4]++;
+          break;
+        case PUNCTUATION:
+          posTags[5]++;
+          break;
+        case HASHTAG:
+          posTags[6]++;
+          break;
+        case EMOTICON:
+          posTags[7]++;
+          break;
+        default:
+          break;
       }
     }
     if (normalize) {
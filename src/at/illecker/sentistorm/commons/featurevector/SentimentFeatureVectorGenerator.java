@@ -17,15 +17,13 @@
 package at.illecker.sentistorm.commons.featurevector;
 
 import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import at.illecker.sentistorm.commons.Configuration;
 import at.illecker.sentistorm.commons.dict.SentimentDictionary;
-import at.illecker.sentistorm.commons.dict.SentimentResult;
+import at.illecker.sentistorm.commons.dict.SentimentAccumulator;
 import cmu.arktweetnlp.Tagger.TaggedToken;
 
 public class SentimentFeatureVectorGenerator extends FeatureVectorGenerator {
@@ -36,9 +34,13 @@ public class SentimentFeatureVectorGenerator extends FeatureVectorGenerator {
   private static final int VECTOR_SIZE = 7;
   private SentimentDictionary m_sentimentDict;
   private int m_vectorStartId = 1;
+  // reused for each tweet, a generator must not be shared between threads
+  private SentimentAccumulator m_tweetSentiments;
 
   public SentimentFeatureVectorGenerator() {
     this.m_sentimentDict = SentimentDictionary.getInstance();
+    this.m_tweetSentiments = new SentimentAccumulator(
+        m_sentimentDict.getSentimentWordListCount());
     LOG.info("VectorSize: " + getFeatureVectorSize());
   }
 
@@ -59,62 +61,56 @@ public class SentimentFeatureVectorGenerator extends FeatureVectorGenerator {
   }
 
   @Override
-  public Map<Integer, Double> generateFeatureVector(
-      List<TaggedToken> taggedTokens) {
+  public void generateFeatureVector(List<TaggedToken> taggedTokens,
+      SparseVector.Builder featureVector) {
 
-    Map<Integer, SentimentResult> tweetSentiments = m_sentimentDict
-        .getSentenceSentiment(taggedTokens);
+    m_tweetSentiments.clear();
+    m_sentimentDict.getSentenceSentiment(taggedTokens, m_tweetSentiments);
 
-    return generateFeatureVector(tweetSentiments);
+    generateFeatureVector(m_tweetSentiments, featureVector);
   }
 
-  private Map<Integer, Double> generateFeatureVector(
-      Map<Integer, SentimentResult> tweetSentiments) {
-    Map<Integer, Double> featureVector = new TreeMap<Integer, Double>();
-
-    if (tweetSentiments != null) {
-      for (Map.Entry<Integer, SentimentResult> tweetSentiment : tweetSentiments
-          .entrySet()) {
-
-        int key = tweetSentiment.getKey();
-        SentimentResult sentimentResult = tweetSentiment.getValue();
-        // LOG.info("TweetSentiment: " + sentimentResult);
-
-        if (sentimentResult.getPosCount() != 0) {
-          featureVector.put(m_vectorStartId + (key * VECTOR_SIZE),
-              (double) sentimentResult.getPosCount());
-        }
-        if (sentimentResult.getNeutralCount() != 0) {
-          featureVector.put(m_vectorStartId + (key * VECTOR_SIZE) + 1,
-              (double) sentimentResult.getNeutralCount());
-        }
-        if (sentimentResult.getNegCount() != 0) {
-          featureVector.put(m_vectorStartId + (key * VECTOR_SIZE) + 2,
-              (double) sentimentResult.getNegCount());
-        }
-        if (sentimentResult.getSum() != 0) {
-          featureVector.put(m_vectorStartId + (key * VECTOR_SIZE) + 3,
-              sentimentResult.getSum());
-        }
-        if (sentimentResult.getCount() != 0) {
-          featureVector.put(m_vectorStartId + (key * VECTOR_SIZE) + 4,
-              (double) sentimentResult.getCount());
-        }
-        if (sentimentResult.getMaxPos() != null) {
-          featureVector.put(m_vectorStartId + (key * VECTOR_SIZE) + 5,
-              sentimentResult.getMaxPos());
-        }
-        if (sentimentResult.getMaxNeg() != null) {
-          featureVector.put(m_vectorStartId + (key * VECTOR_SIZE) + 6,
-              sentimentResult.getMaxNeg());
-        }
-
-        if (LOGGING) {
-          LOG.info("TweetSentiment: " + sentimentResult);
-        }
+  private void generateFeatureVector(SentimentAccumulator tweetSentiments,
+      SparseVector.Builder featureVector) {
+
+    for (int key = 0; key < tweetSentiments.getWordListCount(); key++) {
+      if (tweetSentiments.getCount(key) == 0) {
+        continue;
+      }
+
+      if (tweetSentiments.getPosCount(key) != 0) {
+        featureVector.put(m_vectorStartId + (key * VECTOR_SIZE),
+            tweetSentiments.getPosCount(key));
+      }
+      if (tweetSentiments.getNeutralCount(key) != 0) {
+        featureVector.put(m_vectorStartId + (key * VECTOR_SIZE) + 1,
+            tweetSentiments.getNeutralCount(key));
+      }
+      if (tweetSentiments.getNegCount(key) != 0) {
+        featureVector.put(m_vectorStartId + (key * VECTOR_SIZE) + 2,
+            tweetSentiments.getNegCount(key));
+      }
+      if (tweetSentiments.getSum(key) != 0) {
+        featureVector.put(m_vectorStartId + (key * VECTOR_SIZE) + 3,
+            tweetSentiments.getSum(key));
+      }
+      if (tweetSentiments.getCount(key) != 0) {
+        featureVector.put(m_vectorStartId + (key * VECTOR_SIZE) + 4,
+            tweetSentiments.getCount(key));
+      }
+      if (tweetSentiments.hasMaxPos(key)) {
+        featureVector.put(m_vectorStartId + (key * VECTOR_SIZE) + 5,
+            tweetSentiments.getMaxPos(key));
+      }
+      if (tweetSentiments.hasMaxNeg(key)) {
+        featureVector.put(m_vectorStartId + (key * VECTOR_SIZE) + 6,
+            tweetSentiments.getMaxNeg(key));
+      }
+
+      if (LOGGING) {
+        LOG.info("TweetSentiment: " + tweetSentiments.toString(key));
       }
     }
-    return featureVector;
   }
 
 }
@@ -0,0 +1,209 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.illecker.sentistorm.commons.featurevector;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Immutable sparse feature vector stored in primitive arrays sorted by index.
+ *
+ * Use a {@link SparseVector.Builder} to create new vectors.
+ */
+public final class SparseVector implements Serializable {
+  private static final long serialVersionUID = 5378417962373474826L;
+  public static final SparseVector EMPTY = new SparseVector(new int[0],
+      new double[0]);
+  private final int[] m_indices;
+  private final double[] m_values;
+
+  /**
+   * Creates a sparse vector without copying the arrays
+   *
+   * @param indices feature indices sorted ascending without duplicates
+   * @param values feature values
+   */
+  public SparseVector(int[] indices, double[] values) {
+    if (indices.length != values.length) {
+      throw new IllegalArgumentException("Indices and values differ in length!");
+    }
+    this.m_indices = indices;
+    this.m_values = values;
+  }
+
+  public int size() {
+    return m_indices.length;
+  }
+
+  public int getIndex(int i) {
+    return m_indices[i];
+  }
+
+  public double getValue(int i) {
+    return m_values[i];
+  }
+
+  /**
+   *
+   * @return Returns the internal index array, must not be modified
+   */
+  public int[] getIndices() {
+    return m_indices;
+  }
+
+  /**
+   *
+   * @return Returns the internal value array, must not be modified
+   */
+  public double[] getValues() {
+    return m_values;
+  }
+
+  /**
+   *
+   * @param index the feature index
+   * @return Returns the value of the feature or 0 if not present
+   */
+  public double get(int index) {
+    int i = Arrays.binarySearch(m_indices, index);
+    return (i >= 0) ? m_values[i] : 0;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * Arrays.hashCode(m_indices) + Arrays.hashCode(m_values);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof SparseVector)) {
+      return false;
+    }
+    SparseVector other = (SparseVector) obj;
+    return Arrays.equals(m_indices, other.m_indices)
+        && Arrays.equals(m_values, other.m_values);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("{");
+    for (int i = 0; i < m_indices.length; i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      sb.append(m_indices[i]).append('=').append(m_values[i]);
+    }
+    return sb.append('}').toString();
+  }
+
+  /**
+   * Builder of sparse vectors. Features can be put in any order, putting an
+   * existing index replaces its value. A builder can be reused after build().
+   */
+  public static final class Builder {
+    private int[] m_indices;
+    private double[] m_values;
+    private int m_size = 0;
+    private boolean m_sorted = true;
+
+    public Builder() {
+      this(16);
+    }
+
+    public Builder(int initialCapacity) {
+      m_indices = new int[Math.max(1, initialCapacity)];
+      m_values = new double[m_indices.length];
+    }
+
+    public Builder put(int index, double value) {
+      if (m_size == m_indices.length) {
+        m_indices = Arrays.copyOf(m_indices, m_size * 2);
+        m_values = Arrays.copyOf(m_values, m_size * 2);
+      }
+      if ((m_size > 0) && (index <= m_indices[m_size - 1])) {
+        m_sorted = false;
+      }
+      m_indices[m_size] = index;
+      m_values[m_size] = value;
+      m_size++;
+      return this;
+    }
+
+    public Builder putAll(SparseVector vector) {
+      for (int i = 0; i < vector.size(); i++) {
+        put(vector.m_indices[i], vector.m_values[i]);
+      }
+      return this;
+    }
+
+    public int size() {
+      return m_size;
+    }
+
+    public Builder clear() {
+      m_size = 0;
+      m_sorted = true;
+      return this;
+    }
+
+    public SparseVector build() {
+      if (m_size == 0) {
+        return EMPTY;
+      }
+      if (!m_sorted) {
+        sort();
+      }
+      SparseVector vector = new SparseVector(Arrays.copyOf(m_indices, m_size),
+          Arrays.copyOf(m_values, m_size));
+      clear();
+      return vector;
+    }
+
+    private void sort() {
+      // stable insertion sort, vectors are small and mostly sorted
+      for (int i = 1; i < m_size; i++) {
+        int index = m_indices[i];
+        double value = m_values[i];
+        int j = i - 1;
+        while ((j >= 0) && (m_indices[j] > index)) {
+          m_indices[j + 1] = m_indices[j];
+          m_values[j + 1] = m_values[j];
+          j--;
+        }
+        m_indices[j + 1] = index;
+        m_values[j + 1] = value;
+      }
+      // remove duplicates, the last put value wins
+      int size = 0;
+      for (int i = 0; i < m_size; i++) {
+        if ((size > 0) && (m_indices[size - 1] == m_indices[i])) {
+          m_values[size - 1] = m_values[i];
+        } else {
+          m_indices[size] = m_indices[i];
+          m_values[size] = m_values[i];
+          size++;
+        }
+      }
+      m_size = size;
+      m_sorted = true;
+    }
+  }
+
+}
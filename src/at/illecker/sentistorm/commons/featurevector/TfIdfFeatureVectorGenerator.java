@@ -18,7 +18,6 @@ package at.illecker.sentistorm.commons.featurevector;
 
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -59,12 +58,20 @@ public class TfIdfFeatureVectorGenerator extends FeatureVectorGenerator {
   }
 
   @Override
-  public Map<Integer, Double> generateFeatureVector(List<TaggedToken> tweet) {
-    return generateFeatureVector(m_tweetTfIdf.tfIdfFromTaggedTokens(tweet));
+  public void generateFeatureVector(List<TaggedToken> tweet,
+      SparseVector.Builder featureVector) {
+    generateFeatureVector(m_tweetTfIdf.tfIdfFromTaggedTokens(tweet),
+        featureVector);
   }
 
-  public Map<Integer, Double> generateFeatureVector(Map<String, Double> tfIdf) {
-    Map<Integer, Double> resultFeatureVector = new TreeMap<Integer, Double>();
+  public SparseVector generateFeatureVector(Map<String, Double> tfIdf) {
+    SparseVector.Builder featureVector = new SparseVector.Builder();
+    generateFeatureVector(tfIdf, featureVector);
+    return featureVector.build();
+  }
+
+  public void generateFeatureVector(Map<String, Double> tfIdf,
+      SparseVector.Builder resultFeatureVector) {
 
     if (m_tweetTfIdf != null) {
       // Map<String, Double> idf = m_tweetTfIdf.getInverseDocFreq();
@@ -79,9 +86,8 @@ public class TfIdfFeatureVectorGenerator extends FeatureVectorGenerator {
       }
     }
     if (LOGGING) {
-      LOG.info("TfIdsFeatureVector: " + resultFeatureVector);
+      LOG.info("TfIdf: " + tfIdf);
     }
-    return resultFeatureVector;
   }
 
 }
@@ -0,0 +1,353 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.illecker.sentistorm.commons.svm;
+
+import java.util.Arrays;
+
+import libsvm.svm_model;
+import libsvm.svm_node;
+import libsvm.svm_parameter;
+
+import at.illecker.sentistorm.commons.featurevector.SparseVector;
+
+/**
+ * Batch prediction of a C-SVC or nu-SVC libsvm model.
+ *
+ * Feature vectors are collected in reusable primitive index/value buffers and
+ * the whole batch is scored in one pass. Each support vector is loaded once
+ * per batch and its kernel values are computed against all feature vectors of
+ * the batch. Predictions are equal to svm.svm_predict up to rounding errors.
+ * Linear models are scored by the weight vectors of a {@link LinearPredictor},
+ * RBF kernels use the squared norms of the support vectors, ||x||^2 + ||sv||^2
+ * - 2 * x * sv.
+ *
+ * A BatchPredictor is not thread-safe and should be used by one bolt only.
+ */
+public class BatchPredictor {
+  private final svm_model m_model;
+  private final int m_totalClasses;
+  private final int[] m_svStart;
+  private final boolean m_isClassification;
+  // predictor for linear or non-classification models
+  private final SVMPredictor m_predictor;
+  // support vectors and squared norms for RBF kernels
+  private final CSRMatrix m_supportVectors;
+  private final double[] m_svDense;
+
+  private int m_size = 0;
+  private int[] m_offsets; // start of the i-th vector, m_offsets[m_size] = nnz
+  private int[] m_indices;
+  private double[] m_values;
+  private double[] m_squaredNorms;
+
+  private double[] m_kernelValues; // [batch][support vector]
+  private double[] m_predictions;
+  private int[] m_votes;
+
+  public BatchPredictor(svm_model model) {
+    this(model, 64);
+  }
+
+  public BatchPredictor(svm_model model, int initialCapacity) {
+    this(model, null, initialCapacity);
+  }
+
+  /**
+   * @param model the model, its support vector nodes (SV) may be null for
+   *          linear and RBF classification models
+   * @param supportVectors the support vectors of the model or null to convert
+   *          the support vector nodes
+   * @param initialCapacity the initial batch size
+   */
+  public BatchPredictor(svm_model model, CSRMatrix supportVectors,
+      int initialCapacity) {
+    this.m_model = model;
+    this.m_totalClasses = model.nr_class;
+    this.m_isClassification = SVMPredictor.isClassification(model);
+    if (m_isClassification
+        && (model.param.kernel_type != svm_parameter.LINEAR)) {
+      this.m_predictor = null;
+    } else if (m_isClassification && (supportVectors != null)) {
+      this.m_predictor = new LinearPredictor(model, supportVectors);
+    } else {
+      this.m_predictor = SVMPredictor.create(model);
+    }
+    if ((m_predictor == null)
+        && (model.param.kernel_type == svm_parameter.RBF)) {
+      this.m_supportVectors = (supportVectors != null) ? supportVectors
+          : CSRMatrix.create(model.SV);
+      this.m_svDense = new double[m_supportVectors.getColumns()];
+    } else {
+      this.m_supportVectors = null;
+      this.m_svDense = null;
+    }
+
+    // start index of the support vectors of each class
+    m_svStart = new int[m_totalClasses];
+    if (m_isClassification) {
+      for (int i = 1; i < m_totalClasses; i++) {
+        m_svStart[i] = m_svStart[i - 1] + model.nSV[i - 1];
+      }
+    }
+
+    int capacity = Math.max(1, initialCapacity);
+    m_offsets = new int[capacity + 1];
+    m_indices = new int[capacity * 16];
+    m_values = new double[capacity * 16];
+    m_predictions = new double[capacity];
+    m_squaredNorms = new double[capacity];
+    m_kernelValues = new double[(m_predictor == null) ? capacity * model.l
+        : 0];
+    m_votes = new int[m_totalClasses];
+  }
+
+  public svm_model getModel() {
+    return m_model;
+  }
+
+  /**
+   *
+   * @return Returns the number of feature vectors in the current batch
+   */
+  public int size() {
+    return m_size;
+  }
+
+  public void clear() {
+    m_size = 0;
+  }
+
+  /**
+   * Adds a feature vector to the current batch
+   *
+   * @param featureVector the feature vector
+   * @return Returns the position of the feature vector within the batch
+   */
+  public int add(SparseVector featureVector) {
+    int size = featureVector.size();
+    ensureCapacity(m_size + 1, m_offsets[m_size] + size);
+    int pos = m_offsets[m_size];
+    System.arraycopy(featureVector.getIndices(), 0, m_indices, pos, size);
+    System.arraycopy(featureVector.getValues(), 0, m_values, pos, size);
+    double squaredNorm = 0;
+    for (int i = pos; i < pos + size; i++) {
+      squaredNorm += m_values[i] * m_values[i];
+    }
+    pos += size;
+    m_squaredNorms[m_size] = squaredNorm;
+    m_size++;
+    m_offsets[m_size] = pos;
+    return m_size - 1;
+  }
+
+  /**
+   * Scores all feature vectors of the current batch
+   *
+   * @return Returns the predicted classes of the batch, the returned array is
+   *         reused by the next call and only valid up to size()
+   */
+  public double[] predict() {
+    if (m_size == 0) {
+      return m_predictions;
+    }
+    if (m_predictor != null) {
+      // linear models are predicted by their weight vectors, regression and
+      // one-class models are not batched
+      for (int b = 0; b < m_size; b++) {
+        m_predictions[b] = m_predictor.predict(m_indices, m_values,
+            m_offsets[b], m_offsets[b + 1]);
+      }
+      return m_predictions;
+    }
+
+    // compute kernel values batch-wise for each support vector
+    int l = m_model.l;
+    if (m_supportVectors != null) {
+      computeRBFKernelValues();
+    } else {
+      svm_parameter param = m_model.param;
+      for (int i = 0; i < l; i++) {
+        svm_node[] sv = m_model.SV[i];
+        for (int b = 0; b < m_size; b++) {
+          m_kernelValues[(b * l) + i] = kernel(param, sv, m_offsets[b],
+              m_offsets[b + 1]);
+        }
+      }
+    }
+
+    // one-vs-one voting like svm.svm_predict
+    double[][] coef = m_model.sv_coef;
+    for (int b = 0; b < m_size; b++) {
+      int kOffset = b * l;
+      Arrays.fill(m_votes, 0);
+      int p = 0;
+      for (int i = 0; i < m_totalClasses; i++) {
+        for (int j = i + 1; j < m_totalClasses; j++) {
+          double sum = 0;
+          int si = m_svStart[i];
+          int sj = m_svStart[j];
+          int ci = m_model.nSV[i];
+          int cj = m_model.nSV[j];
+
+          double[] coef1 = coef[j - 1];
+          double[] coef2 = coef[i];
+          for (int k = 0; k < ci; k++) {
+            sum += coef1[si + k] * m_kernelValues[kOffset + si + k];
+          }
+          for (int k = 0; k < cj; k++) {
+            sum += coef2[sj + k] * m_kernelValues[kOffset + sj + k];
+          }
+          sum -= m_model.rho[p];
+
+          if (sum > 0) {
+            ++m_votes[i];
+          } else {
+            ++m_votes[j];
+          }
+          p++;
+        }
+      }
+
+      int voteMaxIdx = 0;
+      for (int i = 1; i < m_totalClasses; i++) {
+        if (m_votes[i] > m_votes[voteMaxIdx]) {
+          voteMaxIdx = i;
+        }
+      }
+      m_predictions[b] = m_model.label[voteMaxIdx];
+    }
+    return m_predictions;
+  }
+
+  private void computeRBFKernelValues() {
+    int l = m_model.l;
+    double gamma = m_model.param.gamma;
+    int[] rowOffsets = m_supportVectors.getRowOffsets();
+    int[] columns = m_supportVectors.getColumnIndices();
+    double[] svValues = m_supportVectors.getValues();
+
+    for (int i = 0; i < l; i++) {
+      // scatter support vector once and reuse it for the whole batch
+      for (int k = rowOffsets[i]; k < rowOffsets[i + 1]; k++) {
+        m_svDense[columns[k]] = svValues[k];
+      }
+      double svNorm = m_supportVectors.getSquaredNorm(i);
+
+      for (int b = 0; b < m_size; b++) {
+        double dot = 0;
+        for (int j = m_offsets[b]; j < m_offsets[b + 1]; j++) {
+          int index = m_indices[j];
+          if ((index >= 0) && (index < m_svDense.length)) {
+            dot += m_values[j] * m_svDense[index];
+          }
+        }
+        double squaredDistance = m_squaredNorms[b] + svNorm - 2 * dot;
+        // avoid negative distances caused by rounding errors
+        if (squaredDistance < 0) {
+          squaredDistance = 0;
+        }
+        m_kernelValues[(b * l) + i] = Math.exp(-gamma * squaredDistance);
+      }
+
+      for (int k = rowOffsets[i]; k < rowOffsets[i + 1]; k++) {
+        m_svDense[columns[k]] = 0;
+      }
+    }
+  }
+
+  private double kernel(svm_parameter param, svm_node[] sv, int start, int end) {
+    switch (param.kernel_type) {
+      case svm_parameter.LINEAR:
+        return dot(sv, start, end);
+      case svm_parameter.POLY:
+        return Math.pow(param.gamma * dot(sv, start, end) + param.coef0,
+            param.degree);
+      case svm_parameter.RBF:
+        return Math.exp(-param.gamma * squaredDistance(sv, start, end));
+      case svm_parameter.SIGMOID:
+        return Math.tanh(param.gamma * dot(sv, start, end) + param.coef0);
+      default:
+        throw new UnsupportedOperationException("Kernel type '"
+            + param.kernel_type + "' is not supported!");
+    }
+  }
+
+  private double dot(svm_node[] sv, int start, int end) {
+    double sum = 0;
+    int i = 0;
+    int j = start;
+    while ((i < sv.length) && (j < end)) {
+      if (sv[i].index == m_indices[j]) {
+        sum += sv[i].value * m_values[j];
+        i++;
+        j++;
+      } else if (sv[i].index > m_indices[j]) {
+        j++;
+      } else {
+        i++;
+      }
+    }
+    return sum;
+  }
+
+  private double squaredDistance(svm_node[] sv, int start, int end) {
+    double sum = 0;
+    int i = 0;
+    int j = start;
+    while ((i < sv.length) && (j < end)) {
+      if (sv[i].index == m_indices[j]) {
+        double d = sv[i].value - m_values[j];
+        sum += d * d;
+        i++;
+        j++;
+      } else if (sv[i].index > m_indices[j]) {
+        sum += m_values[j] * m_values[j];
+        j++;
+      } else {
+        sum += sv[i].value * sv[i].value;
+        i++;
+      }
+    }
+    while (i < sv.length) {
+      sum += sv[i].value * sv[i].value;
+      i++;
+    }
+    while (j < end) {
+      sum += m_values[j] * m_values[j];
+      j++;
+    }
+    return sum;
+  }
+
+  private void ensureCapacity(int vectors, int nonZeros) {
+    if (vectors >= m_offsets.length) {
+      int capacity = Math.max(vectors, m_predictions.length * 2);
+      m_offsets = Arrays.copyOf(m_offsets, capacity + 1);
+      m_predictions = new double[capacity];
+      m_squaredNorms = Arrays.copyOf(m_squaredNorms, capacity);
+      if (m_predictor == null) {
+        m_kernelValues = new double[capacity * m_model.l];
+      }
+    }
+    if (nonZeros > m_indices.length) {
+      int capacity = Math.max(nonZeros, m_indices.length * 2);
+      m_indices = Arrays.copyOf(m_indices, capacity);
+      m_values = Arrays.copyOf(m_values, capacity);
+    }
+  }
+
+}
@@ -0,0 +1,118 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.illecker.sentistorm.commons.svm;
+
+import libsvm.svm_node;
+
+/**
+ * Sparse matrix in compressed sparse row (CSR) format including the squared
+ * L2 norm of each row.
+ */
+public class CSRMatrix {
+  private final int m_rows;
+  private final int m_columns; // max column index + 1
+  private final int[] m_rowOffsets;
+  private final int[] m_columnIndices;
+  private final double[] m_values;
+  private final double[] m_squaredNorms;
+
+  public CSRMatrix(int[] rowOffsets, int[] columnIndices, double[] values) {
+    this.m_rows = rowOffsets.length - 1;
+    this.m_rowOffsets = rowOffsets;
+    this.m_columnIndices = columnIndices;
+    this.m_values = values;
+
+    int maxIndex = -1;
+    this.m_squaredNorms = new double[m_rows];
+    for (int i = 0; i < m_rows; i++) {
+      double sum = 0;
+      for (int k = rowOffsets[i]; k < rowOffsets[i + 1]; k++) {
+        sum += values[k] * values[k];
+        if (columnIndices[k] > maxIndex) {
+          maxIndex = columnIndices[k];
+        }
+      }
+      m_squaredNorms[i] = sum;
+    }
+    this.m_columns = maxIndex + 1;
+  }
+
+  public static CSRMatrix create(svm_node[][] rows) {
+    int nonZeros = 0;
+    for (svm_node[] row : rows) {
+      nonZeros += row.length;
+    }
+    int[] rowOffsets = new int[rows.length + 1];
+    int[] columnIndices = new int[nonZeros];
+    double[] values = new double[nonZeros];
+    int k = 0;
+    for (int i = 0; i < rows.length; i++) {
+      rowOffsets[i] = k;
+      for (svm_node node : rows[i]) {
+        columnIndices[k] = node.index;
+        values[k] = node.value;
+        k++;
+      }
+    }
+    rowOffsets[rows.length] = k;
+    return new CSRMatrix(rowOffsets, columnIndices, values);
+  }
+
+  public int getRows() {
+    return m_rows;
+  }
+
+  public int getColumns() {
+    return m_columns;
+  }
+
+  public int getNonZeros() {
+    return m_rowOffsets[m_rows];
+  }
+
+  public int[] getRowOffsets() {
+    return m_rowOffsets;
+  }
+
+  public int[] getColumnIndices() {
+    return m_columnIndices;
+  }
+
+  public double[] getValues() {
+    return m_values;
+  }
+
+  public double getSquaredNorm(int row) {
+    return m_squaredNorms[row];
+  }
+
+  /**
+   * Dot product of a row and a dense vector
+   *
+   * @param row the row
+   * @param dense dense vector of length getColumns()
+   * @return Returns the dot product
+   */
+  public double dot(int row, double[] dense) {
+    double sum = 0;
+    for (int k = m_rowOffsets[row]; k < m_rowOffsets[row + 1]; k++) {
+      sum += m_values[k] * dense[m_columnIndices[k]];
+    }
+    return sum;
+  }
+
+}
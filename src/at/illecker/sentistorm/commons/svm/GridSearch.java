@@ -0,0 +1,478 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.illecker.sentistorm.commons.svm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import libsvm.svm;
+import libsvm.svm_model;
+import libsvm.svm_node;
+import libsvm.svm_parameter;
+import libsvm.svm_problem;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import at.illecker.sentistorm.commons.Configuration;
+
+/**
+ * Grid search of C and gamma by n-fold cross validation.
+ *
+ * Every fold of every grid point is a separate task of a work-stealing
+ * ForkJoinPool. The stratified folds are split once and shared by all grid
+ * points. A grid point is pruned, i.e., its remaining folds are skipped, if
+ * even classifying all remaining test instances correctly cannot bring its
+ * accuracy within pruneMargin of the best accuracy so far. Results are passed
+ * to the Listener as soon as all folds of a grid point are done.
+ *
+ * The kernel rows of an RBF kernel depend on gamma only. For a C-SVC with RBF
+ * kernel the grid is therefore searched column by column, all values of C and
+ * all folds of a gamma read the rows of one KernelRowCache.
+ *
+ * Grid points are given as exponents of 2. Results are kept, so refine does not
+ * evaluate a grid point twice.
+ */
+public class GridSearch {
+  private static final Logger LOG = LoggerFactory.getLogger(GridSearch.class);
+  private final svm_problem m_svmProb;
+  private final svm_parameter m_svmParam;
+  private final Fold[] m_folds;
+  private final double m_pruneMargin;
+  private final int m_parallelism;
+  private final long m_cacheBytes;
+  private final Listener m_listener;
+  private final Map<String, Result> m_results =
+      new ConcurrentHashMap<String, Result>();
+  private Result m_best = null;
+
+  public interface Listener {
+    void onResult(Result result);
+  }
+
+  public static class Result {
+    private final double m_log2C;
+    private final double m_log2Gamma;
+    private final double m_accuracy;
+    private final boolean m_pruned;
+    private final long m_timeMs;
+
+    public Result(double log2C, double log2Gamma, double accuracy,
+        boolean pruned, long timeMs) {
+      m_log2C = log2C;
+      m_log2Gamma = log2Gamma;
+      m_accuracy = accuracy;
+      m_pruned = pruned;
+      m_timeMs = timeMs;
+    }
+
+    public double getLog2C() {
+      return m_log2C;
+    }
+
+    public double getLog2Gamma() {
+      return m_log2Gamma;
+    }
+
+    public double getC() {
+      return Math.pow(2, m_log2C);
+    }
+
+    public double getGamma() {
+      return Math.pow(2, m_log2Gamma);
+    }
+
+    /**
+     * @return Returns the cross validation accuracy or, if the grid point was
+     *         pruned, an upper bound of it
+     */
+    public double getAccuracy() {
+      return m_accuracy;
+    }
+
+    public boolean isPruned() {
+      return m_pruned;
+    }
+
+    /**
+     * @return Returns the summed training and prediction time of all folds
+     */
+    public long getTimeMs() {
+      return m_timeMs;
+    }
+
+    @Override
+    public String toString() {
+      return "C=2^" + m_log2C + " gamma=2^" + m_log2Gamma + " accuracy: "
+          + m_accuracy + (m_pruned ? " (pruned)" : "") + " time: " + m_timeMs
+          + " ms";
+    }
+  }
+
+  public GridSearch(svm_problem svmProb, svm_parameter svmParam, int nFold,
+      double pruneMargin, Listener listener) {
+    this(svmProb, svmParam, nFold, pruneMargin, listener, Runtime
+        .getRuntime().availableProcessors(), 0, ((long) Configuration.get(
+        "commons.svm.crossvalidation.cache.mb", 1024)) << 20);
+  }
+
+  /**
+   * @param cacheBytes the memory budget of the kernel row cache of a gamma, 0
+   *          trains each fold by libsvm
+   */
+  public GridSearch(svm_problem svmProb, svm_parameter svmParam, int nFold,
+      double pruneMargin, Listener listener, int parallelism, long seed,
+      long cacheBytes) {
+    m_svmProb = svmProb;
+    m_svmParam = svmParam;
+    m_folds = createFolds(svmProb, nFold, seed);
+    m_pruneMargin = pruneMargin;
+    m_listener = listener;
+    m_parallelism = parallelism;
+    m_cacheBytes = cacheBytes;
+  }
+
+  /**
+   * Evaluates all grid points of log2C x log2Gamma which were not evaluated
+   * before.
+   *
+   * @return Returns the results of all given grid points
+   */
+  public List<Result> search(double[] log2C, double[] log2Gamma) {
+    boolean shareKernelRows = (m_cacheBytes > 0)
+        && KernelCrossValidation.isSupported(m_svmParam);
+    // one group per gamma if the kernel rows are shared, otherwise all tasks
+    // are stolen from one group
+    List<List<FoldTask>> groups = new ArrayList<List<FoldTask>>();
+    int gridPoints = 0;
+    for (double gamma : log2Gamma) {
+      List<FoldTask> tasks = new ArrayList<FoldTask>();
+      KernelCrossValidation crossValidation = null;
+      for (double c : log2C) {
+        if (!m_results.containsKey(key(c, gamma))) {
+          if (shareKernelRows && (crossValidation == null)) {
+            crossValidation = new KernelCrossValidation(m_svmProb,
+                new KernelRowCache(m_svmProb, Math.pow(2, gamma), m_cacheBytes),
+                m_parallelism);
+          }
+          GridPoint point = new GridPoint(c, gamma);
+          for (Fold fold : m_folds) {
+            tasks.add(new FoldTask(point, fold, crossValidation));
+          }
+          gridPoints++;
+        }
+      }
+      if (!tasks.isEmpty()) {
+        if (shareKernelRows || groups.isEmpty()) {
+          groups.add(tasks);
+        } else {
+          groups.get(0).addAll(tasks);
+        }
+      }
+    }
+
+    LOG.info("GridSearch of " + gridPoints + " grid points with "
+        + m_folds.length + " folds"
+        + (shareKernelRows ? " sharing the kernel rows of each gamma" : ""));
+    long startTime = System.currentTimeMillis();
+    ForkJoinPool pool = new ForkJoinPool(m_parallelism);
+    try {
+      for (int i = 0; i < groups.size(); i++) {
+        final List<FoldTask> foldTasks = groups.get(i);
+        pool.invoke(new RecursiveAction() {
+          private static final long serialVersionUID = 1L;
+
+          @Override
+          protected void compute() {
+            invokeAll(foldTasks);
+          }
+        });
+        // release the kernel rows of the group before the next gamma
+        groups.set(i, null);
+      }
+    } finally {
+      pool.shutdown();
+    }
+    LOG.info("GridSearch finished after "
+        + (System.currentTimeMillis() - startTime) + " ms");
+
+    List<Result> results = new ArrayList<Result>();
+    for (double c : log2C) {
+      for (double gamma : log2Gamma) {
+        results.add(m_results.get(key(c, gamma)));
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Coarse-to-fine search, each level searches a 5x5 grid around the best grid
+   * point with half of the previous step sizes.
+   *
+   * @param log2CStep the step size of log2(C) of the previous search
+   * @param log2GammaStep the step size of log2(gamma) of the previous search
+   * @param levels the number of refinements
+   * @return Returns the best result
+   */
+  public Result refine(double log2CStep, double log2GammaStep, int levels) {
+    for (int level = 0; level < levels; level++) {
+      Result best = getBest();
+      if (best == null) {
+        break;
+      }
+      log2CStep /= 2;
+      log2GammaStep /= 2;
+      search(range(best.getLog2C(), log2CStep),
+          range(best.getLog2Gamma(), log2GammaStep));
+    }
+    return getBest();
+  }
+
+  public synchronized Result getBest() {
+    return m_best;
+  }
+
+  /**
+   * @return Returns all results sorted by accuracy descending
+   */
+  public List<Result> getResults() {
+    List<Result> results = new ArrayList<Result>(m_results.values());
+    Collections.sort(results, new Comparator<Result>() {
+      @Override
+      public int compare(Result r1, Result r2) {
+        return Double.compare(r2.getAccuracy(), r1.getAccuracy());
+      }
+    });
+    return results;
+  }
+
+  /**
+   * @return Returns the exponents from min to max (inclusive) by step
+   */
+  public static double[] grid(double min, double max, double step) {
+    int n = (int) Math.floor((max - min) / step + 1e-9) + 1;
+    double[] grid = new double[n];
+    for (int i = 0; i < n; i++) {
+      grid[i] = min + i * step;
+    }
+    return grid;
+  }
+
+  private static double[] range(double center, double step) {
+    return grid(center - 2 * step, center + 2 * step, step);
+  }
+
+  private static String key(double log2C, double log2Gamma) {
+    return log2C + ":" + log2Gamma;
+  }
+
+  private synchronized double getBestAccuracy() {
+    return (m_best != null) ? m_best.getAccuracy() : -1;
+  }
+
+  private synchronized void publish(Result result) {
+    m_results.put(key(result.getLog2C(), result.getLog2Gamma()), result);
+    if ((!result.isPruned())
+        && ((m_best == null)
+            || (result.getAccuracy() > m_best.getAccuracy()))) {
+      m_best = result;
+    }
+    LOG.info("GridSearch " + result);
+    if (m_listener != null) {
+      m_listener.onResult(result);
+    }
+  }
+
+  /**
+   * Splits the instances into stratified folds, the instances of each class
+   * are shuffled and distributed round robin.
+   *
+   * @return Returns the test instances of each fold
+   */
+  static int[][] stratifiedFolds(double[] y, int nFold, long seed) {
+    Map<Double, List<Integer>> classes = new HashMap<Double, List<Integer>>();
+    for (int i = 0; i < y.length; i++) {
+      List<Integer> instances = classes.get(y[i]);
+      if (instances == null) {
+        instances = new ArrayList<Integer>();
+        classes.put(y[i], instances);
+      }
+      instances.add(i);
+    }
+    List<List<Integer>> foldInstances = new ArrayList<List<Integer>>();
+    for (int f = 0; f < nFold; f++) {
+      foldInstances.add(new ArrayList<Integer>());
+    }
+    Random rand = new Random(seed);
+    int f = 0;
+    for (List<Integer> instances : classes.values()) {
+      Collections.shuffle(instances, rand);
+      for (Integer i : instances) {
+        foldInstances.get(f).add(i);
+        f = (f + 1) % nFold;
+      }
+    }
+
+    int[][] folds = new int[nFold][];
+    for (f = 0; f < nFold; f++) {
+      List<Integer> test = foldInstances.get(f);
+      folds[f] = new int[test.size()];
+      for (int j = 0; j < folds[f].length; j++) {
+        folds[f][j] = test.get(j);
+      }
+    }
+    return folds;
+  }
+
+  private static Fold[] createFolds(svm_problem svmProb, int nFold, long seed) {
+    int[][] testFolds = stratifiedFolds(svmProb.y, nFold, seed);
+    Fold[] folds = new Fold[testFolds.length];
+    for (int f = 0; f < testFolds.length; f++) {
+      int[] test = testFolds[f];
+      boolean[] isTest = new boolean[svmProb.l];
+      for (int i : test) {
+        isTest[i] = true;
+      }
+      svm_problem train = new svm_problem();
+      train.l = svmProb.l - test.length;
+      train.x = new svm_node[train.l][];
+      train.y = new double[train.l];
+      int j = 0;
+      for (int i = 0; i < svmProb.l; i++) {
+        if (!isTest[i]) {
+          train.x[j] = svmProb.x[i];
+          train.y[j] = svmProb.y[i];
+          j++;
+        }
+      }
+      folds[f] = new Fold(train, test);
+    }
+    return folds;
+  }
+
+  private static final class Fold {
+    final svm_problem m_train;
+    final int[] m_test;
+
+    Fold(svm_problem train, int[] test) {
+      m_train = train;
+      m_test = test;
+    }
+  }
+
+  private final class GridPoint {
+    final double m_log2C;
+    final double m_log2Gamma;
+    final AtomicInteger m_remainingFolds = new AtomicInteger(m_folds.length);
+    // test instances of the folds which are not done yet
+    final AtomicInteger m_remainingInstances = new AtomicInteger(m_svmProb.l);
+    final AtomicInteger m_correct = new AtomicInteger();
+    final AtomicInteger m_timeMs = new AtomicInteger();
+    volatile boolean m_pruned = false;
+
+    GridPoint(double log2C, double log2Gamma) {
+      m_log2C = log2C;
+      m_log2Gamma = log2Gamma;
+    }
+
+    double upperBound() {
+      return (m_correct.get() + m_remainingInstances.get())
+          / (double) m_svmProb.l;
+    }
+
+    void checkPruning() {
+      if ((!m_pruned)
+          && (upperBound() < getBestAccuracy() - m_pruneMargin)) {
+        m_pruned = true;
+      }
+    }
+
+    void foldDone(int testInstances) {
+      m_remainingInstances.addAndGet(-testInstances);
+      checkPruning();
+      if (m_remainingFolds.decrementAndGet() == 0) {
+        double accuracy = m_pruned ? upperBound() : m_correct.get()
+            / (double) m_svmProb.l;
+        publish(new Result(m_log2C, m_log2Gamma, accuracy, m_pruned,
+            m_timeMs.get()));
+      }
+    }
+  }
+
+  private final class FoldTask extends RecursiveAction {
+    private static final long serialVersionUID = 7815367346813582263L;
+    private final GridPoint m_point;
+    private final Fold m_fold;
+    // null trains the fold by libsvm
+    private final KernelCrossValidation m_crossValidation;
+
+    FoldTask(GridPoint point, Fold fold,
+        KernelCrossValidation crossValidation) {
+      m_point = point;
+      m_fold = fold;
+      m_crossValidation = crossValidation;
+    }
+
+    @Override
+    protected void compute() {
+      m_point.checkPruning();
+      if (m_point.m_pruned) {
+        // count skipped folds as correct for the upper bound
+        m_point.m_correct.addAndGet(m_fold.m_test.length);
+        m_point.foldDone(m_fold.m_test.length);
+        return;
+      }
+
+      long startTime = System.currentTimeMillis();
+      svm_parameter param = (svm_parameter) m_svmParam.clone();
+      param.C = Math.pow(2, m_point.m_log2C);
+      param.gamma = Math.pow(2, m_point.m_log2Gamma);
+
+      int correct = 0;
+      if (m_crossValidation != null) {
+        double[] predicted = m_crossValidation.crossValidateFold(param,
+            m_fold.m_test);
+        for (int k = 0; k < predicted.length; k++) {
+          if (predicted[k] == m_svmProb.y[m_fold.m_test[k]]) {
+            correct++;
+          }
+        }
+      } else {
+        svm_model model = svm.svm_train(m_fold.m_train, param);
+        for (int i : m_fold.m_test) {
+          if (svm.svm_predict(model, m_svmProb.x[i]) == m_svmProb.y[i]) {
+            correct++;
+          }
+        }
+      }
+      m_point.m_correct.addAndGet(correct);
+      m_point.m_timeMs
+          .addAndGet((int) (System.currentTimeMillis() - startTime));
+      m_point.foldDone(m_fold.m_test.length);
+    }
+  }
+
+}
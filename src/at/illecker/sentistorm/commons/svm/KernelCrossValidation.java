@@ -0,0 +1,448 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.illecker.sentistorm.commons.svm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import libsvm.svm_parameter;
+import libsvm.svm_problem;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * n-fold cross validation of a C-SVC with RBF kernel whose folds read the
+ * kernel values from one shared KernelRowCache.
+ *
+ * Each fold trains the one-against-one binary problems like libsvm, using an
+ * SMO solver with the second order working set selection of libsvm (without
+ * shrinking), and predicts its test instances by voting. The cache can be
+ * reused for further cross validations with the same gamma, e.g., different
+ * values of C.
+ */
+public class KernelCrossValidation {
+  private static final Logger LOG = LoggerFactory
+      .getLogger(KernelCrossValidation.class);
+  private static final double TAU = 1e-12;
+  private final svm_problem m_svmProb;
+  private final KernelRowCache m_cache;
+  private final int m_parallelism;
+
+  public KernelCrossValidation(svm_problem svmProb, double gamma,
+      long cacheBytes) {
+    this(svmProb, new KernelRowCache(svmProb, gamma, cacheBytes), Runtime
+        .getRuntime().availableProcessors());
+  }
+
+  public KernelCrossValidation(svm_problem svmProb, KernelRowCache cache,
+      int parallelism) {
+    m_svmProb = svmProb;
+    m_cache = cache;
+    m_parallelism = parallelism;
+  }
+
+  public static boolean isSupported(svm_parameter svmParam) {
+    return (svmParam.svm_type == svm_parameter.C_SVC)
+        && (svmParam.kernel_type == svm_parameter.RBF);
+  }
+
+  public KernelRowCache getCache() {
+    return m_cache;
+  }
+
+  /**
+   * @param svmParam the parameters, gamma must match the gamma of the cache
+   * @param nFold the number of folds
+   * @param seed the seed of the stratified fold split
+   * @return Returns the predicted label of each instance
+   */
+  public double[] crossValidate(final svm_parameter svmParam, int nFold,
+      long seed) {
+    if (!isSupported(svmParam) || (svmParam.gamma != m_cache.getGamma())) {
+      LOG.error("Only C-SVC with RBF kernel and gamma=" + m_cache.getGamma()
+          + " is supported!");
+      throw new RuntimeException();
+    }
+    final double[] target = new double[m_svmProb.l];
+    final int[][] folds = GridSearch.stratifiedFolds(m_svmProb.y, nFold, seed);
+
+    ExecutorService executorService = Executors
+        .newFixedThreadPool(m_parallelism);
+    try {
+      List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+      for (int f = 0; f < nFold; f++) {
+        final int fold = f;
+        tasks.add(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            double[] predicted = crossValidateFold(svmParam, folds[fold]);
+            for (int k = 0; k < predicted.length; k++) {
+              target[folds[fold][k]] = predicted[k];
+            }
+            return null;
+          }
+        });
+      }
+      for (Future<Void> future : executorService.invokeAll(tasks)) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      LOG.error("InterruptedException: " + e.getMessage());
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      LOG.error("ExecutionException: " + e.getMessage());
+      throw new RuntimeException(e.getCause());
+    } finally {
+      executorService.shutdown();
+    }
+    LOG.info(m_cache.toString());
+    return target;
+  }
+
+  /**
+   * Trains on all instances except the test instances and predicts them.
+   *
+   * @param svmParam the parameters, gamma must match the gamma of the cache
+   * @param test the indices of the test instances in the problem
+   * @return Returns the predicted label of each test instance
+   */
+  double[] crossValidateFold(svm_parameter svmParam, int[] test) {
+    // train instances grouped by label in order of the first occurrence
+    List<Double> labels = new ArrayList<Double>();
+    List<List<Integer>> classes = new ArrayList<List<Integer>>();
+    boolean[] isTest = new boolean[m_svmProb.l];
+    for (int i : test) {
+      isTest[i] = true;
+    }
+    for (int i = 0; i < m_svmProb.l; i++) {
+      if (!isTest[i]) {
+        int label = labels.indexOf(m_svmProb.y[i]);
+        if (label == -1) {
+          label = labels.size();
+          labels.add(m_svmProb.y[i]);
+          classes.add(new ArrayList<Integer>());
+        }
+        classes.get(label).add(i);
+      }
+    }
+    int nrClass = labels.size();
+
+    // weighted C per label
+    double[] weightedC = new double[nrClass];
+    for (int c = 0; c < nrClass; c++) {
+      weightedC[c] = svmParam.C;
+      for (int w = 0; w < svmParam.nr_weight; w++) {
+        if (svmParam.weight_label[w] == labels.get(c)) {
+          weightedC[c] *= svmParam.weight[w];
+        }
+      }
+    }
+
+    // train one-against-one binary problems
+    int nrPairs = nrClass * (nrClass - 1) / 2;
+    int[][] svIndices = new int[nrPairs][];
+    double[][] svCoefs = new double[nrPairs][];
+    double[] rho = new double[nrPairs];
+    int p = 0;
+    for (int s = 0; s < nrClass; s++) {
+      for (int t = s + 1; t < nrClass; t++) {
+        List<Integer> sInstances = classes.get(s);
+        List<Integer> tInstances = classes.get(t);
+        int l = sInstances.size() + tInstances.size();
+        int[] indices = new int[l];
+        byte[] y = new byte[l];
+        for (int k = 0; k < sInstances.size(); k++) {
+          indices[k] = sInstances.get(k);
+          y[k] = +1;
+        }
+        for (int k = 0; k < tInstances.size(); k++) {
+          indices[sInstances.size() + k] = tInstances.get(k);
+          y[sInstances.size() + k] = -1;
+        }
+
+        double[] alpha = new double[l];
+        rho[p] = solve(indices, y, weightedC[s], weightedC[t], svmParam.eps,
+            alpha);
+
+        // keep support vectors only
+        int nSV = 0;
+        for (int k = 0; k < l; k++) {
+          if (alpha[k] > 0) {
+            nSV++;
+          }
+        }
+        svIndices[p] = new int[nSV];
+        svCoefs[p] = new double[nSV];
+        nSV = 0;
+        for (int k = 0; k < l; k++) {
+          if (alpha[k] > 0) {
+            svIndices[p][nSV] = indices[k];
+            svCoefs[p][nSV] = y[k] * alpha[k];
+            nSV++;
+          }
+        }
+        p++;
+      }
+    }
+
+    // predict test instances by voting
+    double[] predicted = new double[test.length];
+    int[] votes = new int[nrClass];
+    for (int n = 0; n < test.length; n++) {
+      float[] row = m_cache.getRow(test[n]);
+      Arrays.fill(votes, 0);
+      p = 0;
+      for (int s = 0; s < nrClass; s++) {
+        for (int t = s + 1; t < nrClass; t++) {
+          double sum = -rho[p];
+          for (int k = 0; k < svIndices[p].length; k++) {
+            sum += svCoefs[p][k] * row[svIndices[p][k]];
+          }
+          if (sum > 0) {
+            votes[s]++;
+          } else {
+            votes[t]++;
+          }
+          p++;
+        }
+      }
+      int maxVote = 0;
+      for (int c = 1; c < nrClass; c++) {
+        if (votes[c] > votes[maxVote]) {
+          maxVote = c;
+        }
+      }
+      predicted[n] = labels.get(maxVote);
+    }
+    return predicted;
+  }
+
+  /**
+   * Solves the dual of a binary C-SVC by SMO, see Fan et al. "Working set
+   * selection using second order information for training SVM", JMLR 2005
+   *
+   * @param indices the indices of the instances in the problem
+   * @param y the labels +1 or -1
+   * @param cp the C of positive instances
+   * @param cn the C of negative instances
+   * @param eps the stopping tolerance
+   * @param alpha the resulting alphas
+   * @return Returns rho, the negative bias of the decision function
+   */
+  private double solve(int[] indices, byte[] y, double cp, double cn,
+      double eps, double[] alpha) {
+    int l = indices.length;
+    // gradient of the dual objective, G = Q alpha - e with alpha = 0
+    double[] G = new double[l];
+    Arrays.fill(G, -1);
+    double[] C = new double[l];
+    for (int k = 0; k < l; k++) {
+      C[k] = (y[k] > 0) ? cp : cn;
+    }
+    // K(x, x) = 1 for the RBF kernel
+    final double qd = 1;
+
+    int maxIter = Math.max(10000000,
+        (l > Integer.MAX_VALUE / 100) ? Integer.MAX_VALUE : 100 * l);
+    int iter = 0;
+    while (iter < maxIter) {
+      // select i maximizing -y_i G_i over I_up
+      double gMax = Double.NEGATIVE_INFINITY;
+      int i = -1;
+      for (int t = 0; t < l; t++) {
+        if (y[t] == +1) {
+          if ((alpha[t] < C[t]) && (-G[t] >= gMax)) {
+            gMax = -G[t];
+            i = t;
+          }
+        } else {
+          if ((alpha[t] > 0) && (G[t] >= gMax)) {
+            gMax = G[t];
+            i = t;
+          }
+        }
+      }
+      if (i == -1) {
+        break;
+      }
+      float[] rowI = m_cache.getRow(indices[i]);
+
+      // select j by the second order approximation of the objective decrease
+      double gMax2 = Double.NEGATIVE_INFINITY;
+      int j = -1;
+      double objDiffMin = Double.POSITIVE_INFINITY;
+      for (int t = 0; t < l; t++) {
+        double qIT = y[i] * y[t] * rowI[indices[t]];
+        if (y[t] == +1) {
+          if (alpha[t] > 0) {
+            double gradDiff = gMax + G[t];
+            if (G[t] >= gMax2) {
+              gMax2 = G[t];
+            }
+            if (gradDiff > 0) {
+              double quadCoef = qd + qd - 2.0 * y[i] * qIT;
+              double objDiff = -(gradDiff * gradDiff)
+                  / ((quadCoef > 0) ? quadCoef : TAU);
+              if (objDiff <= objDiffMin) {
+                j = t;
+                objDiffMin = objDiff;
+              }
+            }
+          }
+        } else {
+          if (alpha[t] < C[t]) {
+            double gradDiff = gMax - G[t];
+            if (-G[t] >= gMax2) {
+              gMax2 = -G[t];
+            }
+            if (gradDiff > 0) {
+              double quadCoef = qd + qd + 2.0 * y[i] * qIT;
+              double objDiff = -(gradDiff * gradDiff)
+                  / ((quadCoef > 0) ? quadCoef : TAU);
+              if (objDiff <= objDiffMin) {
+                j = t;
+                objDiffMin = objDiff;
+              }
+            }
+          }
+        }
+      }
+      if ((gMax + gMax2 < eps) || (j == -1)) {
+        break;
+      }
+      iter++;
+      float[] rowJ = m_cache.getRow(indices[j]);
+      double qIJ = y[i] * y[j] * rowI[indices[j]];
+
+      // update alpha[i] and alpha[j]
+      double oldAlphaI = alpha[i];
+      double oldAlphaJ = alpha[j];
+      double cI = C[i];
+      double cJ = C[j];
+      if (y[i] != y[j]) {
+        double quadCoef = qd + qd + 2 * qIJ;
+        if (quadCoef <= 0) {
+          quadCoef = TAU;
+        }
+        double delta = (-G[i] - G[j]) / quadCoef;
+        double diff = alpha[i] - alpha[j];
+        alpha[i] += delta;
+        alpha[j] += delta;
+        if (diff > 0) {
+          if (alpha[j] < 0) {
+            alpha[j] = 0;
+            alpha[i] = diff;
+          }
+        } else {
+          if (alpha[i] < 0) {
+            alpha[i] = 0;
+            alpha[j] = -diff;
+          }
+        }
+        if (diff > cI - cJ) {
+          if (alpha[i] > cI) {
+            alpha[i] = cI;
+            alpha[j] = cI - diff;
+          }
+        } else {
+          if (alpha[j] > cJ) {
+            alpha[j] = cJ;
+            alpha[i] = cJ + diff;
+          }
+        }
+      } else {
+        double quadCoef = qd + qd - 2 * qIJ;
+        if (quadCoef <= 0) {
+          quadCoef = TAU;
+        }
+        double delta = (G[i] - G[j]) / quadCoef;
+        double sum = alpha[i] + alpha[j];
+        alpha[i] -= delta;
+        alpha[j] += delta;
+        if (sum > cI) {
+          if (alpha[i] > cI) {
+            alpha[i] = cI;
+            alpha[j] = sum - cI;
+          }
+        } else {
+          if (alpha[j] < 0) {
+            alpha[j] = 0;
+            alpha[i] = sum;
+          }
+        }
+        if (sum > cJ) {
+          if (alpha[j] > cJ) {
+            alpha[j] = cJ;
+            alpha[i] = sum - cJ;
+          }
+        } else {
+          if (alpha[i] < 0) {
+            alpha[i] = 0;
+            alpha[j] = sum;
+          }
+        }
+      }
+
+      // update the gradient
+      double deltaAlphaI = alpha[i] - oldAlphaI;
+      double deltaAlphaJ = alpha[j] - oldAlphaJ;
+      for (int t = 0; t < l; t++) {
+        int index = indices[t];
+        G[t] += y[t]
+            * (y[i] * rowI[index] * deltaAlphaI + y[j] * rowJ[index]
+                * deltaAlphaJ);
+      }
+    }
+    if (iter >= maxIter) {
+      LOG.warn("Reaching max number of iterations: " + maxIter);
+    }
+
+    // rho is the average of y_i G_i over free alphas
+    double ub = Double.POSITIVE_INFINITY;
+    double lb = Double.NEGATIVE_INFINITY;
+    double sumFree = 0;
+    int nrFree = 0;
+    for (int t = 0; t < l; t++) {
+      double yG = y[t] * G[t];
+      if (alpha[t] >= C[t]) {
+        if (y[t] == -1) {
+          ub = Math.min(ub, yG);
+        } else {
+          lb = Math.max(lb, yG);
+        }
+      } else if (alpha[t] <= 0) {
+        if (y[t] == +1) {
+          ub = Math.min(ub, yG);
+        } else {
+          lb = Math.max(lb, yG);
+        }
+      } else {
+        nrFree++;
+        sumFree += yG;
+      }
+    }
+    return (nrFree > 0) ? sumFree / nrFree : (ub + lb) / 2;
+  }
+
+}
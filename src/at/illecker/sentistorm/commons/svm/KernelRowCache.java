@@ -0,0 +1,109 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.illecker.sentistorm.commons.svm;
+
+import libsvm.svm_node;
+import libsvm.svm_problem;
+import at.illecker.sentistorm.commons.util.ConcurrentLRUCache;
+
+/**
+ * Thread-safe LRU cache of RBF kernel rows over all instances of a problem.
+ *
+ * A row holds K(x_i, x_j) = exp(-gamma * ||x_i - x_j||^2) for all instances
+ * x_j of the problem. The number of cached rows is limited by a memory budget.
+ * All folds of a cross validation share the rows of one gamma.
+ */
+public class KernelRowCache {
+  private final svm_node[][] m_x;
+  private final double m_gamma;
+  private final double[] m_squares;
+  private final int m_maxIndex;
+  private final int m_maxRows;
+  private final ConcurrentLRUCache<Integer, float[]> m_rows;
+
+  public KernelRowCache(svm_problem svmProb, double gamma, long maxBytes) {
+    m_x = svmProb.x;
+    m_gamma = gamma;
+    m_squares = new double[svmProb.l];
+    int maxIndex = 0;
+    for (int i = 0; i < svmProb.l; i++) {
+      double square = 0;
+      for (svm_node node : m_x[i]) {
+        square += node.value * node.value;
+        maxIndex = Math.max(maxIndex, node.index);
+      }
+      m_squares[i] = square;
+    }
+    m_maxIndex = maxIndex;
+    // a row needs 4 bytes per instance
+    long rows = maxBytes / (4L * Math.max(1, svmProb.l));
+    m_maxRows = (int) Math.max(2, Math.min(rows, svmProb.l));
+    m_rows = new ConcurrentLRUCache<Integer, float[]>(m_maxRows);
+  }
+
+  public double getGamma() {
+    return m_gamma;
+  }
+
+  public int size() {
+    return m_x.length;
+  }
+
+  public int getMaxRows() {
+    return m_maxRows;
+  }
+
+  /**
+   * @param i the index of the instance in the problem
+   * @return Returns the kernel values of instance i and all instances, the
+   *         row must not be modified
+   */
+  public float[] getRow(int i) {
+    Integer key = i;
+    float[] row = m_rows.get(key);
+    if (row == null) {
+      row = computeRow(i);
+      m_rows.put(key, row);
+    }
+    return row;
+  }
+
+  private float[] computeRow(int i) {
+    // scatter x_i into a dense vector for the dot products
+    double[] dense = new double[m_maxIndex + 1];
+    for (svm_node node : m_x[i]) {
+      dense[node.index] = node.value;
+    }
+    float[] row = new float[m_x.length];
+    for (int j = 0; j < m_x.length; j++) {
+      double dot = 0;
+      for (svm_node node : m_x[j]) {
+        dot += dense[node.index] * node.value;
+      }
+      row[j] = (float) Math.exp(-m_gamma
+          * (m_squares[i] + m_squares[j] - 2 * dot));
+    }
+    return row;
+  }
+
+  @Override
+  public String toString() {
+    return "KernelRowCache [gamma=" + m_gamma + ", maxRows=" + m_maxRows
+        + ", " + m_rows + "]";
+  }
+
+}
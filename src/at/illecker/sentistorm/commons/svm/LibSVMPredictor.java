@@ -0,0 +1,50 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.illecker.sentistorm.commons.svm;
+
+import libsvm.svm;
+import libsvm.svm_model;
+import libsvm.svm_node;
+
+/**
+ * Predictor based on svm.svm_predict
+ */
+public class LibSVMPredictor extends SVMPredictor {
+  private final svm_model m_model;
+
+  public LibSVMPredictor(svm_model model) {
+    this.m_model = model;
+  }
+
+  @Override
+  public svm_model getModel() {
+    return m_model;
+  }
+
+  @Override
+  public double predict(int[] indices, double[] values, int start, int end) {
+    svm_node[] testNodes = new svm_node[end - start];
+    for (int i = 0; i < testNodes.length; i++) {
+      svm_node node = new svm_node();
+      node.index = indices[start + i];
+      node.value = values[start + i];
+      testNodes[i] = node;
+    }
+    return svm.svm_predict(m_model, testNodes);
+  }
+
+}
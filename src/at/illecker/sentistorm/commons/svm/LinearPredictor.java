@@ -0,0 +1,144 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.illecker.sentistorm.commons.svm;
+
+import java.util.Arrays;
+
+import libsvm.svm_model;
+import libsvm.svm_parameter;
+
+/**
+ * Predictor for linear C-SVC and nu-SVC models.
+ *
+ * The support vectors are collapsed at load time into one dense weight vector
+ * per one-vs-one class pair, w = sum(coef_i * sv_i). The decision value of a
+ * class pair is the sparse dot product w * x - rho, thus the prediction cost
+ * depends on the number of non-zero features only and not on the number of
+ * support vectors.
+ *
+ * A LinearPredictor uses internal buffers and is not thread-safe.
+ */
+public class LinearPredictor extends SVMPredictor {
+  private final svm_model m_model;
+  private final int m_totalClasses;
+  private final int m_totalPairs;
+  private final int m_dimension;
+  // weights stored feature-major [feature][class pair]
+  private final double[] m_weights;
+  // buffers of predict
+  private final double[] m_decValues;
+  private final int[] m_votes;
+
+  public LinearPredictor(svm_model model) {
+    this(model, CSRMatrix.create(model.SV));
+  }
+
+  public LinearPredictor(svm_model model, CSRMatrix supportVectors) {
+    if ((!isClassification(model))
+        || (model.param.kernel_type != svm_parameter.LINEAR)) {
+      throw new IllegalArgumentException(
+          "LinearPredictor requires a linear C-SVC or nu-SVC model!");
+    }
+    this.m_model = model;
+    this.m_totalClasses = model.nr_class;
+    this.m_totalPairs = m_totalClasses * (m_totalClasses - 1) / 2;
+
+    this.m_dimension = Math.max(1, supportVectors.getColumns());
+    this.m_weights = new double[m_dimension * m_totalPairs];
+    this.m_decValues = new double[m_totalPairs];
+    this.m_votes = new int[m_totalClasses];
+
+    // start index of the support vectors of each class
+    int[] start = new int[m_totalClasses];
+    for (int i = 1; i < m_totalClasses; i++) {
+      start[i] = start[i - 1] + model.nSV[i - 1];
+    }
+
+    // collapse support vectors of each class pair
+    int p = 0;
+    for (int i = 0; i < m_totalClasses; i++) {
+      for (int j = i + 1; j < m_totalClasses; j++) {
+        addWeights(supportVectors, p, model.sv_coef[j - 1], start[i],
+            model.nSV[i]);
+        addWeights(supportVectors, p, model.sv_coef[i], start[j],
+            model.nSV[j]);
+        p++;
+      }
+    }
+  }
+
+  private void addWeights(CSRMatrix supportVectors, int pair, double[] coef,
+      int start, int count) {
+    int[] rowOffsets = supportVectors.getRowOffsets();
+    int[] columnIndices = supportVectors.getColumnIndices();
+    double[] values = supportVectors.getValues();
+    for (int k = start; k < start + count; k++) {
+      for (int n = rowOffsets[k]; n < rowOffsets[k + 1]; n++) {
+        m_weights[(columnIndices[n] * m_totalPairs) + pair] += coef[k]
+            * values[n];
+      }
+    }
+  }
+
+  @Override
+  public svm_model getModel() {
+    return m_model;
+  }
+
+  @Override
+  public double predict(int[] indices, double[] values, int start, int end) {
+    Arrays.fill(m_decValues, 0);
+    for (int i = start; i < end; i++) {
+      addFeature(m_decValues, indices[i], values[i]);
+    }
+    return vote(m_decValues);
+  }
+
+  private void addFeature(double[] decValues, int index, double value) {
+    if ((index >= 0) && (index < m_dimension)) {
+      int offset = index * m_totalPairs;
+      for (int p = 0; p < m_totalPairs; p++) {
+        decValues[p] += m_weights[offset + p] * value;
+      }
+    }
+  }
+
+  private double vote(double[] decValues) {
+    int[] votes = m_votes;
+    Arrays.fill(votes, 0);
+    int p = 0;
+    for (int i = 0; i < m_totalClasses; i++) {
+      for (int j = i + 1; j < m_totalClasses; j++) {
+        if (decValues[p] - m_model.rho[p] > 0) {
+          ++votes[i];
+        } else {
+          ++votes[j];
+        }
+        p++;
+      }
+    }
+
+    int voteMaxIdx = 0;
+    for (int i = 1; i < m_totalClasses; i++) {
+      if (votes[i] > votes[voteMaxIdx]) {
+        voteMaxIdx = i;
+      }
+    }
+    return m_model.label[voteMaxIdx];
+  }
+
+}
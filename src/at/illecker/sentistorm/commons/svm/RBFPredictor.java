@@ -0,0 +1,157 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.illecker.sentistorm.commons.svm;
+
+import libsvm.svm_model;
+import libsvm.svm_parameter;
+
+/**
+ * Predictor for C-SVC and nu-SVC models using a RBF kernel.
+ *
+ * The support vectors are stored in a {@link CSRMatrix} with precomputed
+ * squared norms. The kernel is evaluated as exp(-gamma * (||x||^2 + ||sv||^2 -
+ * 2 * x * sv)) whereby the feature vector x is scattered once into a dense
+ * buffer and each dot product only iterates the non-zeros of the support
+ * vector.
+ *
+ * A RBFPredictor uses internal buffers and is not thread-safe.
+ */
+public class RBFPredictor extends SVMPredictor {
+  private final svm_model m_model;
+  private final CSRMatrix m_supportVectors;
+  private final double m_gamma;
+  private final int m_totalClasses;
+  private final int[] m_svStart;
+
+  private final double[] m_dense;
+  private final double[] m_kernelValues;
+  private final int[] m_votes;
+
+  public RBFPredictor(svm_model model) {
+    this(model, CSRMatrix.create(model.SV));
+  }
+
+  public RBFPredictor(svm_model model, CSRMatrix supportVectors) {
+    if ((!isClassification(model))
+        || (model.param.kernel_type != svm_parameter.RBF)) {
+      throw new IllegalArgumentException(
+          "RBFPredictor requires a RBF C-SVC or nu-SVC model!");
+    }
+    this.m_model = model;
+    this.m_supportVectors = supportVectors;
+    this.m_gamma = model.param.gamma;
+    this.m_totalClasses = model.nr_class;
+
+    // start index of the support vectors of each class
+    m_svStart = new int[m_totalClasses];
+    for (int i = 1; i < m_totalClasses; i++) {
+      m_svStart[i] = m_svStart[i - 1] + model.nSV[i - 1];
+    }
+
+    m_dense = new double[supportVectors.getColumns()];
+    m_kernelValues = new double[model.l];
+    m_votes = new int[m_totalClasses];
+  }
+
+  @Override
+  public svm_model getModel() {
+    return m_model;
+  }
+
+  public CSRMatrix getSupportVectors() {
+    return m_supportVectors;
+  }
+
+  @Override
+  public double predict(int[] indices, double[] values, int start, int end) {
+    // scatter feature vector
+    double squaredNorm = 0;
+    for (int i = start; i < end; i++) {
+      squaredNorm += values[i] * values[i];
+      if ((indices[i] >= 0) && (indices[i] < m_dense.length)) {
+        m_dense[indices[i]] = values[i];
+      }
+    }
+
+    computeKernelValues(squaredNorm);
+
+    // reset dense buffer
+    for (int i = start; i < end; i++) {
+      if ((indices[i] >= 0) && (indices[i] < m_dense.length)) {
+        m_dense[indices[i]] = 0;
+      }
+    }
+
+    return vote();
+  }
+
+  private void computeKernelValues(double squaredNorm) {
+    for (int i = 0; i < m_kernelValues.length; i++) {
+      double squaredDistance = squaredNorm
+          + m_supportVectors.getSquaredNorm(i) - 2
+          * m_supportVectors.dot(i, m_dense);
+      // avoid negative distances caused by rounding errors
+      if (squaredDistance < 0) {
+        squaredDistance = 0;
+      }
+      m_kernelValues[i] = Math.exp(-m_gamma * squaredDistance);
+    }
+  }
+
+  private double vote() {
+    double[][] coef = m_model.sv_coef;
+    for (int i = 0; i < m_totalClasses; i++) {
+      m_votes[i] = 0;
+    }
+    int p = 0;
+    for (int i = 0; i < m_totalClasses; i++) {
+      for (int j = i + 1; j < m_totalClasses; j++) {
+        double sum = 0;
+        int si = m_svStart[i];
+        int sj = m_svStart[j];
+        int ci = m_model.nSV[i];
+        int cj = m_model.nSV[j];
+
+        double[] coef1 = coef[j - 1];
+        double[] coef2 = coef[i];
+        for (int k = 0; k < ci; k++) {
+          sum += coef1[si + k] * m_kernelValues[si + k];
+        }
+        for (int k = 0; k < cj; k++) {
+          sum += coef2[sj + k] * m_kernelValues[sj + k];
+        }
+        sum -= m_model.rho[p];
+
+        if (sum > 0) {
+          ++m_votes[i];
+        } else {
+          ++m_votes[j];
+        }
+        p++;
+      }
+    }
+
+    int voteMaxIdx = 0;
+    for (int i = 1; i < m_totalClasses; i++) {
+      if (m_votes[i] > m_votes[voteMaxIdx]) {
+        voteMaxIdx = i;
+      }
+    }
+    return m_model.label[voteMaxIdx];
+  }
+
+}
@@ -22,15 +22,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 
 import libsvm.svm;
 import libsvm.svm_model;
@@ -47,20 +39,17 @@ import at.illecker.sentistorm.commons.FeaturedTweet;
 import at.illecker.sentistorm.commons.Tweet;
 import at.illecker.sentistorm.commons.featurevector.CombinedFeatureVectorGenerator;
 import at.illecker.sentistorm.commons.featurevector.FeatureVectorGenerator;
+import at.illecker.sentistorm.commons.featurevector.FeatureVectorGeneratorFile;
+import at.illecker.sentistorm.commons.featurevector.SparseVector;
 import at.illecker.sentistorm.commons.featurevector.SentimentFeatureVectorGenerator;
 import at.illecker.sentistorm.commons.featurevector.TfIdfFeatureVectorGenerator;
-import at.illecker.sentistorm.commons.tfidf.TfIdfNormalization;
-import at.illecker.sentistorm.commons.tfidf.TfType;
-import at.illecker.sentistorm.commons.tfidf.TweetTfIdf;
 import at.illecker.sentistorm.commons.util.io.SerializationUtils;
-import at.illecker.sentistorm.components.POSTagger;
-import at.illecker.sentistorm.components.Preprocessor;
-import at.illecker.sentistorm.components.Tokenizer;
-import cmu.arktweetnlp.Tagger.TaggedToken;
 
 public class SVM {
   public static final String SVM_PROBLEM_FILE = "svm_problem.txt";
   public static final String SVM_MODEL_FILE_SER = "svm_model.ser";
+  public static final String SVM_MODEL_FILE_BIN = "svm_model.bin";
+  public static final String FEATURE_VECTOR_GENERATOR_FILE_BIN = "feature_vector_generator.bin";
   private static final Logger LOG = LoggerFactory.getLogger(SVM.class);
 
   public static svm_parameter getDefaultParameter() {
@@ -124,17 +113,15 @@ public class SVM {
 
     int i = 0;
     for (FeaturedTweet tweet : featuredTweets) {
-      Map<Integer, Double> featureVector = tweet.getFeatureVector();
+      SparseVector featureVector = tweet.getFeatureVector();
 
       // set feature nodes
       svmProb.x[i] = new svm_node[featureVector.size()];
-      int j = 0;
-      for (Map.Entry<Integer, Double> feature : featureVector.entrySet()) {
+      for (int j = 0; j < featureVector.size(); j++) {
         svm_node node = new svm_node();
-        node.index = feature.getKey();
-        node.value = feature.getValue();
+        node.index = featureVector.getIndex(j);
+        node.value = featureVector.getValue(j);
         svmProb.x[i][j] = node;
-        j++;
       }
 
       // set class / label
@@ -196,8 +183,17 @@ public class SVM {
       svmParam.gamma = 1 / (double) svmProb.l;
     }
 
-    double[] target = new double[svmProb.l];
-    svm.svm_cross_validation(svmProb, svmParam, nFold, target);
+    double[] target;
+    int cacheMb = Configuration.get("commons.svm.crossvalidation.cache.mb",
+        1024);
+    if ((cacheMb > 0) && KernelCrossValidation.isSupported(svmParam)) {
+      // all folds share the kernel rows of the whole problem
+      target = new KernelCrossValidation(svmProb, svmParam.gamma,
+          ((long) cacheMb) << 20).crossValidate(svmParam, nFold, 0);
+    } else {
+      target = new double[svmProb.l];
+      svm.svm_cross_validation(svmProb, svmParam, nFold, target);
+    }
 
     double correctCounter = 0;
     for (int i = 0; i < svmProb.l; i++) {
@@ -235,94 +231,54 @@ public class SVM {
     paramterSearch(svmProb, svmParam, c, gamma);
   }
 
-  private static class FindParameterCallable implements Callable<double[]> {
-    private svm_problem m_svmProb;
-    private svm_parameter m_svmParam;
-    private long m_i;
-    private long m_j;
-
-    public FindParameterCallable(svm_problem svmProb, svm_parameter svmParam,
-        long i, long j) {
-      m_svmProb = svmProb;
-      m_svmParam = svmParam;
-      m_i = i;
-      m_j = j;
-    }
-
-    @Override
-    public double[] call() throws Exception {
-      long startTime = System.currentTimeMillis();
-      double accuracy = crossValidate(m_svmProb, m_svmParam, 10);
-      long estimatedTime = System.currentTimeMillis() - startTime;
-      return new double[] { m_i, m_j, accuracy, m_svmParam.C, m_svmParam.gamma,
-          estimatedTime };
-    }
-  }
-
   public static void paramterSearch(svm_problem svmProb,
       svm_parameter svmParam, double[] c, double[] gamma) {
-    int cores = Runtime.getRuntime().availableProcessors();
-    ExecutorService executorService = Executors.newFixedThreadPool(cores);
-    Set<Callable<double[]>> callables = new HashSet<Callable<double[]>>();
-
+    double[] log2C = new double[c.length];
     for (int i = 0; i < c.length; i++) {
-      for (int j = 0; j < gamma.length; j++) {
-        svm_parameter param = (svm_parameter) svmParam.clone();
-        param.C = c[i];
-        param.gamma = gamma[j];
-        callables.add(new FindParameterCallable(svmProb, param, i, j));
-      }
+      log2C[i] = Math.log(c[i]) / Math.log(2);
+    }
+    double[] log2Gamma = new double[gamma.length];
+    for (int j = 0; j < gamma.length; j++) {
+      log2Gamma[j] = Math.log(gamma[j]) / Math.log(2);
     }
 
-    try {
-      long startTime = System.currentTimeMillis();
-      List<Future<double[]>> futures = executorService.invokeAll(callables);
-      for (Future<double[]> future : futures) {
-        double[] result = future.get();
-        LOG.info("findParamters[" + result[0] + "," + result[1] + "] C="
-            + result[3] + " gamma=" + result[4] + " accuracy: " + result[2]
-            + " time: " + result[5] + " ms");
-      }
-      long estimatedTime = System.currentTimeMillis() - startTime;
-      LOG.info("findParamters total execution time: " + estimatedTime
-          + " ms - " + (estimatedTime / 1000) + " sec");
-
-      // output CSV file
-      LOG.info("CSV file of paramterSearch with C=" + Arrays.toString(c)
-          + " gamma=" + Arrays.toString(gamma));
-      LOG.info("i;j;C;gamma;accuracy;time_ms");
-      for (Future<double[]> future : futures) {
-        double[] result = future.get();
-        LOG.info(result[0] + ";" + result[1] + ";" + result[3] + ";"
-            + result[4] + ";" + result[2] + ";" + result[5]);
+    // no pruning, all grid points are written to the CSV output
+    GridSearch gridSearch = new GridSearch(svmProb, svmParam, 10,
+        Double.POSITIVE_INFINITY, null);
+    long startTime = System.currentTimeMillis();
+    List<GridSearch.Result> results = gridSearch.search(log2C, log2Gamma);
+    long estimatedTime = System.currentTimeMillis() - startTime;
+    LOG.info("findParamters total execution time: " + estimatedTime
+        + " ms - " + (estimatedTime / 1000) + " sec");
+
+    // output CSV file
+    LOG.info("CSV file of paramterSearch with C=" + Arrays.toString(c)
+        + " gamma=" + Arrays.toString(gamma));
+    LOG.info("i;j;C;gamma;accuracy;time_ms");
+    for (int i = 0; i < c.length; i++) {
+      for (int j = 0; j < gamma.length; j++) {
+        GridSearch.Result result = results.get(i * gamma.length + j);
+        LOG.info(i + ";" + j + ";" + result.getC() + ";" + result.getGamma()
+            + ";" + result.getAccuracy() + ";" + result.getTimeMs());
       }
-
-    } catch (InterruptedException e) {
-      LOG.error("InterruptedException: " + e.getMessage());
-    } catch (ExecutionException e) {
-      LOG.error("ExecutionException: " + e.getMessage());
     }
-
-    executorService.shutdown();
   }
 
-  public static double evaluate(Map<Integer, Double> featureVector,
+  public static double evaluate(SparseVector featureVector,
       svm_model svmModel, int totalClasses) {
     return evaluate(featureVector, svmModel, totalClasses, false);
   }
 
-  public static double evaluate(Map<Integer, Double> featureVector,
+  public static double evaluate(SparseVector featureVector,
       svm_model svmModel, int totalClasses, boolean logging) {
 
     // set feature nodes
     svm_node[] testNodes = new svm_node[featureVector.size()];
-    int i = 0;
-    for (Map.Entry<Integer, Double> feature : featureVector.entrySet()) {
+    for (int i = 0; i < featureVector.size(); i++) {
       svm_node node = new svm_node();
-      node.index = feature.getKey();
-      node.value = feature.getValue();
+      node.index = featureVector.getIndex(i);
+      node.value = featureVector.getValue(i);
       testNodes[i] = node;
-      i++;
     }
 
     double predictedClass = svm.svm_predict(svmModel, testNodes);
@@ -335,7 +291,7 @@ public class SVM {
       double predictedClassProb = svm.svm_predict_probability(svmModel,
           testNodes, probEstimates);
 
-      for (i = 0; i < totalClasses; i++) {
+      for (int i = 0; i < totalClasses; i++) {
         LOG.info("Label[" + i + "]: " + labels[i] + " Probability: "
             + probEstimates[i]);
       }
@@ -345,6 +301,11 @@ public class SVM {
     return predictedClass;
   }
 
+  public static double evaluate(SparseVector featureVector,
+      SVMPredictor predictor) {
+    return predictor.predict(featureVector);
+  }
+
   public static int[][] getConfusionMatrix(double[] actualClass,
       double[] predictedClass) {
     if (actualClass.length != predictedClass.length) {
@@ -456,134 +417,36 @@ public class SVM {
       int nFoldCrossValidation, boolean parameterSearch,
       boolean useSerialization) {
 
-    FeatureVectorGenerator fvg = null;
-    Preprocessor preprocessor = null;
-    POSTagger posTagger = null;
-
-    // Prepare Train tweets
-    LOG.info("Prepare Train data...");
-    List<FeaturedTweet> featuredTrainTweets = null;
-    if (useSerialization) {
-      featuredTrainTweets = SerializationUtils.deserialize(dataset
-          .getTrainDataSerializationFile());
+    // Prepare train and test tweets, unchanged stages are loaded from
+    // checkpoints
+    LOG.info("Prepare Train and Test data...");
+    TrainingPipeline pipeline = new TrainingPipeline(dataset,
+        featureVectorGenerator, useSerialization);
+    pipeline.run();
+    List<FeaturedTweet> featuredTrainTweets = pipeline
+        .getFeaturedTrainTweets();
+    List<FeaturedTweet> featuredTestTweets = pipeline.getFeaturedTestTweets();
+    Dataset.printTweetStats(new ArrayList<Tweet>(featuredTrainTweets));
+    Dataset.printTweetStats(new ArrayList<Tweet>(featuredTestTweets));
+
+    // Serialize train and test data including feature vectors
+    if (useSerialization && pipeline.hasChanged()) {
+      SerializationUtils.serializeCollection(featuredTrainTweets,
+          dataset.getTrainDataSerializationFile());
+      SerializationUtils.serializeCollection(featuredTestTweets,
+          dataset.getTestDataSerializationFile());
     }
 
-    if (featuredTrainTweets == null) {
-      // Read train tweets
-      List<Tweet> trainTweets = dataset.getTrainTweets(true);
-      LOG.info("Read train tweets from " + dataset.getTrainDataFile());
-      Dataset.printTweetStats(trainTweets);
-
-      // Tokenize
-      LOG.info("Tokenize train tweets...");
-      List<List<String>> tokenizedTweets = Tokenizer
-          .tokenizeTweets(trainTweets);
-
-      // Preprocess
-      preprocessor = Preprocessor.getInstance();
-
-      LOG.info("Preprocess train tweets...");
-      List<List<String>> preprocessedTweets = preprocessor
-          .preprocessTweets(tokenizedTweets);
-
-      // POS Tagging
-      posTagger = POSTagger.getInstance();
-      LOG.info("POS Tagging of train tweets...");
-      List<List<TaggedToken>> taggedTweets = posTagger
-          .tagTweets(preprocessedTweets);
-
-      // Create Feature Vector Generator
-      if (featureVectorGenerator.equals(SentimentFeatureVectorGenerator.class)) {
-        LOG.info("Load SentimentFeatureVectorGenerator...");
-        fvg = new SentimentFeatureVectorGenerator();
-
-      } else if (featureVectorGenerator
-          .equals(TfIdfFeatureVectorGenerator.class)) {
-        TweetTfIdf tweetTfIdf = TweetTfIdf.createFromTaggedTokens(taggedTweets,
-            TfType.RAW, TfIdfNormalization.COS, true);
-        LOG.info("Load TfIdfFeatureVectorGenerator...");
-        fvg = new TfIdfFeatureVectorGenerator(tweetTfIdf);
-
-      } else if (featureVectorGenerator
-          .equals(CombinedFeatureVectorGenerator.class)) {
-        TweetTfIdf tweetTfIdf = TweetTfIdf.createFromTaggedTokens(taggedTweets,
-            TfType.RAW, TfIdfNormalization.COS, true);
-        LOG.info("Load CombinedFeatureVectorGenerator...");
-        fvg = new CombinedFeatureVectorGenerator(true, tweetTfIdf);
-
-      } else {
-        throw new UnsupportedOperationException("FeatureVectorGenerator '"
-            + featureVectorGenerator.getName() + "' is not supported!");
-      }
-
-      // Feature Vector Generation
-      LOG.info("Generate Feature Vectors for train tweets...");
-      featuredTrainTweets = new ArrayList<FeaturedTweet>();
-      for (int i = 0; i < taggedTweets.size(); i++) {
-        List<TaggedToken> taggedTweet = taggedTweets.get(i);
-        Map<Integer, Double> featureVector = fvg
-            .generateFeatureVector(taggedTweet);
-        featuredTrainTweets.add(new FeaturedTweet(trainTweets.get(i),
-            tokenizedTweets.get(i), preprocessedTweets.get(i), taggedTweet,
-            featureVector));
-      }
-
-      // Serialize training data including feature vectors
-      if (useSerialization) {
-        SerializationUtils.serializeCollection(featuredTrainTweets,
-            dataset.getTrainDataSerializationFile());
-      }
-    }
-
-    // Prepare Test tweets
-    LOG.info("Prepare Test data...");
-    List<FeaturedTweet> featuredTestTweets = null;
-    if (useSerialization) {
-      featuredTestTweets = SerializationUtils.deserialize(dataset
-          .getTestDataSerializationFile());
-    }
-
-    if (featuredTestTweets == null) {
-      if (fvg == null) {
-        LOG.error("Train and test data must use the same FeatureVectorGenerator!");
-        System.exit(1);
-      }
-
-      // read test tweets
-      List<Tweet> testTweets = dataset.getTestTweets();
-      LOG.info("Read test tweets from " + dataset.getTestDataFile());
-      Dataset.printTweetStats(testTweets);
-
-      // Tokenize
-      LOG.info("Tokenize test tweets...");
-      List<List<String>> tokenizedTweets = Tokenizer.tokenizeTweets(testTweets);
-
-      // Preprocess
-      LOG.info("Preprocess test tweets...");
-      List<List<String>> preprocessedTweets = preprocessor
-          .preprocessTweets(tokenizedTweets);
-
-      // POS Tagging
-      LOG.info("POS Tagging of test tweets...");
-      List<List<TaggedToken>> taggedTweets = posTagger
-          .tagTweets(preprocessedTweets);
-
-      // Feature Vector Generation
-      LOG.info("Generate Feature Vectors for test tweets...");
-      featuredTestTweets = new ArrayList<FeaturedTweet>();
-      for (int i = 0; i < taggedTweets.size(); i++) {
-        List<TaggedToken> taggedTweet = taggedTweets.get(i);
-        Map<Integer, Double> featureVector = fvg
-            .generateFeatureVector(taggedTweet);
-        featuredTestTweets.add(new FeaturedTweet(testTweets.get(i),
-            tokenizedTweets.get(i), preprocessedTweets.get(i), taggedTweet,
-            featureVector));
-      }
-
-      // Serialize test data
-      if (useSerialization) {
-        SerializationUtils.serializeCollection(featuredTestTweets,
-            dataset.getTestDataSerializationFile());
+    // Write the prepared feature vector generator used by the bolts
+    String fvgFile = dataset.getDatasetPath() + File.separator
+        + FEATURE_VECTOR_GENERATOR_FILE_BIN;
+    if (useSerialization
+        && (pipeline.hasChanged() || (!new File(fvgFile).exists()))) {
+      // created of the tagged train tweets if all checkpoints were loaded
+      FeatureVectorGenerator fvg = pipeline.createFeatureVectorGenerator();
+      if (fvg instanceof CombinedFeatureVectorGenerator) {
+        FeatureVectorGeneratorFile.write(
+            (CombinedFeatureVectorGenerator) fvg, fvgFile);
       }
     }
 
@@ -593,24 +456,18 @@ public class SVM {
       LOG.info("Generate SVM problem...");
       svm_problem svmProb = generateProblem(featuredTrainTweets);
 
-      // 1) coarse grained paramter search
-      // coarseGrainedParamterSearch(svmProb, svmParam);
-
-      // 2) fine grained paramter search
-      // C = 2^6, ..., 2^12
-      double[] c = new double[7];
-      for (int i = 0; i < 7; i++) {
-        c[i] = Math.pow(2, 6 + i);
-      }
-      // gamma = 2^−14, 2^−14, ..., 2^-8
-      double[] gamma = new double[7];
-      for (int j = 0; j < 7; j++) {
-        gamma[j] = Math.pow(2, -14 + j);
-      }
-
+      // 1) paramter search of the 7x7 grid
+      // C = 2^6, ..., 2^12 and gamma = 2^-14, ..., 2^-8
       LOG.info("SVM paramterSearch...");
       LOG.info("Kernel: " + svmParam.kernel_type);
-      paramterSearch(svmProb, svmParam, c, gamma);
+      GridSearch gridSearch = new GridSearch(svmProb, svmParam, 10,
+          Configuration.get("commons.svm.gridsearch.prune.margin", 0.02), null);
+      gridSearch.search(GridSearch.grid(6, 12, 1), GridSearch.grid(-14, -8, 1));
+
+      // 2) fine grained paramter search around the best grid point
+      GridSearch.Result best = gridSearch.refine(1, 1,
+          Configuration.get("commons.svm.gridsearch.refine.levels", 1));
+      LOG.info("SVM paramterSearch best: " + best);
 
     } else {
 
@@ -619,8 +476,8 @@ public class SVM {
 
       svm_model svmModel = null;
       LOG.info("Try loading SVM model...");
-      // deserialize svmModel
-      if (useSerialization) {
+      // deserialize svmModel if the feature vectors did not change
+      if (useSerialization && (!pipeline.hasChanged())) {
         svmModel = SerializationUtils.deserialize(dataset.getDatasetPath()
             + File.separator + SVM_MODEL_FILE_SER);
       }
@@ -644,6 +501,8 @@ public class SVM {
         if (useSerialization) {
           SerializationUtils.serialize(svmModel, dataset.getDatasetPath()
               + File.separator + SVM_MODEL_FILE_SER);
+          SVMModelFile.write(svmModel, dataset.getDatasetPath()
+              + File.separator + SVM_MODEL_FILE_BIN);
         }
 
         // Run n-fold cross validation
@@ -656,6 +515,12 @@ public class SVM {
               + (System.currentTimeMillis() - startTime) + " ms");
           LOG.info("Cross Validation Accurancy: " + accuracy);
         }
+      } else if (useSerialization
+          && (!new File(dataset.getDatasetPath() + File.separator
+              + SVM_MODEL_FILE_BIN).exists())) {
+        // binary model of a previously serialized model
+        SVMModelFile.write(svmModel, dataset.getDatasetPath()
+            + File.separator + SVM_MODEL_FILE_BIN);
       }
 
       // Evaluate test tweets
@@ -664,11 +529,12 @@ public class SVM {
       LOG.info("Evaluate test tweets...");
 
       long startTime = System.currentTimeMillis();
+      SVMPredictor predictor = SVMPredictor.create(svmModel);
       for (FeaturedTweet tweet : featuredTestTweets) {
 
-        Map<Integer, Double> featureVector = tweet.getFeatureVector();
+        SparseVector featureVector = tweet.getFeatureVector();
 
-        double predictedClass = evaluate(featureVector, svmModel, totalClasses);
+        double predictedClass = evaluate(featureVector, predictor);
 
         int actualClass = tweet.getScore().intValue();
         if (predictedClass == actualClass) {
@@ -0,0 +1,391 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.illecker.sentistorm.commons.svm;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import libsvm.svm_model;
+import libsvm.svm_node;
+import libsvm.svm_parameter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import at.illecker.sentistorm.commons.ResourceRegistry;
+import at.illecker.sentistorm.commons.util.io.IOUtils;
+
+/**
+ * Compact binary format of a libsvm model.
+ *
+ * The header, rho, the coefficients and the support vectors in CSR format are
+ * stored as flat arrays. A model file is memory-mapped and bulk-read into its
+ * arrays, all users of a model loaded by the {@link ResourceRegistry}, e.g.,
+ * all SVMBolt tasks of a worker, share it read-only. The support vectors are
+ * kept as {@link CSRMatrix} only, svm_node objects are created once on demand
+ * for kernels without a specialized predictor.
+ */
+public class SVMModelFile {
+  private static final Logger LOG = LoggerFactory.getLogger(SVMModelFile.class);
+  private static final int MAGIC = 0x53564D42; // "SVMB"
+  private static final int VERSION = 1;
+
+  private final String m_fileName;
+  // model without support vector nodes
+  private final svm_model m_model;
+  private final CSRMatrix m_supportVectors;
+  private svm_node[][] m_svNodes = null;
+
+  private SVMModelFile(String fileName, svm_model model,
+      CSRMatrix supportVectors) {
+    m_fileName = fileName;
+    m_model = model;
+    m_supportVectors = supportVectors;
+  }
+
+  public String getFileName() {
+    return m_fileName;
+  }
+
+  /**
+   * @return Returns the model, its support vectors (SV) are null
+   */
+  public svm_model getModel() {
+    return m_model;
+  }
+
+  public CSRMatrix getSupportVectors() {
+    return m_supportVectors;
+  }
+
+  /**
+   * Creates a predictor which shares the model. Predictors are not
+   * thread-safe, each task has to create its own one.
+   */
+  public SVMPredictor createPredictor() {
+    boolean isClassification = SVMPredictor.isClassification(m_model);
+    if (isClassification
+        && (m_model.param.kernel_type == svm_parameter.LINEAR)) {
+      LOG.info("Using LinearPredictor for " + m_model.l + " support vectors");
+      return new LinearPredictor(m_model, m_supportVectors);
+    }
+    if (isClassification && (m_model.param.kernel_type == svm_parameter.RBF)) {
+      LOG.info("Using RBFPredictor for " + m_model.l + " support vectors");
+      return new RBFPredictor(m_model, m_supportVectors);
+    }
+    return new LibSVMPredictor(getModelWithSupportVectors());
+  }
+
+  /**
+   * Creates a batch predictor which shares the model, linear and RBF
+   * classification models are scored by the CSR support vectors.
+   */
+  public BatchPredictor createBatchPredictor(int initialCapacity) {
+    int kernelType = m_model.param.kernel_type;
+    if (SVMPredictor.isClassification(m_model)
+        && ((kernelType == svm_parameter.LINEAR)
+            || (kernelType == svm_parameter.RBF))) {
+      return new BatchPredictor(m_model, m_supportVectors, initialCapacity);
+    }
+    return new BatchPredictor(getModelWithSupportVectors(), initialCapacity);
+  }
+
+  /**
+   * @return Returns a copy of the model including the support vector nodes,
+   *         the nodes are created once and shared
+   */
+  public synchronized svm_model getModelWithSupportVectors() {
+    if (m_svNodes == null) {
+      int[] rowOffsets = m_supportVectors.getRowOffsets();
+      int[] columnIndices = m_supportVectors.getColumnIndices();
+      double[] values = m_supportVectors.getValues();
+      m_svNodes = new svm_node[m_supportVectors.getRows()][];
+      for (int i = 0; i < m_svNodes.length; i++) {
+        m_svNodes[i] = new svm_node[rowOffsets[i + 1] - rowOffsets[i]];
+        for (int k = rowOffsets[i]; k < rowOffsets[i + 1]; k++) {
+          svm_node node = new svm_node();
+          node.index = columnIndices[k];
+          node.value = values[k];
+          m_svNodes[i][k - rowOffsets[i]] = node;
+        }
+      }
+    }
+    svm_model model = copyHeader(m_model);
+    model.SV = m_svNodes;
+    return model;
+  }
+
+  /**
+   * Writes the model to a temporary file which replaces the model file after
+   * it was closed, a failed write does not leave a truncated model file.
+   */
+  public static void write(svm_model model, String fileName) {
+    CSRMatrix supportVectors = CSRMatrix.create(model.SV);
+    File file = new File(fileName);
+    File tmpFile = new File(fileName + ".tmp");
+    DataOutputStream out = null;
+    try {
+      out = new DataOutputStream(new BufferedOutputStream(
+          new FileOutputStream(tmpFile)));
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(model.param.svm_type);
+      out.writeInt(model.param.kernel_type);
+      out.writeInt(model.param.degree);
+      out.writeDouble(model.param.gamma);
+      out.writeDouble(model.param.coef0);
+      out.writeInt(model.nr_class);
+      out.writeInt(model.l);
+      writeInts(out, model.label);
+      writeInts(out, model.nSV);
+      writeInts(out, model.sv_indices);
+      writeDoubles(out, model.rho);
+      writeDoubles(out, model.probA);
+      writeDoubles(out, model.probB);
+      out.writeInt(model.sv_coef.length);
+      for (double[] coef : model.sv_coef) {
+        writeDoubles(out, coef);
+      }
+      writeInts(out, supportVectors.getRowOffsets());
+      writeInts(out, supportVectors.getColumnIndices());
+      writeDoubles(out, supportVectors.getValues());
+      out.close();
+      out = null;
+
+      IOUtils.moveAtomically(tmpFile, file);
+      LOG.info("Wrote SVM model to " + fileName);
+    } catch (IOException e) {
+      LOG.error("IOException: " + e.getMessage());
+      throw new RuntimeException(e);
+    } finally {
+      if (out != null) {
+        try {
+          out.close();
+        } catch (IOException ignore) {
+        }
+      }
+      if (tmpFile.exists() && !tmpFile.delete()) {
+        LOG.error("Could not delete " + tmpFile);
+      }
+    }
+  }
+
+  /**
+   * Acquires the shared model of the file from the {@link ResourceRegistry}.
+   *
+   * @return Returns the model or null if it could not be loaded
+   */
+  public static ResourceRegistry.Resource<SVMModelFile> acquire(
+      final String fileName) {
+    return ResourceRegistry.acquireFile(fileName,
+        new ResourceRegistry.Loader<SVMModelFile>() {
+          @Override
+          public SVMModelFile load() {
+            try {
+              return SVMModelFile.load(fileName);
+            } catch (IOException e) {
+              LOG.error("IOException: " + e.getMessage());
+              return null;
+            }
+          }
+        });
+  }
+
+  /**
+   * Loads a model file, files of the file system are memory-mapped, files
+   * within the jar are read into the heap. Use the {@link ResourceRegistry} to
+   * share the model within the JVM.
+   *
+   * @param fileName the model file
+   * @return Returns the model
+   * @throws IOException if the file is missing, unreadable, unsupported,
+   *           truncated or inconsistent
+   */
+  public static SVMModelFile load(String fileName) throws IOException {
+    long startTime = System.currentTimeMillis();
+    ByteBuffer buffer = null;
+    try {
+      File file = new File(fileName);
+      if (file.isFile()) {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+          buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+              raf.length());
+        } finally {
+          raf.close();
+        }
+      } else {
+        InputStream in = IOUtils.getInputStream(fileName);
+        if (in == null) {
+          throw new FileNotFoundException("Missing SVM model file: "
+              + fileName);
+        }
+        try {
+          ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+          byte[] chunk = new byte[65536];
+          int n;
+          while ((n = in.read(chunk)) != -1) {
+            bytes.write(chunk, 0, n);
+          }
+          buffer = ByteBuffer.wrap(bytes.toByteArray());
+        } finally {
+          in.close();
+        }
+      }
+    } catch (FileNotFoundException e) {
+      throw e;
+    } catch (IOException e) {
+      throw new IOException("Could not read SVM model file: " + fileName, e);
+    }
+
+    try {
+      return read(fileName, buffer, startTime);
+    } catch (BufferUnderflowException e) {
+      throw new IOException("Truncated SVM model file: " + fileName);
+    }
+  }
+
+  private static SVMModelFile read(String fileName, ByteBuffer buffer,
+      long startTime) throws IOException {
+    if ((buffer.getInt() != MAGIC) || (buffer.getInt() != VERSION)) {
+      throw new IOException("Unsupported SVM model file: " + fileName);
+    }
+    svm_model model = new svm_model();
+    model.param = new svm_parameter();
+    model.param.svm_type = buffer.getInt();
+    model.param.kernel_type = buffer.getInt();
+    model.param.degree = buffer.getInt();
+    model.param.gamma = buffer.getDouble();
+    model.param.coef0 = buffer.getDouble();
+    model.nr_class = buffer.getInt();
+    model.l = buffer.getInt();
+    model.label = readInts(buffer);
+    model.nSV = readInts(buffer);
+    model.sv_indices = readInts(buffer);
+    model.rho = readDoubles(buffer);
+    model.probA = readDoubles(buffer);
+    model.probB = readDoubles(buffer);
+    int coefRows = buffer.getInt();
+    // each row takes at least its length
+    if ((coefRows < 0) || (coefRows > buffer.remaining() / 4)) {
+      throw new BufferUnderflowException();
+    }
+    model.sv_coef = new double[coefRows][];
+    for (int i = 0; i < model.sv_coef.length; i++) {
+      model.sv_coef[i] = readDoubles(buffer);
+    }
+    int[] rowOffsets = readInts(buffer);
+    int[] columnIndices = readInts(buffer);
+    double[] values = readDoubles(buffer);
+    if ((model.l < 0) || (rowOffsets == null)
+        || (rowOffsets.length != model.l + 1)
+        || (columnIndices == null) || (values == null)
+        || (columnIndices.length != rowOffsets[model.l])
+        || (values.length != rowOffsets[model.l])) {
+      throw new IOException("Inconsistent support vectors in SVM model file: "
+          + fileName);
+    }
+    CSRMatrix supportVectors = new CSRMatrix(rowOffsets, columnIndices,
+        values);
+
+    LOG.info("Loaded SVM model with " + model.l + " support vectors and "
+        + supportVectors.getNonZeros() + " non-zeros from " + fileName
+        + " in " + (System.currentTimeMillis() - startTime) + " ms");
+    return new SVMModelFile(fileName, model, supportVectors);
+  }
+
+  private static svm_model copyHeader(svm_model model) {
+    svm_model copy = new svm_model();
+    copy.param = model.param;
+    copy.nr_class = model.nr_class;
+    copy.l = model.l;
+    copy.sv_coef = model.sv_coef;
+    copy.rho = model.rho;
+    copy.probA = model.probA;
+    copy.probB = model.probB;
+    copy.sv_indices = model.sv_indices;
+    copy.label = model.label;
+    copy.nSV = model.nSV;
+    return copy;
+  }
+
+  // arrays are written with their length, -1 for null
+  private static void writeInts(DataOutputStream out, int[] values)
+      throws IOException {
+    if (values == null) {
+      out.writeInt(-1);
+      return;
+    }
+    out.writeInt(values.length);
+    for (int value : values) {
+      out.writeInt(value);
+    }
+  }
+
+  private static void writeDoubles(DataOutputStream out, double[] values)
+      throws IOException {
+    if (values == null) {
+      out.writeInt(-1);
+      return;
+    }
+    out.writeInt(values.length);
+    for (double value : values) {
+      out.writeDouble(value);
+    }
+  }
+
+  private static int[] readInts(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    if (length < 0) {
+      return null;
+    }
+    // the length must not exceed the end of the file
+    if (length > buffer.remaining() / 4) {
+      throw new BufferUnderflowException();
+    }
+    int[] values = new int[length];
+    buffer.asIntBuffer().get(values);
+    buffer.position(buffer.position() + 4 * length);
+    return values;
+  }
+
+  private static double[] readDoubles(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    if (length < 0) {
+      return null;
+    }
+    // the length must not exceed the end of the file
+    if (length > buffer.remaining() / 8) {
+      throw new BufferUnderflowException();
+    }
+    double[] values = new double[length];
+    buffer.asDoubleBuffer().get(values);
+    buffer.position(buffer.position() + 8 * length);
+    return values;
+  }
+
+}
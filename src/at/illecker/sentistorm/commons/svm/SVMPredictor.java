@@ -0,0 +1,81 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.illecker.sentistorm.commons.svm;
+
+import libsvm.svm_model;
+import libsvm.svm_parameter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import at.illecker.sentistorm.commons.featurevector.SparseVector;
+
+/**
+ * Predicts the class of a sparse feature vector by a trained libsvm model.
+ *
+ * Use {@link #create(svm_model)} to get the fastest predictor for a model.
+ * Predictors may use internal buffers and should not be shared between
+ * threads.
+ */
+public abstract class SVMPredictor {
+  private static final Logger LOG = LoggerFactory.getLogger(SVMPredictor.class);
+
+  public abstract svm_model getModel();
+
+  /**
+   * Predicts the class of a feature vector
+   *
+   * @param featureVector the feature vector
+   * @return Returns the predicted class label
+   */
+  public double predict(SparseVector featureVector) {
+    return predict(featureVector.getIndices(), featureVector.getValues(), 0,
+        featureVector.size());
+  }
+
+  /**
+   * Predicts the class of a feature vector stored in primitive arrays
+   *
+   * @param indices feature indices sorted ascending
+   * @param values feature values
+   * @param start first position of the feature vector (inclusive)
+   * @param end last position of the feature vector (exclusive)
+   * @return Returns the predicted class label
+   */
+  public abstract double predict(int[] indices, double[] values, int start,
+      int end);
+
+  public static boolean isClassification(svm_model model) {
+    return (model.param.svm_type == svm_parameter.C_SVC)
+        || (model.param.svm_type == svm_parameter.NU_SVC);
+  }
+
+  public static SVMPredictor create(svm_model model) {
+    if (isClassification(model)
+        && (model.param.kernel_type == svm_parameter.LINEAR)) {
+      LOG.info("Using LinearPredictor for " + model.l + " support vectors");
+      return new LinearPredictor(model);
+    }
+    if (isClassification(model)
+        && (model.param.kernel_type == svm_parameter.RBF)) {
+      LOG.info("Using RBFPredictor for " + model.l + " support vectors");
+      return new RBFPredictor(model);
+    }
+    return new LibSVMPredictor(model);
+  }
+
+}
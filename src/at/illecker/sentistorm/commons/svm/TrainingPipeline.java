@@ -0,0 +1,512 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.illecker.sentistorm.commons.svm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import at.illecker.sentistorm.commons.Configuration;
+import at.illecker.sentistorm.commons.Dataset;
+import at.illecker.sentistorm.commons.FeaturedTweet;
+import at.illecker.sentistorm.commons.Tweet;
+import at.illecker.sentistorm.commons.featurevector.CombinedFeatureVectorGenerator;
+import at.illecker.sentistorm.commons.featurevector.FeatureVectorGenerator;
+import at.illecker.sentistorm.commons.featurevector.SentimentFeatureVectorGenerator;
+import at.illecker.sentistorm.commons.featurevector.SparseVector;
+import at.illecker.sentistorm.commons.featurevector.TfIdfFeatureVectorGenerator;
+import at.illecker.sentistorm.commons.tfidf.TfIdfNormalization;
+import at.illecker.sentistorm.commons.tfidf.TfType;
+import at.illecker.sentistorm.commons.tfidf.TweetTfIdf;
+import at.illecker.sentistorm.commons.util.io.IOUtils;
+import at.illecker.sentistorm.commons.util.io.SerializationUtils;
+import at.illecker.sentistorm.components.POSTagger;
+import at.illecker.sentistorm.components.Preprocessor;
+import at.illecker.sentistorm.components.Tokenizer;
+import cmu.arktweetnlp.Tagger.TaggedToken;
+
+/**
+ * Prepares the featured train and test tweets of a dataset for the SVM.
+ *
+ * The tweets are split into chunks which are tokenized, preprocessed, POS
+ * tagged and featurized in parallel. Each stage writes a checkpoint per chunk
+ * named by a fingerprint of its input tweets, the resources the stage depends
+ * on and the fingerprint of the previous stage. A rerun loads all checkpoints
+ * whose fingerprints did not change and only recomputes the remaining stages,
+ * e.g., a changed sentiment dictionary only reruns the feature generation.
+ *
+ * Changes of the code of a stage are not detected, bump the version of the
+ * stage instead.
+ */
+public class TrainingPipeline {
+  public static final String CHECKPOINT_DIR = "checkpoints";
+  public static final String CONF_CHUNK_SIZE =
+      "commons.trainingpipeline.chunk.size";
+  private static final Logger LOG = LoggerFactory
+      .getLogger(TrainingPipeline.class);
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  public enum Stage {
+    TOKENIZE(1), PREPROCESS(1), TAG(1), FEATURES(1);
+
+    private final int m_version;
+
+    private Stage(int version) {
+      m_version = version;
+    }
+  }
+
+  private final Dataset m_dataset;
+  private final Class<? extends FeatureVectorGenerator> m_fvgClass;
+  private final boolean m_useCheckpoints;
+  private final int m_chunkSize;
+  private final File m_checkpointDir;
+  private final String[] m_resourceFingerprints;
+  private FeatureVectorGenerator m_fvg = null;
+  private boolean m_changed = false;
+  private List<FeaturedTweet> m_featuredTrainTweets;
+  private List<FeaturedTweet> m_featuredTestTweets;
+
+  public TrainingPipeline(Dataset dataset,
+      Class<? extends FeatureVectorGenerator> fvgClass,
+      boolean useCheckpoints) {
+    m_dataset = dataset;
+    m_fvgClass = fvgClass;
+    m_useCheckpoints = useCheckpoints;
+    m_chunkSize = Configuration.get(CONF_CHUNK_SIZE, 1000);
+    m_checkpointDir = new File(dataset.getDatasetPath(), CHECKPOINT_DIR);
+    m_resourceFingerprints = new String[Stage.values().length];
+  }
+
+  /**
+   * Runs all stages for the train and test tweets. Stages with an up-to-date
+   * checkpoint are skipped.
+   */
+  public void run() {
+    long startTime = System.currentTimeMillis();
+    if (m_useCheckpoints && (!m_checkpointDir.isDirectory())
+        && (!m_checkpointDir.mkdirs())) {
+      LOG.error("Could not create checkpoint directory: " + m_checkpointDir);
+      throw new RuntimeException();
+    }
+    computeResourceFingerprints();
+
+    List<Chunk> trainChunks = createChunks("train",
+        m_dataset.getTrainTweets(true));
+    List<Chunk> testChunks = createChunks("test", m_dataset.getTestTweets());
+    List<Chunk> chunks = new ArrayList<Chunk>(trainChunks);
+    chunks.addAll(testChunks);
+
+    // the feature vector generator depends on all train tweets (TF-IDF)
+    MessageDigest digest = newDigest();
+    update(digest, m_fvgClass.getName());
+    for (Chunk chunk : trainChunks) {
+      update(digest, chunk.m_fingerprints[Stage.TAG.ordinal()]);
+    }
+    String trainFingerprint = toHex(digest.digest());
+    for (Chunk chunk : chunks) {
+      chunk.m_fingerprints[Stage.FEATURES.ordinal()] = fingerprint(
+          chunk.m_fingerprints[Stage.TAG.ordinal()], Stage.FEATURES,
+          trainFingerprint);
+    }
+
+    int cores = Runtime.getRuntime().availableProcessors();
+    ExecutorService executorService = Executors.newFixedThreadPool(cores);
+    try {
+      // 1) tokenize, preprocess and tag all chunks without features
+      List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+      for (final Chunk chunk : chunks) {
+        chunk.m_featuredTweets = loadCheckpoint(chunk, Stage.FEATURES);
+        if (chunk.m_featuredTweets == null) {
+          tasks.add(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+              tag(chunk);
+              return null;
+            }
+          });
+        }
+      }
+      LOG.info("Tag " + tasks.size() + " of " + chunks.size() + " chunks...");
+      invokeAll(executorService, tasks);
+
+      // 2) generate the feature vectors of all remaining chunks
+      m_changed = !tasks.isEmpty();
+      if (m_changed) {
+        List<List<TaggedToken>> taggedTrainTweets =
+            new ArrayList<List<TaggedToken>>();
+        for (Chunk chunk : trainChunks) {
+          if (chunk.m_taggedTweets != null) {
+            taggedTrainTweets.addAll(chunk.m_taggedTweets);
+          } else {
+            taggedTrainTweets.addAll(FeaturedTweet
+                .getTaggedTokensFromTweets(chunk.m_featuredTweets));
+          }
+        }
+        m_fvg = createFeatureVectorGenerator(m_fvgClass, taggedTrainTweets);
+
+        tasks.clear();
+        for (final Chunk chunk : chunks) {
+          if (chunk.m_featuredTweets == null) {
+            tasks.add(new Callable<Void>() {
+              @Override
+              public Void call() throws Exception {
+                featurize(chunk);
+                return null;
+              }
+            });
+          }
+        }
+        LOG.info("Generate Feature Vectors of " + tasks.size() + " chunks...");
+        invokeAll(executorService, tasks);
+      }
+    } finally {
+      executorService.shutdown();
+    }
+
+    m_featuredTrainTweets = collect(trainChunks);
+    m_featuredTestTweets = collect(testChunks);
+    LOG.info("TrainingPipeline finished after "
+        + (System.currentTimeMillis() - startTime) + " ms");
+  }
+
+  public List<FeaturedTweet> getFeaturedTrainTweets() {
+    return m_featuredTrainTweets;
+  }
+
+  public List<FeaturedTweet> getFeaturedTestTweets() {
+    return m_featuredTestTweets;
+  }
+
+  /**
+   * @return Returns true if feature vectors were generated by the last run and
+   *         not loaded from checkpoints
+   */
+  public boolean hasChanged() {
+    return m_changed;
+  }
+
+  /**
+   * @return Returns the feature vector generator or null if all feature
+   *         vectors were loaded from checkpoints
+   */
+  public FeatureVectorGenerator getFeatureVectorGenerator() {
+    return m_fvg;
+  }
+
+  /**
+   * Returns the feature vector generator of the last run. If all feature
+   * vectors were loaded from checkpoints, it is created of the tagged train
+   * tweets.
+   */
+  public FeatureVectorGenerator createFeatureVectorGenerator() {
+    if (m_fvg == null) {
+      m_fvg = createFeatureVectorGenerator(m_fvgClass,
+          FeaturedTweet.getTaggedTokensFromTweets(m_featuredTrainTweets));
+    }
+    return m_fvg;
+  }
+
+  public static FeatureVectorGenerator createFeatureVectorGenerator(
+      Class<? extends FeatureVectorGenerator> fvgClass,
+      List<List<TaggedToken>> taggedTrainTweets) {
+    if (fvgClass.equals(SentimentFeatureVectorGenerator.class)) {
+      LOG.info("Load SentimentFeatureVectorGenerator...");
+      return new SentimentFeatureVectorGenerator();
+
+    } else if (fvgClass.equals(TfIdfFeatureVectorGenerator.class)) {
+      TweetTfIdf tweetTfIdf = TweetTfIdf.createFromTaggedTokens(
+          taggedTrainTweets, TfType.RAW, TfIdfNormalization.COS, true);
+      LOG.info("Load TfIdfFeatureVectorGenerator...");
+      return new TfIdfFeatureVectorGenerator(tweetTfIdf);
+
+    } else if (fvgClass.equals(CombinedFeatureVectorGenerator.class)) {
+      TweetTfIdf tweetTfIdf = TweetTfIdf.createFromTaggedTokens(
+          taggedTrainTweets, TfType.RAW, TfIdfNormalization.COS, true);
+      LOG.info("Load CombinedFeatureVectorGenerator...");
+      return new CombinedFeatureVectorGenerator(true, tweetTfIdf);
+
+    } else {
+      throw new UnsupportedOperationException("FeatureVectorGenerator '"
+          + fvgClass.getName() + "' is not supported!");
+    }
+  }
+
+  private void tag(Chunk chunk) {
+    chunk.m_tokenizedTweets = loadCheckpoint(chunk, Stage.TOKENIZE);
+    if (chunk.m_tokenizedTweets == null) {
+      chunk.m_tokenizedTweets = new ArrayList<List<String>>(
+          Tokenizer.tokenizeTweets(chunk.m_tweets));
+      saveCheckpoint(chunk, Stage.TOKENIZE, chunk.m_tokenizedTweets);
+    }
+
+    chunk.m_preprocessedTweets = loadCheckpoint(chunk, Stage.PREPROCESS);
+    if (chunk.m_preprocessedTweets == null) {
+      chunk.m_preprocessedTweets = new ArrayList<List<String>>(Preprocessor
+          .getInstance().preprocessTweets(chunk.m_tokenizedTweets));
+      saveCheckpoint(chunk, Stage.PREPROCESS, chunk.m_preprocessedTweets);
+    }
+
+    chunk.m_taggedTweets = loadCheckpoint(chunk, Stage.TAG);
+    if (chunk.m_taggedTweets == null) {
+      chunk.m_taggedTweets = new ArrayList<List<TaggedToken>>(POSTagger
+          .getInstance().tagTweets(chunk.m_preprocessedTweets));
+      saveCheckpoint(chunk, Stage.TAG, chunk.m_taggedTweets);
+    }
+  }
+
+  private void featurize(Chunk chunk) {
+    ArrayList<FeaturedTweet> featuredTweets = new ArrayList<FeaturedTweet>(
+        chunk.m_tweets.size());
+    SparseVector.Builder builder = new SparseVector.Builder();
+    for (int i = 0; i < chunk.m_tweets.size(); i++) {
+      List<TaggedToken> taggedTweet = chunk.m_taggedTweets.get(i);
+      m_fvg.generateFeatureVector(taggedTweet, builder);
+      featuredTweets.add(new FeaturedTweet(chunk.m_tweets.get(i),
+          chunk.m_tokenizedTweets.get(i), chunk.m_preprocessedTweets.get(i),
+          taggedTweet, builder.build()));
+    }
+    saveCheckpoint(chunk, Stage.FEATURES, featuredTweets);
+    chunk.m_featuredTweets = featuredTweets;
+  }
+
+  private List<Chunk> createChunks(String name, List<Tweet> tweets) {
+    List<Chunk> chunks = new ArrayList<Chunk>();
+    for (int from = 0; from < tweets.size(); from += m_chunkSize) {
+      Chunk chunk = new Chunk(name, chunks.size(), tweets.subList(from,
+          Math.min(from + m_chunkSize, tweets.size())));
+      // fingerprint of the input tweets
+      MessageDigest digest = newDigest();
+      for (Tweet tweet : chunk.m_tweets) {
+        update(digest, tweet.getId() + "\t" + tweet.getScore() + "\t"
+            + tweet.getText());
+      }
+      String fingerprint = toHex(digest.digest());
+      // chain the fingerprints of the stages up to the POS tagging
+      for (Stage stage : Arrays.asList(Stage.TOKENIZE, Stage.PREPROCESS,
+          Stage.TAG)) {
+        fingerprint = fingerprint(fingerprint, stage, null);
+        chunk.m_fingerprints[stage.ordinal()] = fingerprint;
+      }
+      chunks.add(chunk);
+    }
+    return chunks;
+  }
+
+  private String fingerprint(String inputFingerprint, Stage stage,
+      String extra) {
+    MessageDigest digest = newDigest();
+    update(digest, inputFingerprint);
+    update(digest, stage.name() + stage.m_version);
+    update(digest, m_resourceFingerprints[stage.ordinal()]);
+    if (extra != null) {
+      update(digest, extra);
+    }
+    return toHex(digest.digest());
+  }
+
+  private void computeResourceFingerprints() {
+    String taggingModel = Configuration
+        .get("global.resources.postagger.model.path");
+    String wordNet = Configuration.getWordNetDict();
+    String compiledWordNet = Configuration.getWordNetCompiledDict();
+
+    m_resourceFingerprints[Stage.TOKENIZE.ordinal()] = resourceFingerprint(
+        Arrays.<Object> asList(Configuration.getUnicodeSymbolsDict()));
+    m_resourceFingerprints[Stage.PREPROCESS.ordinal()] = resourceFingerprint(
+        Arrays.<Object> asList(Configuration.getSlangWordlists(),
+            Configuration.getFirstNames(), wordNet, compiledWordNet));
+    m_resourceFingerprints[Stage.TAG.ordinal()] = resourceFingerprint(
+        Arrays.<Object> asList(taggingModel, taggingModel + "_model.ser",
+            taggingModel + "_featureExtractor.ser"));
+    m_resourceFingerprints[Stage.FEATURES.ordinal()] = resourceFingerprint(
+        Arrays.<Object> asList(Configuration.getSentimentWordlists(),
+            Configuration.getStopWords(), wordNet, compiledWordNet));
+  }
+
+  /**
+   * Hashes the content of resource files. Resources are given by their path,
+   * a list of paths or a list of word list configurations including a path.
+   */
+  private static String resourceFingerprint(List<Object> resources) {
+    MessageDigest digest = newDigest();
+    for (Object resource : resources) {
+      if (resource instanceof List) {
+        for (Object entry : (List<?>) resource) {
+          if (entry instanceof Map) {
+            // word list configurations e.g., scaling and enabled flag
+            update(digest, entry.toString());
+            hashFile(digest, (String) ((Map<?, ?>) entry).get("path"));
+          } else {
+            hashFile(digest, (String) entry);
+          }
+        }
+      } else {
+        hashFile(digest, (String) resource);
+      }
+    }
+    return toHex(digest.digest());
+  }
+
+  private static void hashFile(MessageDigest digest, String file) {
+    update(digest, String.valueOf(file));
+    if ((file == null) || (!IOUtils.exists(file))) {
+      return;
+    }
+    InputStream is = IOUtils.getInputStream(file);
+    try {
+      byte[] buffer = new byte[65536];
+      int len;
+      while ((len = is.read(buffer)) != -1) {
+        digest.update(buffer, 0, len);
+      }
+    } catch (IOException e) {
+      LOG.error("IOException: " + e.getMessage());
+      throw new RuntimeException(e);
+    } finally {
+      try {
+        is.close();
+      } catch (IOException ignore) {
+      }
+    }
+  }
+
+  private File checkpointFile(Chunk chunk, Stage stage) {
+    return new File(m_checkpointDir, checkpointPrefix(chunk, stage)
+        + chunk.m_fingerprints[stage.ordinal()] + Dataset.SERIAL_EXTENSION);
+  }
+
+  private static String checkpointPrefix(Chunk chunk, Stage stage) {
+    return chunk.m_name + "-" + stage.name().toLowerCase() + "-"
+        + chunk.m_index + "-";
+  }
+
+  private <T extends Serializable> T loadCheckpoint(Chunk chunk, Stage stage) {
+    if (!m_useCheckpoints) {
+      return null;
+    }
+    File file = checkpointFile(chunk, stage);
+    if (!file.isFile()) {
+      return null;
+    }
+    return SerializationUtils.deserialize(file.getPath());
+  }
+
+  private void saveCheckpoint(Chunk chunk, Stage stage, Serializable data) {
+    if (!m_useCheckpoints) {
+      return;
+    }
+    File file = checkpointFile(chunk, stage);
+    // write to a temporary file to never leave a partial checkpoint behind
+    File tmpFile = new File(file.getPath() + ".tmp");
+    SerializationUtils.serialize(data, tmpFile.getPath());
+    if (!tmpFile.renameTo(file)) {
+      LOG.error("Could not write checkpoint: " + file);
+      return;
+    }
+    // remove outdated checkpoints of this chunk and stage
+    String prefix = checkpointPrefix(chunk, stage);
+    File[] files = m_checkpointDir.listFiles();
+    if (files != null) {
+      for (File f : files) {
+        if (f.getName().startsWith(prefix) && (!f.equals(file))) {
+          f.delete();
+        }
+      }
+    }
+  }
+
+  private static void invokeAll(ExecutorService executorService,
+      List<Callable<Void>> tasks) {
+    try {
+      for (Future<Void> future : executorService.invokeAll(tasks)) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      LOG.error("InterruptedException: " + e.getMessage());
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      LOG.error("ExecutionException: " + e.getMessage());
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  private static List<FeaturedTweet> collect(List<Chunk> chunks) {
+    List<FeaturedTweet> featuredTweets = new ArrayList<FeaturedTweet>();
+    for (Chunk chunk : chunks) {
+      featuredTweets.addAll(chunk.m_featuredTweets);
+    }
+    return featuredTweets;
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      LOG.error("NoSuchAlgorithmException: " + e.getMessage());
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static void update(MessageDigest digest, String value) {
+    digest.update(value.getBytes(UTF8));
+    digest.update((byte) 0);
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuilder sb = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+      sb.append(Character.forDigit(b & 0xF, 16));
+    }
+    return sb.toString();
+  }
+
+  private static final class Chunk {
+    final String m_name;
+    final int m_index;
+    final List<Tweet> m_tweets;
+    final String[] m_fingerprints = new String[Stage.values().length];
+    ArrayList<List<String>> m_tokenizedTweets;
+    ArrayList<List<String>> m_preprocessedTweets;
+    ArrayList<List<TaggedToken>> m_taggedTweets;
+    ArrayList<FeaturedTweet> m_featuredTweets;
+
+    Chunk(String name, int index, List<Tweet> tweets) {
+      m_name = name;
+      m_index = index;
+      m_tweets = tweets;
+    }
+  }
+
+}
@@ -25,6 +25,7 @@ import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import at.illecker.sentistorm.commons.ArkTag;
 import at.illecker.sentistorm.commons.dict.StopWords;
 import at.illecker.sentistorm.commons.util.StringUtils;
 import at.illecker.sentistorm.commons.wordnet.POSTag;
@@ -73,6 +74,10 @@ public class TweetTfIdf {
     return m_termIds;
   }
 
+  public boolean isUsePOSTags() {
+    return m_usePOSTags;
+  }
+
   public Map<String, Double> tfIdfFromTaggedTokens(List<TaggedToken> tweet) {
     return TfIdf.tfIdf(tfFromTaggedTokens(tweet, m_tfType, m_usePOSTags),
         m_inverseDocFreq, m_tfIdfNormalization);
@@ -107,6 +112,20 @@ public class TweetTfIdf {
     return tweetTfIdf;
   }
 
+  /**
+   * Creates a TweetTfIdf of an existing inverse document frequency table,
+   * e.g., of a persisted feature vector generator. The term frequencies of the
+   * training tweets are not available.
+   */
+  public static TweetTfIdf createFromInverseDocFreq(
+      Map<String, Double> inverseDocFreq, Map<String, Integer> termIds,
+      TfType type, TfIdfNormalization normalization, boolean usePOSTags) {
+    TweetTfIdf tweetTfIdf = new TweetTfIdf(type, normalization, usePOSTags);
+    tweetTfIdf.m_inverseDocFreq = inverseDocFreq;
+    tweetTfIdf.m_termIds = termIds;
+    return tweetTfIdf;
+  }
+
   public static List<Map<String, Double>> tfTaggedTokenTweets(
       List<List<TaggedToken>> tweets, TfType type, boolean usePOSTags) {
     List<Map<String, Double>> termFreqs = new ArrayList<Map<String, Double>>();
@@ -125,16 +144,12 @@ public class TweetTfIdf {
     List<String> words = new ArrayList<String>();
     for (TaggedToken taggedToken : tweet) {
       String word = taggedToken.token.toLowerCase();
-      String arkTag = taggedToken.tag;
+      ArkTag arkTag = ArkTag.of(taggedToken);
 
-      // http://www.ark.cs.cmu.edu/TweetNLP/annot_guidelines.pdf
-      if ((!arkTag.equals(",")) && (!arkTag.equals("$"))
-          && (!arkTag.equals("G")) && (!arkTag.equals("@"))
-          && (!arkTag.equals("~")) && (!arkTag.equals("U"))
-          && (!stopWords.isStopWord(word))) {
+      if ((!isIgnoredTag(arkTag)) && (!stopWords.isStopWord(word))) {
 
         // Remove hashtag
-        if (arkTag.equals("#")) {
+        if (arkTag == ArkTag.HASHTAG) {
           word = word.substring(1);
         }
 
@@ -167,6 +182,24 @@ public class TweetTfIdf {
     return termFreq;
   }
 
+  // http://www.ark.cs.cmu.edu/TweetNLP/annot_guidelines.pdf
+  private static boolean isIgnoredTag(ArkTag arkTag) {
+    if (arkTag == null) {
+      return false;
+    }
+    switch (arkTag) {
+      case PUNCTUATION:
+      case NUMERAL:
+      case OTHER:
+      case AT_MENTION:
+      case DISCOURSE_MARKER:
+      case URL:
+        return true;
+      default:
+        return false;
+    }
+  }
+
   public static Map<String, Double> idf(List<Map<String, Double>> termFreq) {
     return TfIdf.idf(termFreq);
   }
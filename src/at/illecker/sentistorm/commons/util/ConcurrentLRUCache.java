@@ -0,0 +1,171 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.illecker.sentistorm.commons.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded thread-safe cache with least recently used eviction.
+ *
+ * The cache is split into segments selected by the hash of the key. Each
+ * segment is an access-ordered LinkedHashMap guarded by its own lock, so
+ * concurrent lookups of different keys rarely contend. Hit, miss and eviction
+ * counts are tracked for monitoring.
+ */
+public class ConcurrentLRUCache<K, V> {
+  private static final int DEFAULT_SEGMENTS = 16;
+  private final Segment<K, V>[] m_segments;
+  private final int m_segmentMask;
+  private final AtomicLong m_hits = new AtomicLong();
+  private final AtomicLong m_misses = new AtomicLong();
+  private final AtomicLong m_evictions = new AtomicLong();
+
+  private static final class Segment<SK, SV> extends LinkedHashMap<SK, SV> {
+    private static final long serialVersionUID = 7390618374920745018L;
+    private final int m_maxSize;
+    private final AtomicLong m_evictions;
+
+    private Segment(int maxSize, AtomicLong evictions) {
+      super(16, 0.75f, true);
+      this.m_maxSize = maxSize;
+      this.m_evictions = evictions;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<SK, SV> eldest) {
+      if (size() > m_maxSize) {
+        m_evictions.incrementAndGet();
+        return true;
+      }
+      return false;
+    }
+  }
+
+  public ConcurrentLRUCache(int maxSize) {
+    this(maxSize, DEFAULT_SEGMENTS);
+  }
+
+  public ConcurrentLRUCache(int maxSize, int segments) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("maxSize must be positive!");
+    }
+    // number of segments is a power of two
+    int segmentCount = 1;
+    while ((segmentCount < segments) && (segmentCount * 2 <= maxSize)) {
+      segmentCount <<= 1;
+    }
+    m_segmentMask = segmentCount - 1;
+    m_segments = newSegments(segmentCount);
+    // distribute maxSize exactly among all segments
+    for (int i = 0; i < segmentCount; i++) {
+      int segmentSize = (maxSize / segmentCount)
+          + ((i < maxSize % segmentCount) ? 1 : 0);
+      m_segments[i] = new Segment<K, V>(segmentSize, m_evictions);
+    }
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private static <K, V> Segment<K, V>[] newSegments(int size) {
+    return new Segment[size];
+  }
+
+  private Segment<K, V> segmentFor(Object key) {
+    int h = key.hashCode();
+    h ^= (h >>> 16);
+    return m_segments[h & m_segmentMask];
+  }
+
+  /**
+   *
+   * @param key the key
+   * @return Returns the cached value or null
+   */
+  public V get(K key) {
+    Segment<K, V> segment = segmentFor(key);
+    V value;
+    synchronized (segment) {
+      value = segment.get(key);
+    }
+    if (value != null) {
+      m_hits.incrementAndGet();
+    } else {
+      m_misses.incrementAndGet();
+    }
+    return value;
+  }
+
+  public void put(K key, V value) {
+    if (value == null) {
+      throw new NullPointerException("null values are not supported!");
+    }
+    Segment<K, V> segment = segmentFor(key);
+    synchronized (segment) {
+      segment.put(key, value);
+    }
+  }
+
+  public int size() {
+    int size = 0;
+    for (Segment<K, V> segment : m_segments) {
+      synchronized (segment) {
+        size += segment.size();
+      }
+    }
+    return size;
+  }
+
+  public void clear() {
+    for (Segment<K, V> segment : m_segments) {
+      synchronized (segment) {
+        segment.clear();
+      }
+    }
+  }
+
+  public long getHitCount() {
+    return m_hits.get();
+  }
+
+  public long getMissCount() {
+    return m_misses.get();
+  }
+
+  public long getEvictionCount() {
+    return m_evictions.get();
+  }
+
+  /**
+   *
+   * @return Returns the ratio of hits to all lookups or 0 if there were no
+   *         lookups
+   */
+  public double getHitRate() {
+    long hits = m_hits.get();
+    long lookups = hits + m_misses.get();
+    return (lookups == 0) ? 0 : hits / (double) lookups;
+  }
+
+  @Override
+  public String toString() {
+    return "ConcurrentLRUCache [size=" + size() + ", hits=" + getHitCount()
+        + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount()
+        + ", hitRate=" + getHitRate() + "]";
+  }
+
+}
@@ -16,7 +16,27 @@
  */
 package at.illecker.sentistorm.commons.util;
 
+/**
+ * Decodes HTML entities and removes paragraph tags of tweets.
+ *
+ * Numeric (&amp;#NNN; and &amp;#xHH;) and named entities are decoded within
+ * one forward scan. Quotation marks, dashes and non-breaking spaces are
+ * replaced by their ASCII equivalents.
+ */
 public class HtmlUtils {
+  // longest entity including '&' and ';'
+  private static final int MAX_ENTITY_LENGTH = 10;
+  private static final String[] ENTITY_NAMES = { "amp", "lt", "gt", "quot",
+      "apos", "nbsp", "ndash", "mdash", "lsquo", "rsquo", "sbquo", "ldquo",
+      "rdquo", "hellip" };
+  private static final int[] ENTITY_CODE_POINTS = { '&', '<', '>', '"',
+      '\'', 160, 8211, 8212, 8216, 8217, 8218, 8220, 8221, 8230 };
+  private static final ThreadLocal<StringBuilder> BUILDER = new ThreadLocal<StringBuilder>() {
+    @Override
+    protected StringBuilder initialValue() {
+      return new StringBuilder(256);
+    }
+  };
 
   public static boolean containsHtml(String str) {
     if (str == null) {
@@ -26,88 +46,155 @@ public class HtmlUtils {
   }
 
   public static String replaceHtmlSymbols(String str) {
-    String result = str;
-    result = result.replaceAll("<p>|</p>", "");
+    return decodeHtml(str).trim();
+  }
 
-    // http://www.ascii.cl/htmlcodes.htm
-    // space
-    result = result.replaceAll("&#32;|&#032;", " ");
-    // exclamation point
-    result = result.replaceAll("&#33;|&#033;", "!");
-    // double quotes
-    result = result.replaceAll("&quot;|&#34;|&#034;", "\"");
-    // number sign
-    result = result.replaceAll("&#35;|&#035;", "#");
-    // dollar sign
-    result = result.replaceAll("&#36;|&#036;", "$");
-    // percent sign
-    result = result.replaceAll("&#37;|&#037;", "%");
-    // ampersand
-    result = result.replaceAll("&amp;|&#38;|&#038;", "&");
-    // single quote
-    result = result.replaceAll("&#39;|&#039;", "'");
-    // opening parenthesis
-    result = result.replaceAll("&#40;|&#040;", "(");
-    // closing parenthesis
-    result = result.replaceAll("&#41;|&#041;", ")");
-    // asterisk
-    result = result.replaceAll("&#42;|&#042;", "*");
-    // plus sign
-    result = result.replaceAll("&#43;|&#043;", "+");
-    // comma
-    result = result.replaceAll("&#44;|&#044;", ",");
-    // minus sign - hyphen
-    result = result.replaceAll("&#45;|&#045;", "-");
-    // period
-    result = result.replaceAll("&#46;|&#046;", ".");
-    // slash
-    result = result.replaceAll("&#47;|&#047;", "/");
-    // colon
-    result = result.replaceAll("&#58;|&#058;", ":");
-    // semicolon
-    result = result.replaceAll("&#59;|&#059;", ";");
-    // less than sign
-    result = result.replaceAll("&lt;|&#60;|&#060;", "<");
-    // equal sign
-    result = result.replaceAll("&#61;|&#061;", "=");
-    // greater than sign
-    result = result.replaceAll("&gt;|&#62;|&#062;", ">");
-    // question mark
-    result = result.replaceAll("&#63;|&#063;", "?");
-    // at symbol
-    result = result.replaceAll("&#64;|&#064;", "@");
-    // opening bracket
-    result = result.replaceAll("&#91;|&#091;", "[");
-    // backslash
-    result = result.replaceAll("&#92;|&#092;", "\\");
-    // closing bracket
-    result = result.replaceAll("&#93;|&#093;", "]");
-    // caret - circumflex
-    result = result.replaceAll("&#94;|&#094;", "^");
-    // underscore
-    result = result.replaceAll("&#95;|&#095;", "_");
-    // opening brace
-    result = result.replaceAll("&#123;", "{");
-    // vertical bar
-    result = result.replaceAll("&#124;", "|");
-    // closing brace
-    result = result.replaceAll("&#125;", "}");
-    // equivalency sign - tilde
-    result = result.replaceAll("&#126;", "~");
+  /**
+   * Decodes all HTML entities of a text
+   *
+   * @param str the text
+   * @return Returns the decoded text or the same instance if there was nothing
+   *         to decode
+   */
+  public static String decodeHtml(String str) {
+    StringBuilder sb = BUILDER.get();
+    sb.setLength(0);
+    return decodeHtml(str, sb) ? sb.toString() : str;
+  }
 
-    // non-breaking space
-    result = result.replaceAll("&nbsp;|&#160;", " ");
+  /**
+   * Decodes all HTML entities of a text and appends the result to a buffer
+   *
+   * @param str the text
+   * @param out the buffer, which is only modified if something was decoded
+   * @return Returns true if there was something to decode
+   */
+  public static boolean decodeHtml(String str, StringBuilder out) {
+    int length = str.length();
+    int last = 0;
+    boolean decoded = false;
+    int i = 0;
+    while (i < length) {
+      char c = str.charAt(i);
+      int end = -1; // end of the entity or tag
+      int codePoint = -1;
+      if (c == '&') {
+        int semicolon = indexOfSemicolon(str, i + 1,
+            Math.min(length, i + MAX_ENTITY_LENGTH));
+        if (semicolon > i + 1) {
+          codePoint = decodeEntity(str, i + 1, semicolon);
+          if (codePoint >= 0) {
+            end = semicolon + 1;
+          }
+        }
+      } else if (c == '<') {
+        // remove paragraphs
+        if (str.startsWith("<p>", i)) {
+          end = i + 3;
+        } else if (str.startsWith("</p>", i)) {
+          end = i + 4;
+        }
+      }
 
-    // en dash & em dash
-    result = result.replaceAll("&#8211;|&#8212;", "-");
-    // left & right single quotation mark
-    result = result.replaceAll("&#8216;|&#8217;", "'");
-    // single low-9 quotation mark
-    result = result.replaceAll("&#8218;", ",");
-    // left & right double quotation mark
-    result = result.replaceAll("&#8220;|&#8221;", "\"");
+      if (end < 0) {
+        i++;
+        continue;
+      }
+      out.append(str, last, i);
+      if (codePoint >= 0) {
+        out.appendCodePoint(codePoint);
+      }
+      decoded = true;
+      i = end;
+      last = end;
+    }
 
-    return result.trim();
+    if (decoded) {
+      out.append(str, last, length);
+    }
+    return decoded;
+  }
+
+  private static int indexOfSemicolon(String str, int start, int end) {
+    for (int i = start; i < end; i++) {
+      char c = str.charAt(i);
+      if (c == ';') {
+        return i;
+      }
+      if ((c == '&') || (c == ' ')) {
+        return -1;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Decodes the entity between '&' and ';'
+   *
+   * @return Returns the normalized code point or -1 if it is no valid entity
+   */
+  private static int decodeEntity(String str, int start, int end) {
+    int codePoint = -1;
+    if (str.charAt(start) == '#') {
+      int radix = 10;
+      int i = start + 1;
+      if ((i < end) && ((str.charAt(i) == 'x') || (str.charAt(i) == 'X'))) {
+        radix = 16;
+        i++;
+      }
+      if (i == end) {
+        return -1;
+      }
+      codePoint = 0;
+      for (; i < end; i++) {
+        int digit = Character.digit(str.charAt(i), radix);
+        if ((digit < 0) || (str.charAt(i) > 'f')) {
+          return -1;
+        }
+        codePoint = codePoint * radix + digit;
+      }
+      // ignore control chars, surrogates and invalid code points
+      if ((codePoint < 32) && (codePoint != '\t') && (codePoint != '\n')
+          && (codePoint != '\r')) {
+        return -1;
+      }
+      if (((codePoint >= 0xD800) && (codePoint <= 0xDFFF))
+          || (codePoint > Character.MAX_CODE_POINT)) {
+        return -1;
+      }
+    } else {
+      for (int i = 0; i < ENTITY_NAMES.length; i++) {
+        String name = ENTITY_NAMES[i];
+        if ((name.length() == end - start) && str.startsWith(name, start)) {
+          codePoint = ENTITY_CODE_POINTS[i];
+          break;
+        }
+      }
+      if (codePoint < 0) {
+        return -1;
+      }
+    }
+    return normalize(codePoint);
+  }
+
+  private static int normalize(int codePoint) {
+    switch (codePoint) {
+      case 160: // non-breaking space
+        return ' ';
+      case 8211: // en dash
+      case 8212: // em dash
+        return '-';
+      case 8216: // left single quotation mark
+      case 8217: // right single quotation mark
+        return '\'';
+      case 8218: // single low-9 quotation mark
+        return ',';
+      case 8220: // left double quotation mark
+      case 8221: // right double quotation mark
+        return '"';
+      default:
+        return codePoint;
+    }
   }
 
 }
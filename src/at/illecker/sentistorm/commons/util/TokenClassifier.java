@@ -0,0 +1,561 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.illecker.sentistorm.commons.util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Classifies a token in a single scan and returns its properties as bitmask.
+ *
+ * The properties are equal to the full matches of the corresponding
+ * {@link StringUtils} checks. Characters are scanned once and the simple
+ * patterns (numbers, users, hashtags, emails, slang, punctuations) are parsed
+ * directly. URLs, phone numbers and emoticons are only matched by their regex
+ * if the scan found a possible candidate.
+ */
+public final class TokenClassifier {
+  private static final Logger LOG = LoggerFactory
+      .getLogger(TokenClassifier.class);
+  public static final int PUNCTUATIONS = 1;
+  public static final int UNDERSCORES = 1 << 1;
+  public static final int EMOTICON = 1 << 2;
+  public static final int URL = 1 << 3;
+  public static final int NUMERIC = 1 << 4;
+  public static final int USER = 1 << 5;
+  public static final int HASH_TAG = 1 << 6;
+  public static final int SLANG = 1 << 7;
+  public static final int EMAIL = 1 << 8;
+  public static final int PHONE = 1 << 9;
+  public static final int SPECIAL_NUMERIC = 1 << 10;
+  public static final int SEPARATED_NUMERIC = 1 << 11;
+  public static final int ALL = (1 << 12) - 1;
+
+  // any kind of number
+  public static final int NUMBERS = NUMERIC | SPECIAL_NUMERIC
+      | SEPARATED_NUMERIC | PHONE;
+
+  // ASCII character classes
+  private static final int C_PUNCT = 1; // \p{Punct}
+  private static final int C_SPACE = 1 << 1; // \s
+  private static final int C_DIGIT = 1 << 2;
+  private static final int C_LETTER = 1 << 3;
+  private static final int C_EMOTICON = 1 << 4; // any emoticon char
+  private static final int C_EYES = 1 << 5; // emoticon eyes
+  private static final int C_PHONE = 1 << 6; // any phone char
+  private static final int C_EMAIL_LOCAL = 1 << 7;
+  private static final int C_HASH_TAG = 1 << 8;
+  private static final int C_SLANG = 1 << 9; // [a-zA-z]
+  private static final int[] CHAR_CLASSES = createCharClasses();
+
+  // random tokens of main() consist of these fragments and chars
+  private static final String[] RANDOM_FRAGMENTS = { "@", "@user_1", "#",
+      "#tag", "#it's", "http://", "https://www.", "ftp://", "www.", "a.com",
+      ".org", "/path?q=1", "a@b.co", "john.doe", "555-1234", "+1 ",
+      "(555) ", "123-4567", "1", "12", "-3", "+4", "1,5", "3.14", "$4.50",
+      "10th", "1/2/2014", "12:30pm", "50%", "12lb", ":)", ":-((", ";-)",
+      ":'(", "<3", "XD", ":D", "=P", "(:", "w/", "w/o", "\\m/", "_", "___",
+      "!?", "...", "-", "'", " ", "a", "Z", "word", "caf\u00e9" };
+  private static final String RANDOM_CHARS = " .,:;'-_/\\()[]{}<>@#$%^&*+=|"
+      + "!?~`\"0123456789aAbBcCdDoOpPxXlLsSJ8\u00e9\u2019\t";
+
+  private TokenClassifier() {
+  }
+
+  private static int[] createCharClasses() {
+    int[] classes = new int[128];
+    for (char c = 'a'; c <= 'z'; c++) {
+      classes[c] |= C_LETTER | C_EMAIL_LOCAL | C_HASH_TAG;
+      classes[Character.toUpperCase(c)] |= C_LETTER | C_EMAIL_LOCAL
+          | C_HASH_TAG;
+    }
+    for (char c = 'A'; c <= 'z'; c++) {
+      classes[c] |= C_SLANG;
+    }
+    for (char c = '0'; c <= '9'; c++) {
+      classes[c] |= C_DIGIT | C_PHONE | C_EMAIL_LOCAL | C_HASH_TAG;
+    }
+    set(classes, "!\"#$%&'()*+,-./:;<=>?@[\\]^_`{|}~", C_PUNCT);
+    set(classes, " \t\n\u000B\f\r", C_SPACE | C_PHONE);
+    set(classes, "+().-", C_PHONE);
+    set(classes, "+._%-", C_EMAIL_LOCAL);
+    set(classes, "_'-", C_HASH_TAG);
+    set(classes, ":;=8xX*<>^|#%", C_EYES | C_EMOTICON);
+    set(classes, "<>oO0}3|'-_co^./\\()[]{}*=@,bdDpPLS$X#J&", C_EMOTICON);
+    return classes;
+  }
+
+  private static void set(int[] classes, String chars, int charClass) {
+    for (int i = 0; i < chars.length(); i++) {
+      classes[chars.charAt(i)] |= charClass;
+    }
+  }
+
+  /**
+   *
+   * @param token the token
+   * @return Returns the bitmask of all properties of the token
+   */
+  public static int classify(String token) {
+    return classify(token, ALL);
+  }
+
+  /**
+   *
+   * @param token the token
+   * @param properties the bitmask of properties to check
+   * @return Returns the bitmask of the checked properties of the token
+   */
+  public static int classify(String token, int properties) {
+    if ((token == null) || (token.isEmpty())) {
+      return 0;
+    }
+
+    // scan all characters once
+    int length = token.length();
+    int and = -1;
+    int or = 0;
+    int digits = 0;
+    boolean punctuations = true;
+    boolean underscores = true;
+    for (int i = 0; i < length; i++) {
+      char c = token.charAt(i);
+      int charClass = charClass(c);
+      and &= charClass;
+      or |= charClass;
+      if ((charClass & C_DIGIT) != 0) {
+        digits++;
+      }
+      if ((charClass & (C_PUNCT | C_SPACE)) == 0) {
+        punctuations = false;
+      }
+      if (c != '_') {
+        underscores = false;
+      }
+    }
+
+    int result = 0;
+    if (((properties & PUNCTUATIONS) != 0)
+        && punctuations) {
+      result |= PUNCTUATIONS;
+    }
+    if (((properties & UNDERSCORES) != 0) && underscores) {
+      result |= UNDERSCORES;
+    }
+    if (((properties & EMOTICON) != 0) && ((and & C_EMOTICON) != 0)
+        && ((or & C_EYES) != 0)
+        && RegexUtils.EMOTICON_PATTERN.matcher(token).matches()) {
+      result |= EMOTICON;
+    }
+    if (((properties & URL) != 0) && hasURLPrefix(token)
+        && RegexUtils.URL_PATTERN.matcher(token).matches()) {
+      result |= URL;
+    }
+    if (((properties & PHONE) != 0) && ((and & C_PHONE) != 0)
+        && (digits >= 7) && (digits <= 11)
+        && RegexUtils.PHONE_PATTERN.matcher(token).matches()) {
+      result |= PHONE;
+    }
+
+    char first = token.charAt(0);
+    if (digits > 0) {
+      if (((properties & NUMERIC) != 0) && isNumeric(token)) {
+        result |= NUMERIC;
+      }
+      if (((properties & SPECIAL_NUMERIC) != 0) && isSpecialNumeric(token)) {
+        result |= SPECIAL_NUMERIC;
+      }
+      if (((properties & SEPARATED_NUMERIC) != 0)
+          && isSeparatedNumeric(token)) {
+        result |= SEPARATED_NUMERIC;
+      }
+    }
+    if (((properties & USER) != 0) && (first == '@') && isUser(token)) {
+      result |= USER;
+    }
+    if (((properties & HASH_TAG) != 0) && (first == '#') && isHashTag(token)) {
+      result |= HASH_TAG;
+    }
+    if (((properties & SLANG) != 0) && isSlang(token)) {
+      result |= SLANG;
+    }
+    if (((properties & EMAIL) != 0) && isEmail(token)) {
+      result |= EMAIL;
+    }
+    return result;
+  }
+
+  private static int charClass(char c) {
+    return (c < 128) ? CHAR_CLASSES[c] : 0;
+  }
+
+  private static boolean hasURLPrefix(String token) {
+    return token.regionMatches(true, 0, "http://", 0, 7)
+        || token.regionMatches(true, 0, "https://", 0, 8)
+        || token.regionMatches(true, 0, "ftp://", 0, 6);
+  }
+
+  private static boolean isDigit(char c) {
+    return (c >= '0') && (c <= '9');
+  }
+
+  private static boolean isLetter(char c) {
+    return ((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z'));
+  }
+
+  private static boolean isWordChar(char c) {
+    return isLetter(c) || isDigit(c) || (c == '_');
+  }
+
+  /**
+   *
+   * @return Returns the end of the digit sequence starting at i
+   */
+  private static int skipDigits(String token, int i) {
+    while ((i < token.length()) && isDigit(token.charAt(i))) {
+      i++;
+    }
+    return i;
+  }
+
+  /**
+   * [+-]?\d+(,\d+)?(\.\d+)?
+   */
+  private static boolean isNumeric(String token) {
+    int length = token.length();
+    int i = 0;
+    char c = token.charAt(0);
+    if ((c == '+') || (c == '-')) {
+      i++;
+    }
+    int end = skipDigits(token, i);
+    if (end == i) {
+      return false;
+    }
+    i = end;
+    if ((i < length) && (token.charAt(i) == ',')) {
+      end = skipDigits(token, i + 1);
+      if (end == i + 1) {
+        return false;
+      }
+      i = end;
+    }
+    if ((i < length) && (token.charAt(i) == '.')) {
+      end = skipDigits(token, i + 1);
+      if (end == i + 1) {
+        return false;
+      }
+      i = end;
+    }
+    return i == length;
+  }
+
+  /**
+   * $?[+-]?\d+([.|,:-]\d+)*(%|fm|am|pm|p|lb|c|st|nd|rd|th)? ignoring case
+   */
+  private static boolean isSpecialNumeric(String token) {
+    int length = token.length();
+    int i = 0;
+    if (token.charAt(i) == '$') {
+      i++;
+    }
+    if ((i < length) && ((token.charAt(i) == '+') || (token.charAt(i) == '-'))) {
+      i++;
+    }
+    int end = skipDigits(token, i);
+    if (end == i) {
+      return false;
+    }
+    i = end;
+    while ((i + 1 < length) && isSpecialSeparator(token.charAt(i))
+        && isDigit(token.charAt(i + 1))) {
+      i = skipDigits(token, i + 1);
+    }
+    return isSuffix(token, i, true, true);
+  }
+
+  private static boolean isSpecialSeparator(char c) {
+    return (c == '.') || (c == '|') || (c == ',') || (c == ':') || (c == '-');
+  }
+
+  /**
+   * \d+(am|pm|c|st|nd|rd|th)?[/|,-]+\d+([/|,-]\d+)*(%|fm|am|pm|lb|c|p|st|nd|rd|th)?
+   * ignoring case
+   */
+  private static boolean isSeparatedNumeric(String token) {
+    int length = token.length();
+    int i = skipDigits(token, 0);
+    if (i == 0) {
+      return false;
+    }
+    // optional suffix before the separators
+    int separator = i;
+    while ((separator < length) && isLetter(token.charAt(separator))) {
+      separator++;
+    }
+    if ((separator > i) && (!isSuffix(token.substring(0, separator), i, false,
+        false))) {
+      return false;
+    }
+    i = separator;
+    int end = i;
+    while ((end < length) && isSeparator(token.charAt(end))) {
+      end++;
+    }
+    if (end == i) {
+      return false;
+    }
+    i = end;
+    end = skipDigits(token, i);
+    if (end == i) {
+      return false;
+    }
+    i = end;
+    while ((i + 1 < length) && isSeparator(token.charAt(i))
+        && isDigit(token.charAt(i + 1))) {
+      i = skipDigits(token, i + 1);
+    }
+    return isSuffix(token, i, true, true);
+  }
+
+  private static boolean isSeparator(char c) {
+    return (c == '/') || (c == '|') || (c == ',') || (c == '-');
+  }
+
+  /**
+   * Checks if the token ends with an optional number suffix starting at i.
+   * 
+   * Suffixes are am, pm, c, st, nd, rd and th, the extended suffixes include
+   * %, fm, lb and p as well.
+   */
+  private static boolean isSuffix(String token, int i, boolean optional,
+      boolean extended) {
+    int length = token.length() - i;
+    if (length == 0) {
+      return optional;
+    }
+    if (length == 1) {
+      char c = toLowerCase(token.charAt(i));
+      return (c == 'c') || (extended && ((c == '%') || (c == 'p')));
+    }
+    if (length == 2) {
+      char c1 = toLowerCase(token.charAt(i));
+      char c2 = toLowerCase(token.charAt(i + 1));
+      if (c2 == 'm') {
+        return (c1 == 'a') || (c1 == 'p') || (extended && (c1 == 'f'));
+      }
+      return ((c1 == 's') && (c2 == 't')) || ((c1 == 'n') && (c2 == 'd'))
+          || ((c1 == 'r') && (c2 == 'd')) || ((c1 == 't') && (c2 == 'h'))
+          || (extended && (c1 == 'l') && (c2 == 'b'));
+    }
+    return false;
+  }
+
+  private static char toLowerCase(char c) {
+    return ((c >= 'A') && (c <= 'Z')) ? (char) (c + ('a' - 'A')) : c;
+  }
+
+  /**
+   * @+[A-Za-z]+[A-Za-z0-9_]+
+   */
+  private static boolean isUser(String token) {
+    int length = token.length();
+    int i = 0;
+    while ((i < length) && (token.charAt(i) == '@')) {
+      i++;
+    }
+    if ((length - i < 2) || (!isLetter(token.charAt(i)))) {
+      return false;
+    }
+    for (i++; i < length; i++) {
+      if (!isWordChar(token.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * #+[A-Za-z]+[A-Za-z0-9_'-]*[A-Za-z0-9_]+
+   */
+  private static boolean isHashTag(String token) {
+    int length = token.length();
+    int i = 0;
+    while ((i < length) && (token.charAt(i) == '#')) {
+      i++;
+    }
+    if ((length - i < 2) || (!isLetter(token.charAt(i)))
+        || (!isWordChar(token.charAt(length - 1)))) {
+      return false;
+    }
+    for (i++; i < length; i++) {
+      if ((charClass(token.charAt(i)) & C_HASH_TAG) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * [a-zA-Z]/[a-zA-z]* or \m/
+   */
+  private static boolean isSlang(String token) {
+    int length = token.length();
+    if ((length < 2) || (token.charAt(1) != '/')) {
+      return token.equals("\\m/");
+    }
+    if (!isLetter(token.charAt(0))) {
+      return false;
+    }
+    for (int i = 2; i < length; i++) {
+      if ((charClass(token.charAt(i)) & C_SLANG) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * [a-zA-Z0-9+._%-]{1,256}@[a-zA-Z0-9][a-zA-Z0-9-]{0,64}(\.[a-zA-Z0-9][a-zA-Z0-9-]{0,25})+
+   */
+  private static boolean isEmail(String token) {
+    int at = token.indexOf('@');
+    if ((at < 1) || (at > 256)) {
+      return false;
+    }
+    for (int i = 0; i < at; i++) {
+      if ((charClass(token.charAt(i)) & C_EMAIL_LOCAL) == 0) {
+        return false;
+      }
+    }
+    // domain labels separated by dots
+    int length = token.length();
+    int labels = 0;
+    int start = at + 1;
+    while (start <= length) {
+      int end = token.indexOf('.', start);
+      if (end < 0) {
+        end = length;
+      }
+      int maxLength = (labels == 0) ? 65 : 26;
+      if ((end == start) || (end - start > maxLength)) {
+        return false;
+      }
+      char c = token.charAt(start);
+      if (!(isLetter(c) || isDigit(c))) {
+        return false;
+      }
+      for (int i = start + 1; i < end; i++) {
+        c = token.charAt(i);
+        if (!(isLetter(c) || isDigit(c) || (c == '-'))) {
+          return false;
+        }
+      }
+      labels++;
+      start = end + 1;
+    }
+    return labels >= 2;
+  }
+
+  public static boolean isSet(int properties, int property) {
+    return (properties & property) != 0;
+  }
+
+  /**
+   *
+   * @param token the token
+   * @return Returns the bitmask of all properties of the token given by the
+   *         {@link StringUtils} regex checks
+   */
+  private static int classifyByRegex(String token) {
+    int result = 0;
+    result |= StringUtils.consitsOfPunctuations(token) ? PUNCTUATIONS : 0;
+    result |= StringUtils.consitsOfUnderscores(token) ? UNDERSCORES : 0;
+    result |= StringUtils.isEmoticon(token) ? EMOTICON : 0;
+    result |= StringUtils.isURL(token) ? URL : 0;
+    result |= StringUtils.isNumeric(token) ? NUMERIC : 0;
+    result |= StringUtils.isUser(token) ? USER : 0;
+    result |= StringUtils.isHashTag(token) ? HASH_TAG : 0;
+    result |= StringUtils.isSlang(token) ? SLANG : 0;
+    result |= StringUtils.isEmail(token) ? EMAIL : 0;
+    result |= StringUtils.isPhone(token) ? PHONE : 0;
+    result |= StringUtils.isSpecialNumeric(token) ? SPECIAL_NUMERIC : 0;
+    result |= StringUtils.isSeparatedNumeric(token) ? SEPARATED_NUMERIC : 0;
+    return result;
+  }
+
+  /**
+   * Classifies random tokens built of fragments of all properties and
+   * compares the properties to the {@link StringUtils} regex checks. Fails on
+   * the first mismatching token.
+   *
+   * @param args [token count] [random seed]
+   */
+  public static void main(String[] args) {
+    int tokenCount = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+    long seed = (args.length > 1) ? Long.parseLong(args[1]) : 42;
+    Random rand = new Random(seed);
+
+    StringBuilder sb = new StringBuilder();
+    int[] propertyCounts = new int[Integer.bitCount(ALL)];
+    long regexTime = 0;
+    long classifierTime = 0;
+    for (int n = 0; n < tokenCount; n++) {
+      sb.setLength(0);
+      int fragmentCount = 1 + rand.nextInt(4);
+      for (int i = 0; i < fragmentCount; i++) {
+        if (rand.nextInt(4) == 0) {
+          sb.append(RANDOM_CHARS.charAt(rand.nextInt(RANDOM_CHARS.length())));
+        } else {
+          sb.append(RANDOM_FRAGMENTS[rand.nextInt(RANDOM_FRAGMENTS.length)]);
+        }
+      }
+      String token = sb.toString();
+
+      long startTime = System.nanoTime();
+      int expected = classifyByRegex(token);
+      regexTime += System.nanoTime() - startTime;
+
+      startTime = System.nanoTime();
+      int properties = classify(token);
+      classifierTime += System.nanoTime() - startTime;
+
+      if (properties != expected) {
+        LOG.error("Token: '" + token + "' regex: "
+            + Integer.toBinaryString(expected) + " classifier: "
+            + Integer.toBinaryString(properties) + " (seed: " + seed
+            + ", token: " + n + ")");
+        throw new RuntimeException();
+      }
+      for (int i = 0; i < propertyCounts.length; i++) {
+        if (isSet(properties, 1 << i)) {
+          propertyCounts[i]++;
+        }
+      }
+    }
+    LOG.info("Compared " + tokenCount + " random tokens (seed: " + seed
+        + "), no mismatches");
+    LOG.info("Tokens per property (PUNCTUATIONS .. SEPARATED_NUMERIC): "
+        + Arrays.toString(propertyCounts));
+    LOG.info("Regex checks: " + (regexTime / 1000000) + " ms, "
+        + "classifier: " + (classifierTime / 1000000) + " ms");
+  }
+
+}
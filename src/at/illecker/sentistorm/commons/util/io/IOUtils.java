@@ -26,6 +26,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.zip.GZIPInputStream;
 
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
@@ -56,6 +59,35 @@ public class IOUtils {
     }
   }
 
+  /**
+   * Registers the file and, if it is a directory, all files within it to be
+   * deleted when the JVM terminates normally.
+   */
+  public static void deleteOnExit(File file) {
+    // files are deleted in reverse order of registration, i.e., the
+    // directory after its files
+    file.deleteOnExit();
+    if (file.isDirectory()) {
+      for (File c : file.listFiles())
+        deleteOnExit(c);
+    }
+  }
+
+  /**
+   * Replaces the target by the source file, atomically if the file system
+   * supports it.
+   */
+  public static void moveAtomically(File source, File target)
+      throws IOException {
+    try {
+      Files.move(source.toPath(), target.toPath(),
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(source.toPath(), target.toPath(),
+          StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
   public static boolean exists(String file) {
     // 1) check if file is in jar
     if (IOUtils.class.getClassLoader().getResourceAsStream(file) != null) {
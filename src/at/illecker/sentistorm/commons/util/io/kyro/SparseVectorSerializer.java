@@ -0,0 +1,63 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.illecker.sentistorm.commons.util.io.kyro;
+
+import at.illecker.sentistorm.commons.featurevector.SparseVector;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Writes the size and the delta-encoded indices as variable-length integers
+ * followed by the raw double values.
+ */
+public class SparseVectorSerializer extends Serializer<SparseVector> {
+
+  @Override
+  public SparseVector read(Kryo kryo, Input input, Class<SparseVector> type) {
+    int size = input.readInt(true);
+    int[] indices = new int[size];
+    double[] values = new double[size];
+    int index = 0;
+    for (int i = 0; i < size; i++) {
+      index += input.readInt(true);
+      indices[i] = index;
+    }
+    for (int i = 0; i < size; i++) {
+      values[i] = input.readDouble();
+    }
+    return new SparseVector(indices, values);
+  }
+
+  @Override
+  public void write(Kryo kryo, Output output, SparseVector vector) {
+    int size = vector.size();
+    output.writeInt(size, true);
+    int last = 0;
+    for (int i = 0; i < size; i++) {
+      int index = vector.getIndex(i);
+      output.writeInt(index - last, true);
+      last = index;
+    }
+    for (int i = 0; i < size; i++) {
+      output.writeDouble(vector.getValue(i));
+    }
+  }
+
+}
@@ -16,6 +16,8 @@
  */
 package at.illecker.sentistorm.commons.util.io.kyro;
 
+import at.illecker.sentistorm.commons.ArkTag;
+import at.illecker.sentistorm.commons.ArkTaggedToken;
 import cmu.arktweetnlp.Tagger.TaggedToken;
 
 import com.esotericsoftware.kryo.Kryo;
@@ -23,17 +25,33 @@ import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 
+/**
+ * Writes the token and the byte code of its ArkTag. Tags which are not Ark
+ * tags are written as string after the code NO_ARK_TAG.
+ */
 public class TaggedTokenSerializer extends Serializer<TaggedToken> {
+  private static final byte NO_ARK_TAG = -1;
 
   @Override
   public TaggedToken read(Kryo kryo, Input input, Class<TaggedToken> type) {
-    return new TaggedToken(input.readString(), input.readString());
+    String token = input.readString();
+    byte code = input.readByte();
+    if (code != NO_ARK_TAG) {
+      return new ArkTaggedToken(token, ArkTag.fromCode(code));
+    }
+    return new TaggedToken(token, input.readString());
   }
 
   @Override
   public void write(Kryo kryo, Output output, TaggedToken taggedToken) {
     output.writeString(taggedToken.token);
-    output.writeString(taggedToken.tag);
+    ArkTag arkTag = ArkTag.of(taggedToken);
+    if (arkTag != null) {
+      output.writeByte(arkTag.getCode());
+    } else {
+      output.writeByte(NO_ARK_TAG);
+      output.writeString(taggedToken.tag);
+    }
   }
 
 }
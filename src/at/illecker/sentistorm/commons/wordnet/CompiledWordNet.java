@@ -0,0 +1,444 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.illecker.sentistorm.commons.wordnet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import at.illecker.sentistorm.commons.Configuration;
+import at.illecker.sentistorm.commons.util.io.IOUtils;
+import edu.mit.jwi.IDictionary;
+import edu.mit.jwi.IRAMDictionary;
+import edu.mit.jwi.RAMDictionary;
+import edu.mit.jwi.data.ILoadPolicy;
+import edu.mit.jwi.item.IExceptionEntry;
+import edu.mit.jwi.item.IIndexWord;
+import edu.mit.jwi.item.ISenseEntry;
+import edu.mit.jwi.item.IWord;
+import edu.mit.jwi.item.IWordID;
+import edu.mit.jwi.item.POS;
+import edu.mit.jwi.morph.SimpleStemmer;
+
+/**
+ * Read-only WordNet compiled into a compact binary file.
+ *
+ * At runtime SentiStorm only needs vocabulary membership, stems and the tag
+ * counts of lemmas. {@link #compile(IDictionary, File)} writes exactly these
+ * into a sorted string table of lemmas with a POS bitmask and tag counts per
+ * lemma, followed by the exception lists of the stemmer. The file is memory
+ * mapped and shared by all workers of a host, nothing has to be extracted.
+ * 
+ * Layout (big-endian): magic, version, lemmaCount, exceptionCount, lemma
+ * offsets[lemmaCount + 1], lemma bytes, POS masks[lemmaCount], tag
+ * counts[lemmaCount * 4], exception key offsets[exceptionCount + 1], exception
+ * keys, exception root offsets[exceptionCount + 1], exception roots. Strings
+ * are UTF-8 encoded and sorted by their unsigned bytes, exception keys are
+ * 'posOrdinal:surfaceForm' and roots are separated by spaces.
+ */
+public class CompiledWordNet {
+  public static final int MAGIC = 0x53574E31; // SWN1
+  public static final int VERSION = 1;
+  private static final Logger LOG = LoggerFactory
+      .getLogger(CompiledWordNet.class);
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+  private static final int POS_COUNT = POS.values().length;
+
+  private final ByteBuffer m_buffer;
+  private final int m_lemmaCount;
+  private final int m_lemmaOffsets;
+  private final int m_lemmaBytes;
+  private final int m_posMasks;
+  private final int m_tagCounts;
+  private final int m_exceptionCount;
+  private final int m_exceptionKeyOffsets;
+  private final int m_exceptionKeyBytes;
+  private final int m_exceptionRootOffsets;
+  private final int m_exceptionRootBytes;
+  private final Stemmer m_stemmer = new Stemmer();
+
+  private CompiledWordNet(ByteBuffer buffer) {
+    m_buffer = buffer;
+    if (buffer.getInt(0) != MAGIC) {
+      throw new IllegalArgumentException("Invalid compiled WordNet file!");
+    }
+    if (buffer.getInt(4) != VERSION) {
+      throw new IllegalArgumentException("Unsupported compiled WordNet version "
+          + buffer.getInt(4) + "!");
+    }
+    m_lemmaCount = buffer.getInt(8);
+    m_exceptionCount = buffer.getInt(12);
+
+    m_lemmaOffsets = 16;
+    m_lemmaBytes = m_lemmaOffsets + 4 * (m_lemmaCount + 1);
+    m_posMasks = m_lemmaBytes + buffer.getInt(m_lemmaOffsets + 4 * m_lemmaCount);
+    m_tagCounts = m_posMasks + m_lemmaCount;
+
+    m_exceptionKeyOffsets = m_tagCounts + 4 * POS_COUNT * m_lemmaCount;
+    m_exceptionKeyBytes = m_exceptionKeyOffsets + 4 * (m_exceptionCount + 1);
+    m_exceptionRootOffsets = m_exceptionKeyBytes
+        + buffer.getInt(m_exceptionKeyOffsets + 4 * m_exceptionCount);
+    m_exceptionRootBytes = m_exceptionRootOffsets + 4 * (m_exceptionCount + 1);
+  }
+
+  /**
+   * Loads a compiled WordNet. Files are memory mapped, resources within a jar
+   * are read into memory.
+   *
+   * @param file the file or resource
+   * @return Returns the compiled WordNet or null if it does not exist
+   */
+  public static CompiledWordNet load(String file) {
+    try {
+      File f = new File(file);
+      if (f.isFile()) {
+        RandomAccessFile raf = new RandomAccessFile(f, "r");
+        try {
+          FileChannel channel = raf.getChannel();
+          return new CompiledWordNet(channel.map(FileChannel.MapMode.READ_ONLY,
+              0, channel.size()));
+        } finally {
+          raf.close();
+        }
+      }
+      if (IOUtils.exists(file)) {
+        InputStream in = IOUtils.getInputStream(file);
+        try {
+          ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+          byte[] data = new byte[65536];
+          int count;
+          while ((count = in.read(data)) != -1) {
+            bytes.write(data, 0, count);
+          }
+          return new CompiledWordNet(ByteBuffer.wrap(bytes.toByteArray()));
+        } finally {
+          in.close();
+        }
+      }
+    } catch (IOException e) {
+      LOG.error("IOException: " + e.getMessage());
+    }
+    return null;
+  }
+
+  public int getLemmaCount() {
+    return m_lemmaCount;
+  }
+
+  /**
+   *
+   * @param lemma the lemma
+   * @param pos the POS tag
+   * @return Returns true if WordNet contains an index word of the lemma and
+   *         POS tag
+   */
+  public boolean contains(String lemma, POS pos) {
+    int i = findLemma(lemma);
+    return (i >= 0) && ((m_buffer.get(m_posMasks + i) & (1 << pos.ordinal())) != 0);
+  }
+
+  /**
+   *
+   * @param lemma the lemma
+   * @param pos the POS tag
+   * @return Returns the sum of the tag counts of all senses of the lemma or -1
+   *         if the lemma does not exist for the POS tag
+   */
+  public int getTagCount(String lemma, POS pos) {
+    int i = findLemma(lemma);
+    if ((i < 0) || ((m_buffer.get(m_posMasks + i) & (1 << pos.ordinal())) == 0)) {
+      return -1;
+    }
+    return m_buffer.getInt(m_tagCounts + 4 * (i * POS_COUNT + pos.ordinal()));
+  }
+
+  /**
+   * Finds the stems of a word like the JWI WordnetStemmer
+   *
+   * @param word the word
+   * @param pos the POS tag or null for all POS tags
+   * @return Returns the stems of the word
+   */
+  public List<String> findStems(String word, POS pos) {
+    return m_stemmer.findStems(word, pos);
+  }
+
+  private int findLemma(String lemma) {
+    // normalize like the JWI IndexWordID
+    String key = lemma.toLowerCase().trim();
+    if (key.isEmpty()) {
+      return -1;
+    }
+    key = WHITESPACE.matcher(key).replaceAll("_");
+    return binarySearch(key.getBytes(UTF8), m_lemmaOffsets, m_lemmaBytes,
+        m_lemmaCount);
+  }
+
+  private List<String> getExceptionRoots(String surfaceForm, POS pos) {
+    // normalize like the JWI ExceptionEntryID
+    String key = surfaceForm.trim();
+    if (key.isEmpty()) {
+      return null;
+    }
+    key = pos.ordinal() + ":" + key.toLowerCase();
+    int i = binarySearch(key.getBytes(UTF8), m_exceptionKeyOffsets,
+        m_exceptionKeyBytes, m_exceptionCount);
+    if (i < 0) {
+      return null;
+    }
+    int start = m_buffer.getInt(m_exceptionRootOffsets + 4 * i);
+    int end = m_buffer.getInt(m_exceptionRootOffsets + 4 * (i + 1));
+    byte[] roots = new byte[end - start];
+    for (int k = 0; k < roots.length; k++) {
+      roots[k] = m_buffer.get(m_exceptionRootBytes + start + k);
+    }
+    List<String> rootForms = new ArrayList<String>();
+    for (String root : new String(roots, UTF8).split(" ")) {
+      rootForms.add(root);
+    }
+    return rootForms;
+  }
+
+  private int binarySearch(byte[] key, int offsets, int bytes, int count) {
+    int low = 0;
+    int high = count - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int start = bytes + m_buffer.getInt(offsets + 4 * mid);
+      int end = bytes + m_buffer.getInt(offsets + 4 * (mid + 1));
+      int cmp = compare(start, end, key);
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  private int compare(int start, int end, byte[] key) {
+    int length = Math.min(end - start, key.length);
+    for (int i = 0; i < length; i++) {
+      int a = m_buffer.get(start + i) & 0xFF;
+      int b = key[i] & 0xFF;
+      if (a != b) {
+        return a - b;
+      }
+    }
+    return (end - start) - key.length;
+  }
+
+  /**
+   * Stemmer equal to the JWI WordnetStemmer using the compiled WordNet
+   */
+  private final class Stemmer extends SimpleStemmer {
+
+    @Override
+    public List<String> findStems(String word, POS pos) {
+      word = normalize(word);
+      if (pos == null) {
+        return super.findStems(word, null);
+      }
+
+      Set<String> result = new LinkedHashSet<String>();
+      // exception lists
+      List<String> rootForms = getExceptionRoots(word, pos);
+      if (rootForms != null) {
+        result.addAll(rootForms);
+      }
+      // the word itself
+      if (contains(word, pos)) {
+        result.add(word);
+      }
+      if (rootForms != null) {
+        return new ArrayList<String>(result);
+      }
+
+      // morphological rules
+      List<String> stems = super.findStems(word, pos);
+      for (Iterator<String> it = stems.iterator(); it.hasNext();) {
+        if (it.next().trim().length() == 0) {
+          it.remove();
+        }
+      }
+      for (String stem : stems) {
+        if (contains(stem, pos)) {
+          result.add(stem);
+        }
+      }
+
+      if (result.isEmpty()) {
+        return stems.isEmpty() ? Collections.<String> emptyList()
+            : new ArrayList<String>(stems);
+      }
+      return new ArrayList<String>(result);
+    }
+  }
+
+  /**
+   * Compiles the lemmas, tag counts and exception lists of a JWI dictionary
+   *
+   * @param dict the opened JWI dictionary
+   * @param file the output file
+   * @throws IOException
+   */
+  public static void compile(IDictionary dict, File file) throws IOException {
+    Comparator<byte[]> unsignedComparator = new Comparator<byte[]>() {
+      @Override
+      public int compare(byte[] a, byte[] b) {
+        int length = Math.min(a.length, b.length);
+        for (int i = 0; i < length; i++) {
+          int cmp = (a[i] & 0xFF) - (b[i] & 0xFF);
+          if (cmp != 0) {
+            return cmp;
+          }
+        }
+        return a.length - b.length;
+      }
+    };
+
+    // collect lemmas including POS and tag counts
+    Map<byte[], int[]> lemmas = new TreeMap<byte[], int[]>(unsignedComparator);
+    Map<byte[], byte[]> exceptions = new TreeMap<byte[], byte[]>(
+        unsignedComparator);
+    for (POS pos : POS.values()) {
+      Iterator<IIndexWord> indexWords = dict.getIndexWordIterator(pos);
+      while (indexWords.hasNext()) {
+        IIndexWord indexWord = indexWords.next();
+        int count = 0;
+        for (IWordID wordId : indexWord.getWordIDs()) {
+          IWord word = dict.getWord(wordId);
+          ISenseEntry senseEntry = dict.getSenseEntry(word.getSenseKey());
+          if (senseEntry != null) {
+            count += senseEntry.getTagCount();
+          }
+        }
+        byte[] lemma = indexWord.getLemma().getBytes(UTF8);
+        int[] values = lemmas.get(lemma);
+        if (values == null) {
+          // [posMask, tagCounts...]
+          values = new int[1 + POS_COUNT];
+          lemmas.put(lemma, values);
+        }
+        values[0] |= 1 << pos.ordinal();
+        values[1 + pos.ordinal()] = count;
+      }
+
+      Iterator<IExceptionEntry> exceptionEntries = dict
+          .getExceptionEntryIterator(pos);
+      while (exceptionEntries.hasNext()) {
+        IExceptionEntry entry = exceptionEntries.next();
+        StringBuilder roots = new StringBuilder();
+        for (String root : entry.getRootForms()) {
+          if (roots.length() > 0) {
+            roots.append(' ');
+          }
+          roots.append(root);
+        }
+        exceptions.put((pos.ordinal() + ":" + entry.getSurfaceForm())
+            .getBytes(UTF8), roots.toString().getBytes(UTF8));
+      }
+    }
+
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+        new FileOutputStream(file)));
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(lemmas.size());
+      out.writeInt(exceptions.size());
+
+      writeStrings(out, lemmas.keySet());
+      for (int[] values : lemmas.values()) {
+        out.writeByte(values[0]);
+      }
+      for (int[] values : lemmas.values()) {
+        for (int i = 0; i < POS_COUNT; i++) {
+          out.writeInt(values[1 + i]);
+        }
+      }
+
+      writeStrings(out, exceptions.keySet());
+      writeStrings(out, exceptions.values());
+    } finally {
+      out.close();
+    }
+    LOG.info("Compiled " + lemmas.size() + " lemmas and " + exceptions.size()
+        + " exceptions into " + file.getAbsolutePath() + " (" + file.length()
+        + " bytes)");
+  }
+
+  private static void writeStrings(DataOutputStream out,
+      Iterable<byte[]> strings) throws IOException {
+    int offset = 0;
+    out.writeInt(offset);
+    for (byte[] s : strings) {
+      offset += s.length;
+      out.writeInt(offset);
+    }
+    for (byte[] s : strings) {
+      out.write(s);
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    String output = Configuration.getWordNetCompiledDict();
+    if (args.length > 0) {
+      output = args[0];
+    }
+
+    // extract and load the WordNet dictionary
+    File dir = new File(Configuration.TEMP_DIR_PATH + File.separator
+        + "wordnet-" + UUID.randomUUID());
+    IOUtils.extractTarGz(Configuration.getWordNetDict(), dir.getAbsolutePath());
+    IRAMDictionary dict = new RAMDictionary(new File(dir, "dict"),
+        ILoadPolicy.NO_LOAD);
+    dict.open();
+    dict.load(true);
+
+    compile(dict, new File(output));
+
+    dict.close();
+    IOUtils.delete(dir);
+  }
+
+}
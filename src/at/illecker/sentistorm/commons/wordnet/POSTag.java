@@ -16,6 +16,7 @@
  */
 package at.illecker.sentistorm.commons.wordnet;
 
+import at.illecker.sentistorm.commons.ArkTag;
 import edu.mit.jwi.item.POS;
 
 public class POSTag {
@@ -71,20 +72,11 @@ public class POSTag {
 
   // http://www.ark.cs.cmu.edu/TweetNLP/annot_guidelines.pdf
   public static POS convertArk(String arkTag) {
-    if (arkTag.equals("N") || arkTag.equals("O") || arkTag.equals("^")
-        || arkTag.equals("S") || arkTag.equals("Z")) {
-      return POS.NOUN;
-    }
-    if (arkTag.equals("V")) {
-      return POS.VERB;
-    }
-    if (arkTag.equals("A")) {
-      return POS.ADJECTIVE;
-    }
-    if (arkTag.equals("R")) {
-      return POS.ADVERB;
-    }
-    return null;
+    return convertArk(ArkTag.fromTag(arkTag));
+  }
+
+  public static POS convertArk(ArkTag arkTag) {
+    return (arkTag != null) ? arkTag.getPOS() : null;
   }
 
 }
@@ -18,12 +18,16 @@ package at.illecker.sentistorm.commons.wordnet;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.UUID;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import at.illecker.sentistorm.commons.Configuration;
+import at.illecker.sentistorm.commons.util.ConcurrentLRUCache;
 import at.illecker.sentistorm.commons.util.io.IOUtils;
 import edu.mit.jwi.IRAMDictionary;
 import edu.mit.jwi.RAMDictionary;
@@ -38,29 +42,57 @@ import edu.mit.jwi.morph.WordnetStemmer;
 public class WordNet {
   public static final int MAX_DEPTH_OF_HIERARCHY = 16;
   private static final Logger LOG = LoggerFactory.getLogger(WordNet.class);
+  private static final int CACHE_SIZE = Configuration.get(
+      "commons.wordnet.cache.size", 100000);
   private static final WordNet INSTANCE = new WordNet();
 
+  // compiled WordNet, the JWI dictionary is only loaded if it is missing
+  private CompiledWordNet m_compiled;
   private IRAMDictionary m_dict;
   private File m_wordNetDir;
   private WordnetStemmer m_wordnetStemmer;
+  // stem caches by POS ordinal, the last cache is used for unknown POS (null)
+  private final List<ConcurrentLRUCache<String, List<String>>> m_stemCaches;
+  private final ConcurrentLRUCache<String, Boolean> m_containsCache;
 
   private WordNet() {
+    m_stemCaches = new ArrayList<ConcurrentLRUCache<String, List<String>>>();
+    for (int i = 0; i <= POS.values().length; i++) {
+      m_stemCaches.add(new ConcurrentLRUCache<String, List<String>>(
+          CACHE_SIZE));
+    }
+    m_containsCache = new ConcurrentLRUCache<String, Boolean>(CACHE_SIZE);
+    LOG.info("WordNet cache size: " + CACHE_SIZE);
+
+    String compiledDictPath = Configuration.getWordNetCompiledDict();
+    if (compiledDictPath != null) {
+      long t = System.currentTimeMillis();
+      m_compiled = CompiledWordNet.load(compiledDictPath);
+      if (m_compiled != null) {
+        LOG.info("Loaded compiled WordNet " + compiledDictPath + " with "
+            + m_compiled.getLemmaCount() + " lemmas in "
+            + (System.currentTimeMillis() - t) + " msec");
+        return;
+      }
+      LOG.info("Compiled WordNet is missing: " + compiledDictPath);
+    }
+
     try {
       String wordNetDictPath = Configuration.getWordNetDict();
       LOG.info("WordNet Dictionary: " + wordNetDictPath);
+      // unique extract location per instance, workers of the same host must
+      // not delete the dictionary of each other
       m_wordNetDir = new File(Configuration.TEMP_DIR_PATH + File.separator
-          + "dict");
+          + "wordnet-" + UUID.randomUUID());
       LOG.info("WordNet Extract Location: " + m_wordNetDir.getAbsolutePath());
 
-      // check if extract location does exist
-      if (m_wordNetDir.exists()) {
-        IOUtils.delete(m_wordNetDir);
-      }
-
-      // extract tar.gz file
-      IOUtils.extractTarGz(wordNetDictPath, m_wordNetDir.getParent());
+      // extract tar.gz file, it is deleted on exit if the worker dies before
+      // the dictionary is loaded
+      IOUtils.extractTarGz(wordNetDictPath, m_wordNetDir.getAbsolutePath());
+      IOUtils.deleteOnExit(m_wordNetDir);
 
-      m_dict = new RAMDictionary(m_wordNetDir, ILoadPolicy.NO_LOAD);
+      m_dict = new RAMDictionary(new File(m_wordNetDir, "dict"),
+          ILoadPolicy.NO_LOAD);
       m_dict.open();
 
       // load into memory
@@ -69,6 +101,10 @@ public class WordNet {
       LOG.info("Loaded Wordnet into memory in "
           + (System.currentTimeMillis() - t) + " msec");
 
+      // the loaded dictionary does not read the extracted files anymore
+      IOUtils.delete(m_wordNetDir);
+      m_wordNetDir = null;
+
       m_wordnetStemmer = new WordnetStemmer(m_dict);
 
     } catch (IOException e) {
@@ -83,21 +119,34 @@ public class WordNet {
   }
 
   public void close() {
+    LOG.info("WordNet stem cache hitRate: " + getStemCacheHitRate()
+        + " contains cache: " + m_containsCache);
     if (m_dict != null) {
       m_dict.close();
     }
     try {
-      IOUtils.delete(m_wordNetDir);
+      if (m_wordNetDir != null) {
+        IOUtils.delete(m_wordNetDir);
+      }
     } catch (IOException e) {
       LOG.error("IOException: " + e.getMessage());
     }
   }
 
   public boolean contains(String word) {
+    Boolean cached = m_containsCache.get(word);
+    if (cached != null) {
+      return cached;
+    }
+    boolean contains = containsStem(word);
+    m_containsCache.put(word, contains);
+    return contains;
+  }
+
+  private boolean containsStem(String word) {
     for (POS pos : POS.values()) {
-      for (String stem : m_wordnetStemmer.findStems(word, pos)) {
-        IIndexWord indexWord = m_dict.getIndexWord(stem, pos);
-        if (indexWord != null)
+      for (String stem : findStems(word, pos)) {
+        if (hasIndexWord(stem, pos))
           return true;
       }
     }
@@ -105,19 +154,19 @@ public class WordNet {
   }
 
   public boolean isNoun(String word) {
-    return m_dict.getIndexWord(word, POS.NOUN) != null;
+    return hasIndexWord(word, POS.NOUN);
   }
 
   public boolean isAdjective(String word) {
-    return m_dict.getIndexWord(word, POS.ADJECTIVE) != null;
+    return hasIndexWord(word, POS.ADJECTIVE);
   }
 
   public boolean isAdverb(String word) {
-    return m_dict.getIndexWord(word, POS.ADVERB) != null;
+    return hasIndexWord(word, POS.ADVERB);
   }
 
   public boolean isVerb(String word) {
-    return m_dict.getIndexWord(word, POS.VERB) != null;
+    return hasIndexWord(word, POS.VERB);
   }
 
   public synchronized POS findPOS(String word) {
@@ -128,17 +177,10 @@ public class WordNet {
       // underscores, and may be in mixed case.
       word = word.replaceAll("\\s", "").replaceAll("_", "");
 
-      List<String> stems = m_wordnetStemmer.findStems(word, pos);
+      List<String> stems = stem(word, pos);
       for (String stem : stems) {
-        IIndexWord indexWord = m_dict.getIndexWord(stem, pos);
-        if (indexWord != null) {
-          int count = 0;
-          for (IWordID wordId : indexWord.getWordIDs()) {
-            IWord aWord = m_dict.getWord(wordId);
-            ISenseEntry senseEntry = m_dict.getSenseEntry(aWord.getSenseKey());
-            count += senseEntry.getTagCount();
-          }
-
+        int count = getTagCount(stem, pos);
+        if (count >= 0) {
           if (count > maxCount) {
             maxCount = count;
             mostLikelyPOS = pos;
@@ -150,8 +192,82 @@ public class WordNet {
     return mostLikelyPOS;
   }
 
+  /**
+   *
+   * @param word the word
+   * @param pos the POS tag or null for all POS tags
+   * @return Returns an unmodifiable list of stems
+   */
   public List<String> findStems(String word, POS pos) {
+    int cacheIndex = (pos == null) ? m_stemCaches.size() - 1 : pos.ordinal();
+    ConcurrentLRUCache<String, List<String>> cache = m_stemCaches
+        .get(cacheIndex);
+    List<String> stems = cache.get(word);
+    if (stems == null) {
+      stems = Collections.unmodifiableList(stem(word, pos));
+      cache.put(word, stems);
+    }
+    return stems;
+  }
+
+  private List<String> stem(String word, POS pos) {
+    if (m_compiled != null) {
+      return m_compiled.findStems(word, pos);
+    }
     return m_wordnetStemmer.findStems(word, pos);
   }
 
+  private boolean hasIndexWord(String lemma, POS pos) {
+    if (m_compiled != null) {
+      return m_compiled.contains(lemma, pos);
+    }
+    return m_dict.getIndexWord(lemma, pos) != null;
+  }
+
+  /**
+   *
+   * @param lemma the lemma
+   * @param pos the POS tag
+   * @return Returns the sum of the tag counts of all senses or -1 if the lemma
+   *         does not exist
+   */
+  private int getTagCount(String lemma, POS pos) {
+    if (m_compiled != null) {
+      return m_compiled.getTagCount(lemma, pos);
+    }
+    IIndexWord indexWord = m_dict.getIndexWord(lemma, pos);
+    if (indexWord == null) {
+      return -1;
+    }
+    int count = 0;
+    for (IWordID wordId : indexWord.getWordIDs()) {
+      IWord aWord = m_dict.getWord(wordId);
+      ISenseEntry senseEntry = m_dict.getSenseEntry(aWord.getSenseKey());
+      count += senseEntry.getTagCount();
+    }
+    return count;
+  }
+
+  /**
+   *
+   * @return Returns the hit rate of all stem caches
+   */
+  public double getStemCacheHitRate() {
+    long hits = 0;
+    long lookups = 0;
+    for (ConcurrentLRUCache<String, List<String>> cache : m_stemCaches) {
+      hits += cache.getHitCount();
+      lookups += cache.getHitCount() + cache.getMissCount();
+    }
+    return (lookups == 0) ? 0 : hits / (double) lookups;
+  }
+
+  /**
+   *
+   * @return Returns the hit rate of the vocabulary membership cache
+   */
+  public double getContainsCacheHitRate() {
+    return m_containsCache.getHitRate();
+  }
+
 }
@@ -0,0 +1,207 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.illecker.sentistorm.components;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import at.illecker.sentistorm.commons.ArkTag;
+import at.illecker.sentistorm.commons.ArkTaggedToken;
+import cmu.arktweetnlp.Tagger.TaggedToken;
+import cmu.arktweetnlp.impl.Model;
+import cmu.arktweetnlp.impl.ModelSentence;
+import cmu.arktweetnlp.impl.Sentence;
+import cmu.arktweetnlp.impl.features.FeatureExtractor;
+
+/**
+ * Tags batches of sentences with an ark-tweet-nlp model.
+ *
+ * A batch is tagged in chunks of at most CHUNK_SIZE sentences, the features of
+ * all sentences of a chunk are extracted before the chunk is decoded. The
+ * ModelSentence buffers of a chunk are reused across chunks and calls, they
+ * are resized to the sentence length and their feature lists are cleared.
+ * Therefore an instance must not be shared between threads. The model and the
+ * feature extractor are only read and can be shared by several instances, as
+ * done by tagParallel.
+ */
+public class BatchPOSTagger {
+  // min number of sentences a fork join task splits up
+  public static final int PARALLEL_THRESHOLD = 256;
+  // max number of sentences whose features are extracted before decoding
+  public static final int CHUNK_SIZE = 64;
+  private final Model m_model;
+  private final FeatureExtractor m_featureExtractor;
+  private final ArkTag[] m_labelTags;
+  private final Sentence m_sentence = new Sentence();
+  private final List<ModelSentence> m_modelSentences =
+      new ArrayList<ModelSentence>();
+
+  public BatchPOSTagger(Model model, FeatureExtractor featureExtractor) {
+    this(model, featureExtractor, ArkTag.fromLabels(model.labelVocab));
+  }
+
+  private BatchPOSTagger(Model model, FeatureExtractor featureExtractor,
+      ArkTag[] labelTags) {
+    m_model = model;
+    m_featureExtractor = featureExtractor;
+    m_labelTags = labelTags;
+  }
+
+  public List<TaggedToken> tag(List<String> tokens) {
+    ModelSentence ms = computeFeatures(tokens, 0);
+    m_model.greedyDecode(ms, false);
+    return toTaggedTokens(tokens, ms);
+  }
+
+  public List<List<TaggedToken>> tagBatch(List<List<String>> sentences) {
+    List<List<TaggedToken>> taggedSentences = new ArrayList<List<TaggedToken>>(
+        sentences.size());
+    for (int from = 0; from < sentences.size(); from += CHUNK_SIZE) {
+      int to = Math.min(from + CHUNK_SIZE, sentences.size());
+      // 1) extract the features of the chunk
+      for (int i = from; i < to; i++) {
+        computeFeatures(sentences.get(i), i - from);
+      }
+      // 2) decode the chunk
+      for (int i = from; i < to; i++) {
+        ModelSentence ms = m_modelSentences.get(i - from);
+        m_model.greedyDecode(ms, false);
+        taggedSentences.add(toTaggedTokens(sentences.get(i), ms));
+      }
+    }
+    return taggedSentences;
+  }
+
+  /**
+   * Tags the sentences in parallel by fork join tasks of at least
+   * PARALLEL_THRESHOLD sentences. Intended for offline tagging of a whole
+   * dataset.
+   *
+   * @param sentences the tokens of each sentence
+   * @param parallelism the number of threads
+   * @return Returns the tagged tokens of each sentence in the order of the
+   *         given sentences
+   */
+  public List<List<TaggedToken>> tagParallel(List<List<String>> sentences,
+      int parallelism) {
+    List<List<TaggedToken>> taggedSentences = new ArrayList<List<TaggedToken>>(
+        Collections.<List<TaggedToken>> nCopies(sentences.size(), null));
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      pool.invoke(new TagTask(sentences, taggedSentences, 0, sentences.size()));
+    } finally {
+      pool.shutdown();
+    }
+    return taggedSentences;
+  }
+
+  public List<List<TaggedToken>> tagParallel(List<List<String>> sentences) {
+    return tagParallel(sentences, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Extracts the features of the tokens into the buffer of the given slot.
+   */
+  private ModelSentence computeFeatures(List<String> tokens, int slot) {
+    m_sentence.tokens = tokens;
+    int T = m_sentence.T();
+    ModelSentence ms;
+    if (slot < m_modelSentences.size()) {
+      ms = m_modelSentences.get(slot);
+      reset(ms, T);
+    } else {
+      ms = new ModelSentence(T);
+      m_modelSentences.add(ms);
+    }
+    m_featureExtractor.computeFeatures(m_sentence, ms);
+    return ms;
+  }
+
+  /**
+   * Resizes the buffer to T tokens and clears it like a new ModelSentence(T),
+   * the feature lists and arrays are kept and only grow.
+   */
+  private static void reset(ModelSentence ms, int T) {
+    if (ms.labels.length < T) {
+      ms.labels = new int[T];
+    }
+    if (ms.edgeFeatures.length < T) {
+      ms.edgeFeatures = new int[T];
+    }
+    for (int t = 0; t < T; t++) {
+      if (t < ms.observationFeatures.size()) {
+        ms.observationFeatures.get(t).clear();
+        ms.observationFeatureValues.get(t).clear();
+      } else {
+        ms.observationFeatures.add(new ArrayList<Integer>());
+        ms.observationFeatureValues.add(new ArrayList<Double>());
+      }
+      ms.labels[t] = -1;
+      ms.edgeFeatures[t] = -1;
+    }
+    ms.T = T;
+  }
+
+  private List<TaggedToken> toTaggedTokens(List<String> tokens,
+      ModelSentence ms) {
+    int size = tokens.size();
+    List<TaggedToken> taggedTokens = new ArrayList<TaggedToken>(size);
+    for (int t = 0; t < size; t++) {
+      taggedTokens.add(ArkTaggedToken.create(tokens.get(t), ms.labels[t],
+          m_labelTags, m_model.labelVocab));
+    }
+    return taggedTokens;
+  }
+
+  private class TagTask extends RecursiveAction {
+    private static final long serialVersionUID = -4305628930127736174L;
+    private final List<List<String>> m_sentences;
+    private final List<List<TaggedToken>> m_taggedSentences;
+    private final int m_from;
+    private final int m_to;
+
+    public TagTask(List<List<String>> sentences,
+        List<List<TaggedToken>> taggedSentences, int from, int to) {
+      m_sentences = sentences;
+      m_taggedSentences = taggedSentences;
+      m_from = from;
+      m_to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (m_to - m_from <= PARALLEL_THRESHOLD) {
+        // every task uses its own buffers
+        BatchPOSTagger tagger = new BatchPOSTagger(m_model, m_featureExtractor,
+            m_labelTags);
+        List<List<TaggedToken>> taggedSentences = tagger.tagBatch(m_sentences
+            .subList(m_from, m_to));
+        for (int i = 0; i < taggedSentences.size(); i++) {
+          m_taggedSentences.set(m_from + i, taggedSentences.get(i));
+        }
+      } else {
+        int mid = (m_from + m_to) >>> 1;
+        invokeAll(new TagTask(m_sentences, m_taggedSentences, m_from, mid),
+            new TagTask(m_sentences, m_taggedSentences, mid, m_to));
+      }
+    }
+  }
+
+}
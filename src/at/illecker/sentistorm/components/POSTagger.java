@@ -17,7 +17,6 @@
 package at.illecker.sentistorm.components;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
 
 import org.slf4j.Logger;
@@ -29,8 +28,6 @@ import at.illecker.sentistorm.commons.util.io.IOUtils;
 import at.illecker.sentistorm.commons.util.io.SerializationUtils;
 import cmu.arktweetnlp.Tagger.TaggedToken;
 import cmu.arktweetnlp.impl.Model;
-import cmu.arktweetnlp.impl.ModelSentence;
-import cmu.arktweetnlp.impl.Sentence;
 import cmu.arktweetnlp.impl.features.FeatureExtractor;
 
 public class POSTagger {
@@ -39,6 +36,14 @@ public class POSTagger {
   String m_taggingModel;
   private Model m_model;
   private FeatureExtractor m_featureExtractor;
+  // BatchPOSTagger reuses its buffers and must not be shared between threads
+  private final ThreadLocal<BatchPOSTagger> m_tagger =
+      new ThreadLocal<BatchPOSTagger>() {
+        @Override
+        protected BatchPOSTagger initialValue() {
+          return new BatchPOSTagger(m_model, m_featureExtractor);
+        }
+      };
 
   private POSTagger() {
     // Load POS Tagger
@@ -71,27 +76,18 @@ public class POSTagger {
   }
 
   public List<List<TaggedToken>> tagTweets(List<List<String>> tweets) {
-    List<List<TaggedToken>> taggedTweets = new ArrayList<List<TaggedToken>>();
-    for (List<String> tweet : tweets) {
-      taggedTweets.add(tag(tweet));
-    }
-    return taggedTweets;
+    return m_tagger.get().tagBatch(tweets);
+  }
+
+  /**
+   * Tags the tweets in parallel using all available processors
+   */
+  public List<List<TaggedToken>> tagTweetsParallel(List<List<String>> tweets) {
+    return m_tagger.get().tagParallel(tweets);
   }
 
   public List<TaggedToken> tag(List<String> tokens) {
-    Sentence sentence = new Sentence();
-    sentence.tokens = tokens;
-    ModelSentence ms = new ModelSentence(sentence.T());
-    m_featureExtractor.computeFeatures(sentence, ms);
-    m_model.greedyDecode(ms, false);
-
-    List<TaggedToken> taggedTokens = new ArrayList<TaggedToken>();
-    for (int t = 0; t < sentence.T(); t++) {
-      TaggedToken tt = new TaggedToken(tokens.get(t),
-          m_model.labelVocab.name(ms.labels[t]));
-      taggedTokens.add(tt);
-    }
-    return taggedTokens;
+    return m_tagger.get().tag(tokens);
   }
 
   public void serializeModel() {
@@ -27,7 +27,7 @@ import at.illecker.sentistorm.commons.Tweet;
 import at.illecker.sentistorm.commons.dict.FirstNames;
 import at.illecker.sentistorm.commons.dict.SlangCorrection;
 import at.illecker.sentistorm.commons.util.RegexUtils;
-import at.illecker.sentistorm.commons.util.StringUtils;
+import at.illecker.sentistorm.commons.util.TokenClassifier;
 import at.illecker.sentistorm.commons.wordnet.WordNet;
 
 public class Preprocessor {
@@ -54,14 +54,18 @@ public class Preprocessor {
   public List<String> preprocess(List<String> tokens) {
     List<String> preprocessedTokens = new ArrayList<String>();
     for (String token : tokens) {
-      // identify token
-      boolean tokenContainsPunctuation = StringUtils
-          .consitsOfPunctuations(token);
-      boolean tokenConsistsOfUnderscores = StringUtils
-          .consitsOfUnderscores(token);
-      boolean tokenIsEmoticon = StringUtils.isEmoticon(token);
-      boolean tokenIsURL = StringUtils.isURL(token);
-      boolean tokenIsNumeric = StringUtils.isNumeric(token);
+      // identify token within a single scan
+      int properties = TokenClassifier.classify(token);
+      boolean tokenContainsPunctuation = TokenClassifier.isSet(properties,
+          TokenClassifier.PUNCTUATIONS);
+      boolean tokenConsistsOfUnderscores = TokenClassifier.isSet(properties,
+          TokenClassifier.UNDERSCORES);
+      boolean tokenIsEmoticon = TokenClassifier.isSet(properties,
+          TokenClassifier.EMOTICON);
+      boolean tokenIsURL = TokenClassifier.isSet(properties,
+          TokenClassifier.URL);
+      boolean tokenIsNumeric = TokenClassifier.isSet(properties,
+          TokenClassifier.NUMERIC);
 
       // Step 1) Unify Emoticons remove repeating chars
       if ((tokenIsEmoticon) && (!tokenIsURL) && (!tokenIsNumeric)) {
@@ -83,14 +87,20 @@ public class Preprocessor {
         continue;
       }
 
-      // identify token further
-      boolean tokenIsUser = StringUtils.isUser(token);
-      boolean tokenIsHashTag = StringUtils.isHashTag(token);
-      boolean tokenIsSlang = StringUtils.isSlang(token);
-      boolean tokenIsEmail = StringUtils.isEmail(token);
-      boolean tokenIsPhone = StringUtils.isPhone(token);
-      boolean tokenIsSpecialNumeric = StringUtils.isSpecialNumeric(token);
-      boolean tokenIsSeparatedNumeric = StringUtils.isSeparatedNumeric(token);
+      boolean tokenIsUser = TokenClassifier.isSet(properties,
+          TokenClassifier.USER);
+      boolean tokenIsHashTag = TokenClassifier.isSet(properties,
+          TokenClassifier.HASH_TAG);
+      boolean tokenIsSlang = TokenClassifier.isSet(properties,
+          TokenClassifier.SLANG);
+      boolean tokenIsEmail = TokenClassifier.isSet(properties,
+          TokenClassifier.EMAIL);
+      boolean tokenIsPhone = TokenClassifier.isSet(properties,
+          TokenClassifier.PHONE);
+      boolean tokenIsSpecialNumeric = TokenClassifier.isSet(properties,
+          TokenClassifier.SPECIAL_NUMERIC);
+      boolean tokenIsSeparatedNumeric = TokenClassifier.isSet(properties,
+          TokenClassifier.SEPARATED_NUMERIC);
 
       // Step 2) Slang Correction
       if ((!tokenIsEmoticon) && (!tokenIsUser) && (!tokenIsHashTag)
@@ -0,0 +1,736 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.illecker.sentistorm.components;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import at.illecker.sentistorm.commons.util.RegexUtils;
+
+/**
+ * State machine tokenizer which produces the same tokens as
+ * {@link RegexUtils#TOKENIZER_PATTERN} in one linear pass without regex
+ * backtracking.
+ *
+ * Each alternative of the tokenizer pattern is matched by a hand-written
+ * matcher in the same order as the regex alternation. Tokens are emitted as
+ * offsets, substrings are only created by {@link #token()}. A
+ * StreamingTokenizer is reusable but not thread-safe.
+ */
+public final class StreamingTokenizer {
+  private static final Logger LOG = LoggerFactory
+      .getLogger(StreamingTokenizer.class);
+
+  // ASCII character classes of the tokenizer pattern
+  private static final int C_WHITESPACE = 1; // \s
+  private static final int C_DIGIT = 1 << 1; // \d
+  private static final int C_LETTER = 1 << 2; // [a-zA-Z]
+  private static final int C_EMOTICON_PREFIX = 1 << 3;
+  private static final int C_EMOTICON_EYES = 1 << 4;
+  private static final int C_EMOTICON_NOSE = 1 << 5;
+  private static final int C_EMOTICON_MOUTH = 1 << 6;
+  private static final int C_URL_EXCLUDED = 1 << 7; // [\s/?.#-]
+  private static final int C_PHONE_SEPARATOR = 1 << 8; // [-\s.]
+  private static final int C_EMAIL_LOCAL = 1 << 9; // [a-zA-Z0-9+._%-]
+  private static final int C_HASH_TAG = 1 << 10; // [A-Za-z0-9_'-]
+  private static final int C_WORD = 1 << 11; // [A-Za-z0-9_]
+  private static final int C_SLANG = 1 << 12; // [a-zA-z]
+  private static final int C_WORD_DASH = 1 << 13; // [a-zA-Z'-_]
+  private static final int C_SPECIAL_SEPARATOR = 1 << 14; // [.|,:-]
+  private static final int C_SEPARATOR = 1 << 15; // [/|,-]
+  private static final int[] CHAR_CLASSES = createCharClasses();
+
+  private static final String[] SEPARATED_NUMBER_SUFFIXES = { "am", "pm",
+      "c", "st", "nd", "rd", "th" };
+  private static final String[] SEPARATED_NUMBER_END_SUFFIXES = { "%", "fm",
+      "am", "pm", "lb", "c", "p", "st", "nd", "rd", "th" };
+  private static final String[] SPECIAL_NUMBER_SUFFIXES = { "%", "fm", "am",
+      "pm", "p", "lb", "c", "p", "st", "nd", "rd", "th" };
+
+  // random texts of main() consist of these fragments and chars
+  private static final String[] RANDOM_FRAGMENTS = { " ", " ", "  ", "\n",
+      "\t", "\u00a0", ":)", ":-(", ";-)", ":'(", "<3", "XD", ":D", "=P",
+      "(:", ")", "\\m/", "w/", "w/o", "http://", "https://www.", "ftp://",
+      "www.", ".com", "/path?q=1", "@user_1", "@@", "#tag", "#hash-tag's",
+      "RT", "a.b.c.", "u.s.", "don't", "e-mail", "well_done", "1", "12", "3.5",
+      "1,000", "10:30pm", "$5", "-2", "+1", "4th", "50%", "12lb",
+      "555-123-4567", "+1 555.123.4567", "(555) 123", "john.doe@mail.com",
+      "a+b@x.org", "...", ". .", "!", "?!", "'", "-", "_", "&", "caf\u00e9",
+      "\ud83d\ude00" };
+  private static final String RANDOM_CHARS = " .,:;'-_/\\()[]{}<>@#$%^&*+=|"
+      + "!?~`\"0123456789aAbBcCdDoOpPxXlLsSJ8\u00e9\u2019\u00a0";
+
+  private String m_text;
+  private char[] m_chars = new char[256];
+  private int m_length;
+  private int m_position;
+  private int m_start;
+  private int m_end;
+
+  private static int[] createCharClasses() {
+    int[] classes = new int[128];
+    for (char c = 'a'; c <= 'z'; c++) {
+      classes[c] |= C_LETTER | C_EMAIL_LOCAL | C_HASH_TAG | C_WORD
+          | C_WORD_DASH;
+      classes[c - 'a' + 'A'] |= C_LETTER | C_EMAIL_LOCAL | C_HASH_TAG | C_WORD
+          | C_WORD_DASH;
+    }
+    for (char c = 'A'; c <= 'z'; c++) {
+      classes[c] |= C_SLANG;
+    }
+    for (char c = '0'; c <= '9'; c++) {
+      classes[c] |= C_DIGIT | C_EMAIL_LOCAL | C_HASH_TAG | C_WORD;
+    }
+    set(classes, " \t\n\u000B\f\r", C_WHITESPACE | C_URL_EXCLUDED
+        | C_PHONE_SEPARATOR);
+    set(classes, "<>oO0}3|", C_EMOTICON_PREFIX);
+    set(classes, ":;=8xX*<>^|#%", C_EMOTICON_EYES);
+    set(classes, "-_co^./", C_EMOTICON_NOSE);
+    set(classes, "()[]/\\}{*.^<>=@|,bdDpPLScoO$X#J3&", C_EMOTICON_MOUTH);
+    set(classes, "/?.#-", C_URL_EXCLUDED);
+    set(classes, "-.", C_PHONE_SEPARATOR);
+    set(classes, "+._%-", C_EMAIL_LOCAL);
+    set(classes, "_'-", C_HASH_TAG);
+    set(classes, "_", C_WORD);
+    set(classes, "'-_", C_WORD_DASH);
+    set(classes, ".|,:-", C_SPECIAL_SEPARATOR);
+    set(classes, "/|,-", C_SEPARATOR);
+    return classes;
+  }
+
+  private static void set(int[] classes, String chars, int charClass) {
+    for (int i = 0; i < chars.length(); i++) {
+      classes[chars.charAt(i)] |= charClass;
+    }
+  }
+
+  /**
+   * Starts tokenizing a new text
+   *
+   * @param text the text
+   */
+  public void reset(String text) {
+    m_text = text;
+    m_length = text.length();
+    if (m_chars.length < m_length) {
+      m_chars = new char[Math.max(m_length, m_chars.length * 2)];
+    }
+    text.getChars(0, m_length, m_chars, 0);
+    m_position = 0;
+    m_start = 0;
+    m_end = 0;
+  }
+
+  /**
+   * Moves to the next token
+   *
+   * @return Returns true if there is a further token
+   */
+  public boolean next() {
+    while (m_position < m_length) {
+      int p = m_position;
+      if (is(p, C_WHITESPACE)) {
+        m_position++;
+        continue;
+      }
+      m_start = p;
+      m_end = matchToken(p);
+      m_position = m_end;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   *
+   * @return Returns the start offset of the current token
+   */
+  public int start() {
+    return m_start;
+  }
+
+  /**
+   *
+   * @return Returns the end offset (exclusive) of the current token
+   */
+  public int end() {
+    return m_end;
+  }
+
+  /**
+   *
+   * @return Returns the current token
+   */
+  public String token() {
+    return m_text.substring(m_start, m_end);
+  }
+
+  /**
+   * Adds all tokens of a text
+   *
+   * @param text the text
+   * @param tokens the list of tokens
+   * @return Returns the list of tokens
+   */
+  public List<String> tokenize(String text, List<String> tokens) {
+    reset(text);
+    while (next()) {
+      tokens.add(token());
+    }
+    return tokens;
+  }
+
+  private int matchToken(int p) {
+    // the order of the alternatives does matter
+    int end = matchEmoticon(p);
+    if (end < 0) {
+      end = matchURL(p);
+    }
+    if (end < 0) {
+      end = matchPhone(p);
+    }
+    if (end < 0) {
+      end = matchEmail(p);
+    }
+    if (end < 0) {
+      end = matchUser(p);
+    }
+    if (end < 0) {
+      end = matchHashTag(p);
+    }
+    if (end < 0) {
+      end = matchSlang(p);
+    }
+    if (end < 0) {
+      end = matchAlternatingLetterDot(p);
+    }
+    if (end < 0) {
+      end = matchWordWithApostrophesDashes(p);
+    }
+    if (end < 0) {
+      end = matchSeparatedNumber(p);
+    }
+    if (end < 0) {
+      end = matchSpecialNumber(p);
+    }
+    if (end < 0) {
+      end = matchWord(p);
+    }
+    if (end < 0) {
+      end = matchEllipsisDots(p);
+    }
+    if (end < 0) {
+      // any non-whitespace code point
+      end = p + Character.charCount(Character.codePointAt(m_chars, p,
+          m_length));
+    }
+    return end;
+  }
+
+  /**
+   * Checks the char class of the char at position i
+   */
+  private boolean is(int i, int charClass) {
+    if (i >= m_length) {
+      return false;
+    }
+    char c = m_chars[i];
+    return (c < 128) && ((CHAR_CLASSES[c] & charClass) != 0);
+  }
+
+  private boolean isChar(int i, char c) {
+    return (i < m_length) && (m_chars[i] == c);
+  }
+
+  private int skip(int i, int charClass) {
+    while (is(i, charClass)) {
+      i++;
+    }
+    return i;
+  }
+
+  /**
+   * Emoticon delimiter [\p{C}\p{Z}&&[^\n\r\p{Cs}]] or [\p{P}\p{M}\p{S}\n\r]
+   */
+  private static boolean isDelimiter(int codePoint) {
+    if ((codePoint == '\n') || (codePoint == '\r')) {
+      return true;
+    }
+    switch (Character.getType(codePoint)) {
+      case Character.CONTROL:
+      case Character.FORMAT:
+      case Character.PRIVATE_USE:
+      case Character.UNASSIGNED:
+      case Character.SPACE_SEPARATOR:
+      case Character.LINE_SEPARATOR:
+      case Character.PARAGRAPH_SEPARATOR:
+      case Character.CONNECTOR_PUNCTUATION:
+      case Character.DASH_PUNCTUATION:
+      case Character.START_PUNCTUATION:
+      case Character.END_PUNCTUATION:
+      case Character.INITIAL_QUOTE_PUNCTUATION:
+      case Character.FINAL_QUOTE_PUNCTUATION:
+      case Character.OTHER_PUNCTUATION:
+      case Character.NON_SPACING_MARK:
+      case Character.ENCLOSING_MARK:
+      case Character.COMBINING_SPACING_MARK:
+      case Character.MATH_SYMBOL:
+      case Character.CURRENCY_SYMBOL:
+      case Character.MODIFIER_SYMBOL:
+      case Character.OTHER_SYMBOL:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Lookbehind (?<=^|delimiter), a surrogate is never a delimiter
+   */
+  private boolean isDelimiterBefore(int p) {
+    return (p == 0) || isDelimiter(m_chars[p - 1]);
+  }
+
+  /**
+   * Lookahead (?=$|delimiter)
+   */
+  private boolean isDelimiterAt(int i) {
+    return (i >= m_length)
+        || isDelimiter(Character.codePointAt(m_chars, i, m_length));
+  }
+
+  /**
+   * (?<=^|delimiter)([<>oO0}3|]?eyes nose mouth\1*|[0]?mouth eyes[<>]?)(?=$|delimiter)
+   */
+  private int matchEmoticon(int p) {
+    if (!isDelimiterBefore(p)) {
+      return -1;
+    }
+    // [<>oO0}3|]? eyes [']? [-_co^./]? [\\]? [0]? mouth \1{0,}
+    for (int a = is(p, C_EMOTICON_PREFIX) ? 1 : 0; a >= 0; a--) {
+      int eyes = p + a;
+      if (!is(eyes, C_EMOTICON_EYES)) {
+        continue;
+      }
+      for (int b = isChar(eyes + 1, '\'') ? 1 : 0; b >= 0; b--) {
+        int nose = eyes + 1 + b;
+        for (int c = is(nose, C_EMOTICON_NOSE) ? 1 : 0; c >= 0; c--) {
+          int backslash = nose + c;
+          for (int d = isChar(backslash, '\\') ? 1 : 0; d >= 0; d--) {
+            int zero = backslash + d;
+            for (int e = isChar(zero, '0') ? 1 : 0; e >= 0; e--) {
+              int mouth = zero + e;
+              if (is(mouth, C_EMOTICON_MOUTH)) {
+                // greedy repetition of the mouth char
+                int end = mouth + 1;
+                while (isChar(end, m_chars[mouth])) {
+                  end++;
+                }
+                for (; end > mouth; end--) {
+                  if (isDelimiterAt(end)) {
+                    return end;
+                  }
+                }
+              }
+            }
+          }
+        }
+      }
+    }
+
+    // reverse [0]? mouth eyes [<>]?, the back reference does not match
+    for (int a = isChar(p, '0') ? 1 : 0; a >= 0; a--) {
+      int mouth = p + a;
+      if (is(mouth, C_EMOTICON_MOUTH) && is(mouth + 1, C_EMOTICON_EYES)) {
+        int end = mouth + 2;
+        if ((isChar(end, '<') || isChar(end, '>')) && isDelimiterAt(end + 1)) {
+          return end + 1;
+        }
+        if (isDelimiterAt(end)) {
+          return end;
+        }
+      }
+    }
+    return -1;
+  }
+
+  private boolean regionMatchesIgnoreCase(int p, String str) {
+    if (p + str.length() > m_length) {
+      return false;
+    }
+    for (int i = 0; i < str.length(); i++) {
+      if (toLowerCase(m_chars[p + i]) != str.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static char toLowerCase(char c) {
+    return ((c >= 'A') && (c <= 'Z')) ? (char) (c + ('a' - 'A')) : c;
+  }
+
+  /**
+   * (https?|ftp)://(-\.)?([^\s/?\.#-]+\.?)*(/[^\s\.]*)?
+   */
+  private int matchURL(int p) {
+    int i;
+    if (regionMatchesIgnoreCase(p, "https://")) {
+      i = p + 8;
+    } else if (regionMatchesIgnoreCase(p, "http://")) {
+      i = p + 7;
+    } else if (regionMatchesIgnoreCase(p, "ftp://")) {
+      i = p + 6;
+    } else {
+      return -1;
+    }
+    if (isChar(i, '-') && isChar(i + 1, '.')) {
+      i += 2;
+    }
+    while ((i < m_length) && (!is(i, C_URL_EXCLUDED))) {
+      while ((i < m_length) && (!is(i, C_URL_EXCLUDED))) {
+        i++;
+      }
+      if (isChar(i, '.')) {
+        i++;
+      }
+    }
+    if (isChar(i, '/')) {
+      i++;
+      while ((i < m_length) && (!is(i, C_WHITESPACE)) && (m_chars[i] != '.')) {
+        i++;
+      }
+    }
+    return i;
+  }
+
+  /**
+   * (\+?[01][-\s.]*)?(\(?\d{3}[-\s.)]*)?\d{3}[-\s.]*\d{4}
+   */
+  private int matchPhone(int p) {
+    int countryCodeEnd = -1;
+    int i = isChar(p, '+') ? p + 1 : p;
+    if (isChar(i, '0') || isChar(i, '1')) {
+      countryCodeEnd = skip(i + 1, C_PHONE_SEPARATOR);
+    }
+    if (countryCodeEnd >= 0) {
+      int end = matchPhoneNumber(countryCodeEnd);
+      if (end >= 0) {
+        return end;
+      }
+    }
+    return matchPhoneNumber(p);
+  }
+
+  private int matchPhoneNumber(int p) {
+    // optional area code
+    int i = isChar(p, '(') ? p + 1 : p;
+    if (hasDigits(i, 3)) {
+      i += 3;
+      while (is(i, C_PHONE_SEPARATOR) || isChar(i, ')')) {
+        i++;
+      }
+      int end = matchPhoneLocalNumber(i);
+      if (end >= 0) {
+        return end;
+      }
+    }
+    return matchPhoneLocalNumber(p);
+  }
+
+  private int matchPhoneLocalNumber(int p) {
+    if (!hasDigits(p, 3)) {
+      return -1;
+    }
+    int i = skip(p + 3, C_PHONE_SEPARATOR);
+    return hasDigits(i, 4) ? i + 4 : -1;
+  }
+
+  private boolean hasDigits(int p, int count) {
+    for (int i = p; i < p + count; i++) {
+      if (!is(i, C_DIGIT)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * [a-zA-Z0-9+._%-]{1,256}@[a-zA-Z0-9][a-zA-Z0-9-]{0,64}(\.[a-zA-Z0-9][a-zA-Z0-9-]{0,25})+
+   */
+  private int matchEmail(int p) {
+    int i = p;
+    while ((i - p < 256) && is(i, C_EMAIL_LOCAL)) {
+      i++;
+    }
+    if ((i == p) || (!isChar(i, '@')) || (!isAlphanumeric(i + 1))) {
+      return -1;
+    }
+    i = matchDomainLabel(i + 1, 64);
+    int labels = 0;
+    while (isChar(i, '.') && isAlphanumeric(i + 1)) {
+      i = matchDomainLabel(i + 1, 25);
+      labels++;
+    }
+    return (labels > 0) ? i : -1;
+  }
+
+  private boolean isAlphanumeric(int i) {
+    return is(i, C_LETTER | C_DIGIT);
+  }
+
+  private int matchDomainLabel(int p, int maxLength) {
+    int i = p + 1;
+    while ((i - p <= maxLength) && (isAlphanumeric(i) || isChar(i, '-'))) {
+      i++;
+    }
+    return i;
+  }
+
+  /**
+   * \@+([A-Za-z]+[A-Za-z0-9_]+)
+   */
+  private int matchUser(int p) {
+    int i = p;
+    while (isChar(i, '@')) {
+      i++;
+    }
+    if ((i == p) || (!is(i, C_LETTER))) {
+      return -1;
+    }
+    int end = skip(i, C_WORD);
+    return (end - i >= 2) ? end : -1;
+  }
+
+  /**
+   * \#+([A-Za-z]+[A-Za-z0-9_\'\-]*[A-Za-z0-9_]+)
+   */
+  private int matchHashTag(int p) {
+    int i = p;
+    while (isChar(i, '#')) {
+      i++;
+    }
+    if ((i == p) || (!is(i, C_LETTER))) {
+      return -1;
+    }
+    return lastOf(i + 1, skip(i, C_HASH_TAG), C_WORD);
+  }
+
+  /**
+   *
+   * @return Returns the position after the last char of the char class within
+   *         [start, end) or -1
+   */
+  private int lastOf(int start, int end, int charClass) {
+    for (int i = end - 1; i >= start; i--) {
+      if (is(i, charClass)) {
+        return i + 1;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * (?<=^|delimiter)[a-zA-Z]/[a-zA-z]* or \m/(?=$|delimiter)
+   */
+  private int matchSlang(int p) {
+    if (isDelimiterBefore(p) && is(p, C_LETTER) && isChar(p + 1, '/')) {
+      return skip(p + 2, C_SLANG);
+    }
+    if (isChar(p, '\\') && isChar(p + 1, 'm') && isChar(p + 2, '/')
+        && isDelimiterAt(p + 3)) {
+      return p + 3;
+    }
+    return -1;
+  }
+
+  /**
+   * [a-zA-Z]\.(?:[a-zA-Z](\.)?)+
+   */
+  private int matchAlternatingLetterDot(int p) {
+    if ((!is(p, C_LETTER)) || (!isChar(p + 1, '.'))
+        || (!is(p + 2, C_LETTER))) {
+      return -1;
+    }
+    int i = p + 2;
+    while (is(i, C_LETTER)) {
+      i++;
+      if (isChar(i, '.')) {
+        i++;
+      }
+    }
+    return i;
+  }
+
+  /**
+   * [a-zA-Z][a-zA-Z\'\-\_]+[a-zA-Z]
+   */
+  private int matchWordWithApostrophesDashes(int p) {
+    if (!is(p, C_LETTER)) {
+      return -1;
+    }
+    return lastOf(p + 2, skip(p + 1, C_WORD_DASH), C_LETTER);
+  }
+
+  /**
+   * \d+(am|pm|c|st|nd|rd|th)?[/|,-]+\d+([/|,-]\d+)*(%|fm|am|pm|lb|c|p|st|nd|rd|th)?
+   * with case insensitive suffixes
+   */
+  private int matchSeparatedNumber(int p) {
+    int i = skip(p, C_DIGIT);
+    if (i == p) {
+      return -1;
+    }
+    i += matchSuffix(i, SEPARATED_NUMBER_SUFFIXES);
+    int separatorEnd = skip(i, C_SEPARATOR);
+    if ((separatorEnd == i) || (!is(separatorEnd, C_DIGIT))) {
+      return -1;
+    }
+    i = skipNumbers(skip(separatorEnd, C_DIGIT), C_SEPARATOR);
+    return i + matchSuffix(i, SEPARATED_NUMBER_END_SUFFIXES);
+  }
+
+  /**
+   * \$?[+-]?\d+([.|,:-]\d+)*(%|fm|am|pm|p|lb|c|p|st|nd|rd|th)? with case
+   * insensitive suffixes
+   */
+  private int matchSpecialNumber(int p) {
+    int i = isChar(p, '$') ? p + 1 : p;
+    if (isChar(i, '+') || isChar(i, '-')) {
+      i++;
+    }
+    if (!is(i, C_DIGIT)) {
+      return -1;
+    }
+    i = skipNumbers(skip(i, C_DIGIT), C_SPECIAL_SEPARATOR);
+    return i + matchSuffix(i, SPECIAL_NUMBER_SUFFIXES);
+  }
+
+  /**
+   * Skips all following (separator digits+) groups
+   */
+  private int skipNumbers(int i, int separatorClass) {
+    while (is(i, separatorClass) && is(i + 1, C_DIGIT)) {
+      i = skip(i + 1, C_DIGIT);
+    }
+    return i;
+  }
+
+  /**
+   *
+   * @return Returns the length of the first matching suffix or 0
+   */
+  private int matchSuffix(int p, String[] suffixes) {
+    for (String suffix : suffixes) {
+      if (regionMatchesIgnoreCase(p, suffix)) {
+        return suffix.length();
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * [\w_]+
+   */
+  private int matchWord(int p) {
+    int end = skip(p, C_WORD);
+    return (end > p) ? end : -1;
+  }
+
+  /**
+   * \.(?:\s*\.){1,}
+   */
+  private int matchEllipsisDots(int p) {
+    if (!isChar(p, '.')) {
+      return -1;
+    }
+    int end = -1;
+    int i = p + 1;
+    while (true) {
+      int dot = skip(i, C_WHITESPACE);
+      if (!isChar(dot, '.')) {
+        break;
+      }
+      i = dot + 1;
+      end = i;
+    }
+    return end;
+  }
+
+  /**
+   * Tokenizes random texts built of fragments of all tokenizer alternatives
+   * and compares the tokens to the regex tokenizer. Fails on the first
+   * mismatching text.
+   *
+   * @param args [text count] [random seed]
+   */
+  public static void main(String[] args) {
+    int textCount = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+    long seed = (args.length > 1) ? Long.parseLong(args[1]) : 42;
+    Random rand = new Random(seed);
+
+    StreamingTokenizer tokenizer = new StreamingTokenizer();
+    List<String> expected = new ArrayList<String>();
+    List<String> tokens = new ArrayList<String>();
+    StringBuilder sb = new StringBuilder();
+    int tokenCount = 0;
+    long regexTime = 0;
+    long streamingTime = 0;
+    for (int n = 0; n < textCount; n++) {
+      sb.setLength(0);
+      int fragmentCount = 1 + rand.nextInt(12);
+      for (int i = 0; i < fragmentCount; i++) {
+        if (rand.nextInt(4) == 0) {
+          sb.append(RANDOM_CHARS.charAt(rand.nextInt(RANDOM_CHARS.length())));
+        } else {
+          sb.append(RANDOM_FRAGMENTS[rand.nextInt(RANDOM_FRAGMENTS.length)]);
+        }
+      }
+      String text = sb.toString();
+
+      long startTime = System.nanoTime();
+      expected.clear();
+      Matcher m = RegexUtils.TOKENIZER_PATTERN.matcher(text);
+      while (m.find()) {
+        expected.add(m.group());
+      }
+      regexTime += System.nanoTime() - startTime;
+
+      startTime = System.nanoTime();
+      tokens.clear();
+      tokenizer.tokenize(text, tokens);
+      streamingTime += System.nanoTime() - startTime;
+
+      tokenCount += expected.size();
+      if (!expected.equals(tokens)) {
+        LOG.error("Text: '" + text + "' regex: " + expected + " streaming: "
+            + tokens + " (seed: " + seed + ", text: " + n + ")");
+        throw new RuntimeException();
+      }
+    }
+    LOG.info("Compared " + textCount + " random texts with " + tokenCount
+        + " tokens (seed: " + seed + "), no mismatches");
+    LOG.info("Regex tokenizer: " + (regexTime / 1000000) + " ms, "
+        + "streaming tokenizer: " + (streamingTime / 1000000) + " ms");
+  }
+
+}
@@ -18,14 +18,18 @@ package at.illecker.sentistorm.components;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
 
 import at.illecker.sentistorm.commons.Tweet;
 import at.illecker.sentistorm.commons.util.HtmlUtils;
-import at.illecker.sentistorm.commons.util.RegexUtils;
 import at.illecker.sentistorm.commons.util.UnicodeUtils;
 
 public class Tokenizer {
+  private static final ThreadLocal<StreamingTokenizer> TOKENIZER = new ThreadLocal<StreamingTokenizer>() {
+    @Override
+    protected StreamingTokenizer initialValue() {
+      return new StreamingTokenizer();
+    }
+  };
 
   public static List<List<String>> tokenizeTweets(List<Tweet> tweets) {
     List<List<String>> tokenizedTweets = new ArrayList<List<String>>();
@@ -36,27 +40,33 @@ public class Tokenizer {
   }
 
   public static List<String> tokenize(String str) {
+    // Step 1-3) Trim text and replace Unicode and HTML symbols
+    str = normalize(str);
+
+    // Step 4) Tokenize
+    return TOKENIZER.get().tokenize(str, new ArrayList<String>());
+  }
+
+  /**
+   * Trims the text and decodes HTML and replaces Unicode symbols
+   *
+   * @param str the text
+   * @return Returns the normalized text
+   */
+  public static String normalize(String str) {
     // Step 1) Trim text
     str = str.trim();
 
-    // Step 2) Replace Unicode symbols \u0000
-    if (UnicodeUtils.containsUnicode(str)) {
-      str = UnicodeUtils.replaceUnicodeSymbols(str);
+    // Step 2) Replace HTML symbols &#[0-9];
+    String decoded = HtmlUtils.decodeHtml(str);
+    if (decoded != str) {
+      str = decoded.trim();
     }
 
-    // Step 3) Replace HTML symbols &#[0-9];
-    if (HtmlUtils.containsHtml(str)) {
-      str = HtmlUtils.replaceHtmlSymbols(str);
-    }
-
-    // Step 4) Tokenize
-    List<String> tokens = new ArrayList<String>();
-    Matcher m = RegexUtils.TOKENIZER_PATTERN.matcher(str);
-    while (m.find()) {
-      tokens.add(m.group());
-    }
+    // Step 3) Replace Unicode symbols \u0000, also the decoded ones
+    str = UnicodeUtils.replaceUnicodeSymbols(str);
 
-    return tokens;
+    return str;
   }
 
 }
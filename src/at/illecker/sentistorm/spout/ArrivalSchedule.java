@@ -0,0 +1,111 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.illecker.sentistorm.spout;
+
+import java.util.Random;
+
+/**
+ * Intended send times of an open-loop load, independent of the time the
+ * tuples are actually emitted.
+ *
+ * The target rate starts at startRate and increases by rateStep every
+ * stepDurationMs up to maxRate. Arrivals are either evenly spaced (CONSTANT),
+ * exponentially distributed (POISSON) or grouped into bursts of burstSize
+ * tuples with the same send time (BURSTY).
+ */
+public class ArrivalSchedule {
+  public enum Distribution {
+    CONSTANT, POISSON, BURSTY
+  }
+
+  private final Distribution m_distribution;
+  private final double m_startRate;
+  private final double m_rateStep;
+  private final long m_stepDurationNs;
+  private final double m_maxRate;
+  private final int m_burstSize;
+  private final Random m_random;
+  // intended send time of the last arrival in ns since the start
+  private double m_time = 0;
+  private long m_arrivals = 0;
+
+  /**
+   * @param distribution the distribution of the inter-arrival times
+   * @param startRate the initial target rate in tuples per second
+   * @param rateStep the rate increase of each step, 0 for a fixed rate
+   * @param stepDurationMs the duration of a step
+   * @param maxRate the max target rate, 0 for no limit
+   * @param burstSize the tuples of a burst
+   * @param seed the seed of the POISSON distribution
+   */
+  public ArrivalSchedule(Distribution distribution, double startRate,
+      double rateStep, long stepDurationMs, double maxRate, int burstSize,
+      long seed) {
+    if ((startRate <= 0) || ((rateStep != 0) && (stepDurationMs <= 0))
+        || (burstSize < 1)) {
+      throw new IllegalArgumentException("Invalid arrival schedule: rate "
+          + startRate + " step " + rateStep + " every " + stepDurationMs
+          + " ms, burst size " + burstSize);
+    }
+    m_distribution = distribution;
+    m_startRate = startRate;
+    m_rateStep = rateStep;
+    m_stepDurationNs = stepDurationMs * 1000000L;
+    m_maxRate = maxRate;
+    m_burstSize = burstSize;
+    m_random = new Random(seed);
+  }
+
+  /**
+   * @return Returns the target rate in tuples per second at the given time
+   */
+  public double getRate(long timeNs) {
+    double rate = m_startRate;
+    if (m_rateStep != 0) {
+      rate += m_rateStep * (timeNs / m_stepDurationNs);
+    }
+    if ((m_maxRate > 0) && (rate > m_maxRate)) {
+      rate = m_maxRate;
+    }
+    return Math.max(rate, Double.MIN_VALUE);
+  }
+
+  /**
+   * @return Returns the intended send time of the next arrival in ns since
+   *         the start
+   */
+  public long next() {
+    double rate = getRate((long) m_time);
+    if (m_arrivals > 0) {
+      switch (m_distribution) {
+        case POISSON:
+          m_time += -Math.log(1.0 - m_random.nextDouble()) * 1e9 / rate;
+          break;
+        case BURSTY:
+          if ((m_arrivals % m_burstSize) == 0) {
+            m_time += m_burstSize * 1e9 / rate;
+          }
+          break;
+        default:
+          m_time += 1e9 / rate;
+      }
+    }
+    m_arrivals++;
+    return (long) m_time;
+  }
+
+}
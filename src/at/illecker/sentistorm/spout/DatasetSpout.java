@@ -21,8 +21,11 @@ import java.util.Map;
 
 import at.illecker.sentistorm.commons.Configuration;
 import at.illecker.sentistorm.commons.Dataset;
+import at.illecker.sentistorm.commons.ReadinessGate;
+import at.illecker.sentistorm.commons.StartupLoader;
 import at.illecker.sentistorm.commons.Tweet;
 import at.illecker.sentistorm.commons.util.TimeUtils;
+import backtype.storm.Config;
 import backtype.storm.spout.SpoutOutputCollector;
 import backtype.storm.task.TopologyContext;
 import backtype.storm.topology.OutputFieldsDeclarer;
@@ -32,9 +35,15 @@ import backtype.storm.tuple.Values;
 
 public class DatasetSpout extends BaseRichSpout {
   public static final String ID = "dataset-spout";
+  public static final String CONF_STARTUP_TIMEOUT_MS = ID
+      + ".startup.timeout.ms";
+  public static final long DEFAULT_STARTUP_TIMEOUT_MS = 300000;
   public static final String CONF_STARTUP_SLEEP_MS = ID + ".startup.sleep.ms";
+  public static final long DEFAULT_STARTUP_SLEEP_MS = 20000;
   public static final String CONF_TUPLE_SLEEP_MS = ID + ".tuple.sleep.ms";
   public static final String CONF_TUPLE_SLEEP_NS = ID + ".spout.tuple.sleep.ns";
+  public static final String CONF_RELIABLE = ID + ".reliable";
+  public static final String CONF_MAX_REPLAYS = ID + ".max.replays";
   private static final long serialVersionUID = 3028853846518561027L;
   private Dataset m_dataset;
   private SpoutOutputCollector m_collector;
@@ -43,6 +52,7 @@ public class DatasetSpout extends BaseRichSpout {
   private int m_index = 0;
   private long m_tupleSleepMs = 0;
   private long m_tupleSleepNs = 0;
+  private PendingTuples m_pendingTuples = null;
 
   public void declareOutputFields(OutputFieldsDeclarer declarer) {
     // key of output tuples
@@ -67,15 +77,58 @@ public class DatasetSpout extends BaseRichSpout {
       m_tupleSleepNs = 0;
     }
 
-    // Optional startup sleep to finish bolt preparation
-    // before spout starts emitting
+    // Optional reliable mode, failed tweets are replayed
+    boolean reliable = false;
+    if (config.get(CONF_RELIABLE) != null) {
+      reliable = (Boolean) config.get(CONF_RELIABLE);
+    }
+    if (reliable) {
+      int maxPending = PendingTuples.DEFAULT_MAX_PENDING;
+      if (config.get(Config.TOPOLOGY_MAX_SPOUT_PENDING) != null) {
+        maxPending = ((Number) config.get(Config.TOPOLOGY_MAX_SPOUT_PENDING))
+            .intValue();
+      }
+      int maxReplays = 3;
+      if (config.get(CONF_MAX_REPLAYS) != null) {
+        maxReplays = ((Number) config.get(CONF_MAX_REPLAYS)).intValue();
+      }
+      m_pendingTuples = new PendingTuples(maxPending, maxReplays);
+      m_pendingTuples.registerMetrics(context, 60);
+    }
+
+    // Start loading the shared resources of the worker and wait until all
+    // downstream bolts of the worker finished their preparation, bolts of
+    // other workers are given the startup sleep
+    StartupLoader.start();
+    long startupTimeoutMs = DEFAULT_STARTUP_TIMEOUT_MS;
+    if (config.get(CONF_STARTUP_TIMEOUT_MS) != null) {
+      startupTimeoutMs = ((Number) config.get(CONF_STARTUP_TIMEOUT_MS))
+          .longValue();
+    }
+    long startupSleepMs = DEFAULT_STARTUP_SLEEP_MS;
     if (config.get(CONF_STARTUP_SLEEP_MS) != null) {
-      long startupSleepMillis = (Long) config.get(CONF_STARTUP_SLEEP_MS);
-      TimeUtils.sleepMillis(startupSleepMillis);
+      startupSleepMs = ((Number) config.get(CONF_STARTUP_SLEEP_MS))
+          .longValue();
     }
+    ReadinessGate.awaitDownstream(context, startupTimeoutMs, startupSleepMs);
   }
 
   public void nextTuple() {
+    if (m_pendingTuples != null) {
+      // Replay failed tweets first
+      Long messageId = m_pendingTuples.pollReplay();
+      if (messageId != null) {
+        Tweet tweet = m_pendingTuples.getTweet(messageId);
+        m_collector.emit(
+            new Values(tweet.getId(), tweet.getScore(), tweet.getText()),
+            messageId);
+        return;
+      }
+      if (m_pendingTuples.remainingCapacity() == 0) {
+        return;
+      }
+    }
+
     Tweet tweet = m_tweets.get(m_index);
 
     // infinite loop
@@ -83,12 +136,18 @@ public class DatasetSpout extends BaseRichSpout {
     if (m_index >= m_tweets.size()) {
       m_index = 0;
     }
-    m_messageId++; // accept possible overflow
+    Long messageId;
+    if (m_pendingTuples != null) {
+      messageId = m_pendingTuples.add(tweet);
+    } else {
+      m_messageId++; // accept possible overflow
+      messageId = m_messageId;
+    }
 
     // Emit tweet
     m_collector.emit(
         new Values(tweet.getId(), tweet.getScore(), tweet.getText()),
-        m_messageId);
+        messageId);
 
     // Optional sleep
     if (m_tupleSleepMs != 0) {
@@ -98,4 +157,18 @@ public class DatasetSpout extends BaseRichSpout {
       TimeUtils.sleepNanos(m_tupleSleepNs);
     }
   }
+
+  @Override
+  public void ack(Object id) {
+    if (m_pendingTuples != null) {
+      m_pendingTuples.ack(id);
+    }
+  }
+
+  @Override
+  public void fail(Object id) {
+    if (m_pendingTuples != null) {
+      m_pendingTuples.fail(id);
+    }
+  }
 }
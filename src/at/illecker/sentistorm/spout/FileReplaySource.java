@@ -0,0 +1,151 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.illecker.sentistorm.spout;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import at.illecker.sentistorm.commons.Tweet;
+import at.illecker.sentistorm.commons.util.io.IOUtils;
+
+/**
+ * Replays the tweets of a local file into an {@link IngestBuffer}, it stands
+ * in for the live Twitter stream, e.g., in tests.
+ *
+ * Each line of the file contains the id and the text of a tweet separated by
+ * a tab. Like the live stream the source pushes tweets at its own rate,
+ * independent of the spout.
+ */
+public class FileReplaySource {
+  private static final Logger LOG = LoggerFactory
+      .getLogger(FileReplaySource.class);
+  private final String m_fileName;
+  private final long m_tweetsPerSecond;
+  private final boolean m_loop;
+  private volatile boolean m_running = false;
+  private Thread m_thread = null;
+
+  /**
+   * @param fileName the tweet file within the jar or the file system
+   * @param tweetsPerSecond the replay rate, 0 replays as fast as possible
+   * @param loop replays the file again after its last tweet
+   */
+  public FileReplaySource(String fileName, long tweetsPerSecond, boolean loop) {
+    m_fileName = fileName;
+    m_tweetsPerSecond = tweetsPerSecond;
+    m_loop = loop;
+  }
+
+  /**
+   * Starts replaying the tweets into the buffer.
+   */
+  public synchronized void start(final IngestBuffer buffer) {
+    final List<Tweet> tweets = readTweets(m_fileName);
+    if (tweets == null) {
+      LOG.error("Replay file could not be read: " + m_fileName);
+      throw new RuntimeException();
+    }
+    LOG.info("Replaying " + tweets.size() + " tweets of " + m_fileName);
+
+    m_running = true;
+    m_thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        long startTime = System.nanoTime();
+        long count = 0;
+        do {
+          for (Tweet tweet : tweets) {
+            if (!m_running) {
+              return;
+            }
+            buffer.offer(tweet);
+            count++;
+            if (m_tweetsPerSecond > 0) {
+              // keep the rate of all replayed tweets
+              long delayNs = (count * 1000000000L / m_tweetsPerSecond)
+                  - (System.nanoTime() - startTime);
+              if (delayNs > 0) {
+                try {
+                  Thread.sleep(delayNs / 1000000L, (int) (delayNs % 1000000L));
+                } catch (InterruptedException e) {
+                  return;
+                }
+              }
+            }
+          }
+        } while (m_loop && m_running);
+        LOG.info("Replayed " + count + " tweets of " + m_fileName);
+      }
+    }, "file-replay-source");
+    m_thread.setDaemon(true);
+    m_thread.start();
+  }
+
+  public synchronized void stop() {
+    m_running = false;
+    if (m_thread != null) {
+      m_thread.interrupt();
+      m_thread = null;
+    }
+  }
+
+  public static List<Tweet> readTweets(String fileName) {
+    InputStream is = IOUtils.getInputStream(fileName);
+    if (is == null) {
+      return null;
+    }
+    List<Tweet> tweets = new ArrayList<Tweet>();
+    BufferedReader br = null;
+    try {
+      br = new BufferedReader(new InputStreamReader(is, "UTF-8"));
+      String line;
+      while ((line = br.readLine()) != null) {
+        int tab = line.indexOf('\t');
+        if (tab <= 0) {
+          continue; // skip empty or invalid lines
+        }
+        try {
+          tweets.add(new Tweet(Long.parseLong(line.substring(0, tab)), line
+              .substring(tab + 1)));
+        } catch (NumberFormatException e) {
+          LOG.info("Invalid tweet id: '" + line.substring(0, tab) + "'");
+        }
+      }
+    } catch (IOException e) {
+      LOG.error("IOException: " + e.getMessage());
+      return null;
+    } finally {
+      try {
+        if (br != null) {
+          br.close();
+        } else {
+          is.close();
+        }
+      } catch (IOException ignore) {
+      }
+    }
+    return tweets;
+  }
+
+}
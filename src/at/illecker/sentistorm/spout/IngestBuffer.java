@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.illecker.sentistorm.spout;
+
+import java.util.ArrayDeque;
+import java.util.List;
+
+import at.illecker.sentistorm.commons.Tweet;
+
+/**
+ * Bounded buffer between a tweet source and the spout.
+ *
+ * Tweets are kept in memory up to the capacity, further tweets overflow into
+ * an optional {@link SpillRing} and are dropped only if the ring is full too.
+ * As long as the ring contains tweets all new tweets are spilled, so tweets
+ * are drained in their arrival order. The source offers single tweets, the
+ * spout drains them in batches.
+ */
+public class IngestBuffer {
+  private final int m_capacity;
+  private final ArrayDeque<Tweet> m_memory;
+  private final SpillRing m_spillRing;
+  private long m_received = 0;
+  private long m_spilled = 0;
+  private long m_dropped = 0;
+
+  /**
+   * @param capacity the max number of tweets in memory
+   * @param spillRing the overflow of the memory or null to drop the overflow
+   */
+  public IngestBuffer(int capacity, SpillRing spillRing) {
+    m_capacity = capacity;
+    m_memory = new ArrayDeque<Tweet>(capacity);
+    m_spillRing = spillRing;
+  }
+
+  /**
+   * Adds a tweet to the buffer.
+   *
+   * @return Returns false if the tweet was dropped
+   */
+  public synchronized boolean offer(Tweet tweet) {
+    m_received++;
+    if ((m_memory.size() < m_capacity)
+        && ((m_spillRing == null) || m_spillRing.isEmpty())) {
+      m_memory.addLast(tweet);
+      return true;
+    }
+    if ((m_spillRing != null) && m_spillRing.offer(tweet)) {
+      m_spilled++;
+      return true;
+    }
+    m_dropped++;
+    return false;
+  }
+
+  /**
+   * Moves at most maxTweets of the oldest tweets into the list.
+   *
+   * @return Returns the number of moved tweets
+   */
+  public synchronized int drainTo(List<Tweet> tweets, int maxTweets) {
+    int count = 0;
+    while ((count < maxTweets) && !m_memory.isEmpty()) {
+      tweets.add(m_memory.removeFirst());
+      count++;
+    }
+    if (m_spillRing != null) {
+      while ((count < maxTweets) && !m_spillRing.isEmpty()) {
+        tweets.add(m_spillRing.poll());
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @return Returns the number of buffered tweets in memory and on disk
+   */
+  public synchronized long getDepth() {
+    return m_memory.size()
+        + ((m_spillRing != null) ? m_spillRing.size() : 0);
+  }
+
+  /**
+   * @return Returns the number of spilled tweets on disk
+   */
+  public synchronized long getSpillDepth() {
+    return (m_spillRing != null) ? m_spillRing.size() : 0;
+  }
+
+  /**
+   * @return Returns the total number of offered tweets
+   */
+  public synchronized long getReceived() {
+    return m_received;
+  }
+
+  /**
+   * @return Returns the total number of tweets which overflowed to disk
+   */
+  public synchronized long getSpilled() {
+    return m_spilled;
+  }
+
+  /**
+   * @return Returns the total number of dropped tweets
+   */
+  public synchronized long getDropped() {
+    return m_dropped;
+  }
+
+  public synchronized void close() {
+    m_memory.clear();
+    if (m_spillRing != null) {
+      m_spillRing.close();
+    }
+  }
+
+}
@@ -0,0 +1,202 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.illecker.sentistorm.spout;
+
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import at.illecker.sentistorm.commons.Configuration;
+import at.illecker.sentistorm.commons.ReadinessGate;
+import at.illecker.sentistorm.commons.StartupLoader;
+import at.illecker.sentistorm.commons.Tweet;
+import at.illecker.sentistorm.spout.ArrivalSchedule.Distribution;
+import backtype.storm.Config;
+import backtype.storm.metric.api.CountMetric;
+import backtype.storm.metric.api.IMetric;
+import backtype.storm.spout.SpoutOutputCollector;
+import backtype.storm.task.TopologyContext;
+import backtype.storm.topology.OutputFieldsDeclarer;
+import backtype.storm.topology.base.BaseRichSpout;
+import backtype.storm.tuple.Fields;
+import backtype.storm.tuple.Values;
+
+public class LoadGeneratorSpout extends BaseRichSpout {
+  public static final String ID = "load-generator-spout";
+  public static final String CONF_STARTUP_TIMEOUT_MS = ID
+      + ".startup.timeout.ms";
+  public static final long DEFAULT_STARTUP_TIMEOUT_MS = 300000;
+  public static final String CONF_STARTUP_SLEEP_MS = ID + ".startup.sleep.ms";
+  public static final long DEFAULT_STARTUP_SLEEP_MS = 20000;
+  public static final String CONF_DISTRIBUTION = ID + ".distribution";
+  public static final String CONF_RATE = ID + ".rate";
+  public static final String CONF_RATE_STEP = ID + ".rate.step";
+  public static final String CONF_RATE_STEP_MS = ID + ".rate.step.ms";
+  public static final String CONF_RATE_MAX = ID + ".rate.max";
+  public static final String CONF_BURST_SIZE = ID + ".burst.size";
+  public static final String CONF_MAX_EMITS = ID + ".max.emits";
+  public static final String CONF_MAX_REPLAYS = ID + ".max.replays";
+  private static final long serialVersionUID = -1513212442364522404L;
+  private static final Logger LOG = LoggerFactory
+      .getLogger(LoadGeneratorSpout.class);
+  private SpoutOutputCollector m_collector;
+  private List<Tweet> m_tweets;
+  private int m_index = 0;
+  private ArrivalSchedule m_schedule;
+  private PendingTuples m_pendingTuples;
+  private int m_maxEmits;
+  // start of the schedule
+  private long m_startNs;
+  private long m_startMs;
+  // intended send time of the next arrival in ns since the start
+  private long m_nextArrivalNs;
+  private long m_lagMs = 0;
+  private double m_rate = 0;
+  private final CountMetric m_emitted = new CountMetric();
+
+  public void declareOutputFields(OutputFieldsDeclarer declarer) {
+    // key of output tuples, time is the intended send time in ms
+    declarer.declare(new Fields("id", "score", "text", "time"));
+  }
+
+  public void open(Map config, TopologyContext context,
+      SpoutOutputCollector collector) {
+    m_collector = collector;
+    m_tweets = Configuration.getDataSetSemEval2013().getTestTweets();
+
+    Distribution distribution = Distribution.CONSTANT;
+    if (config.get(CONF_DISTRIBUTION) != null) {
+      distribution = Distribution.valueOf(((String) config
+          .get(CONF_DISTRIBUTION)).toUpperCase());
+    }
+    m_schedule = new ArrivalSchedule(distribution, getDouble(config,
+        CONF_RATE, 1000), getDouble(config, CONF_RATE_STEP, 0), getLong(
+        config, CONF_RATE_STEP_MS, 60000), getDouble(config, CONF_RATE_MAX, 0),
+        (int) getLong(config, CONF_BURST_SIZE, 100), context.getThisTaskId());
+    m_maxEmits = (int) getLong(config, CONF_MAX_EMITS, 1000);
+
+    // Tuples are always anchored to measure their latency, the pending map
+    // is only bounded by topology.max.spout.pending to keep the load open
+    if (config.get(Config.TOPOLOGY_MAX_SPOUT_PENDING) != null) {
+      LOG.warn(Config.TOPOLOGY_MAX_SPOUT_PENDING + " is set to "
+          + config.get(Config.TOPOLOGY_MAX_SPOUT_PENDING)
+          + ", the load is closed-loop as soon as it is reached");
+    }
+    m_pendingTuples = new PendingTuples((int) getLong(config,
+        Config.TOPOLOGY_MAX_SPOUT_PENDING, Integer.MAX_VALUE), (int) getLong(
+        config, CONF_MAX_REPLAYS, 0));
+    m_pendingTuples.registerMetrics(context, 60);
+    context.registerMetric("emitted", m_emitted, 60);
+    context.registerMetric("target-rate", new IMetric() {
+      @Override
+      public Object getValueAndReset() {
+        return m_rate;
+      }
+    }, 60);
+    context.registerMetric("schedule-lag-ms", new IMetric() {
+      @Override
+      public Object getValueAndReset() {
+        return m_lagMs;
+      }
+    }, 60);
+
+    // Start loading the shared resources of the worker and wait until all
+    // downstream bolts of the worker finished their preparation, bolts of
+    // other workers are given the startup sleep
+    StartupLoader.start();
+    ReadinessGate.awaitDownstream(context,
+        getLong(config, CONF_STARTUP_TIMEOUT_MS, DEFAULT_STARTUP_TIMEOUT_MS),
+        getLong(config, CONF_STARTUP_SLEEP_MS, DEFAULT_STARTUP_SLEEP_MS));
+
+    // The schedule starts after the warm-up
+    m_startNs = System.nanoTime();
+    m_startMs = System.currentTimeMillis();
+    m_nextArrivalNs = m_schedule.next();
+    LOG.info("Generating " + distribution + " load of "
+        + m_schedule.getRate(0) + " tweets/s");
+  }
+
+  public void nextTuple() {
+    // Emit all tuples whose intended send time has passed, late tuples keep
+    // their intended time. If none is due Storm's spout wait strategy backs
+    // off instead of sleeping in here.
+    long nowNs = System.nanoTime() - m_startNs;
+    int emits = 0;
+    while ((m_nextArrivalNs <= nowNs) && (emits < m_maxEmits)
+        && (m_pendingTuples.remainingCapacity() > 0)) {
+      emit(m_nextArrivalNs);
+      m_nextArrivalNs = m_schedule.next();
+      emits++;
+    }
+    // delay of the oldest tuple not emitted yet
+    m_lagMs = Math.max(0, nowNs - m_nextArrivalNs) / 1000000L;
+
+    double rate = m_schedule.getRate(nowNs);
+    if (rate != m_rate) {
+      LOG.info("Target rate: " + rate + " tweets/s");
+      m_rate = rate;
+    }
+
+    // Replay failed tuples with their original intended time
+    Long messageId;
+    while ((emits < m_maxEmits)
+        && ((messageId = m_pendingTuples.pollReplay()) != null)) {
+      Tweet tweet = m_pendingTuples.getTweet(messageId);
+      m_collector.emit(new Values(tweet.getId(), tweet.getScore(), tweet
+          .getText(), m_pendingTuples.getIntendedTime(messageId)), messageId);
+      emits++;
+    }
+  }
+
+  private void emit(long intendedNs) {
+    Tweet tweet = m_tweets.get(m_index);
+    // infinite loop
+    m_index++;
+    if (m_index >= m_tweets.size()) {
+      m_index = 0;
+    }
+
+    long intendedMs = m_startMs + (intendedNs / 1000000L);
+    m_collector.emit(
+        new Values(tweet.getId(), tweet.getScore(), tweet.getText(),
+            intendedMs), m_pendingTuples.add(tweet, intendedMs));
+    m_emitted.incr();
+  }
+
+  @Override
+  public void ack(Object id) {
+    m_pendingTuples.ack(id);
+  }
+
+  @Override
+  public void fail(Object id) {
+    m_pendingTuples.fail(id);
+  }
+
+  private static long getLong(Map config, String key, long defaultValue) {
+    Object value = config.get(key);
+    return (value != null) ? ((Number) value).longValue() : defaultValue;
+  }
+
+  private static double getDouble(Map config, String key,
+      double defaultValue) {
+    Object value = config.get(key);
+    return (value != null) ? ((Number) value).doubleValue() : defaultValue;
+  }
+}
@@ -0,0 +1,200 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.illecker.sentistorm.spout;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import at.illecker.sentistorm.commons.Tweet;
+import backtype.storm.metric.api.CountMetric;
+import backtype.storm.metric.api.IMetric;
+import backtype.storm.metric.api.MeanReducer;
+import backtype.storm.metric.api.ReducedMetric;
+import backtype.storm.task.TopologyContext;
+
+/**
+ * Bounded map of the emitted but not yet acked tweets of a reliable spout.
+ *
+ * Failed tweets are queued for a replay with their message id until they
+ * were replayed maxReplays times. The complete latency, from the last emit to
+ * the ack, is measured for every tweet, Storm itself measures it for a sample
+ * of the anchored tuples only. The intended latency is measured from the
+ * intended send time of a tweet including its replays, it is free of
+ * coordinated omission if the spout stamps the times of an open-loop
+ * schedule. Like the spout it is not thread-safe, Storm calls nextTuple, ack,
+ * fail and the metrics within the same thread.
+ */
+public class PendingTuples {
+  // bound if topology.max.spout.pending is not set
+  public static final int DEFAULT_MAX_PENDING = 1000;
+  private static final Logger LOG = LoggerFactory
+      .getLogger(PendingTuples.class);
+  private final int m_maxPending;
+  private final int m_maxReplays;
+  private final Map<Long, Entry> m_pending = new HashMap<Long, Entry>();
+  private final LinkedList<Long> m_failed = new LinkedList<Long>();
+  private long m_nextMessageId = 0;
+
+  private final ReducedMetric m_completeLatency = new ReducedMetric(
+      new MeanReducer());
+  private final ReducedMetric m_intendedLatency = new ReducedMetric(
+      new MeanReducer());
+  private final CountMetric m_acked = new CountMetric();
+  private final CountMetric m_failedCount = new CountMetric();
+  private final CountMetric m_replayed = new CountMetric();
+  private final CountMetric m_abandoned = new CountMetric();
+
+  private static final class Entry {
+    final Tweet m_tweet;
+    final long m_intendedTime;
+    long m_emitTime;
+    int m_replays = 0;
+
+    Entry(Tweet tweet, long intendedTime, long emitTime) {
+      m_tweet = tweet;
+      m_intendedTime = intendedTime;
+      m_emitTime = emitTime;
+    }
+  }
+
+  /**
+   * @param maxPending the max number of pending tweets
+   * @param maxReplays the max number of replays of a tweet, -1 for unlimited
+   */
+  public PendingTuples(int maxPending, int maxReplays) {
+    m_maxPending = maxPending;
+    m_maxReplays = maxReplays;
+  }
+
+  /**
+   * Registers the complete and intended latency in ms, the acked, failed,
+   * replayed and abandoned counts and the number of pending tweets.
+   */
+  public void registerMetrics(TopologyContext context,
+      int timeBucketSizeInSecs) {
+    context.registerMetric("complete-latency-ms", m_completeLatency,
+        timeBucketSizeInSecs);
+    context.registerMetric("intended-latency-ms", m_intendedLatency,
+        timeBucketSizeInSecs);
+    context.registerMetric("acked", m_acked, timeBucketSizeInSecs);
+    context.registerMetric("failed", m_failedCount, timeBucketSizeInSecs);
+    context.registerMetric("replayed", m_replayed, timeBucketSizeInSecs);
+    context.registerMetric("abandoned", m_abandoned, timeBucketSizeInSecs);
+    context.registerMetric("pending", new IMetric() {
+      @Override
+      public Object getValueAndReset() {
+        return m_pending.size();
+      }
+    }, timeBucketSizeInSecs);
+  }
+
+  public int size() {
+    return m_pending.size();
+  }
+
+  /**
+   * @return Returns the number of new tweets which can be emitted
+   */
+  public int remainingCapacity() {
+    return Math.max(0, m_maxPending - m_pending.size());
+  }
+
+  /**
+   * Adds a new tweet before it is emitted.
+   *
+   * @return Returns the message id of the tweet
+   */
+  public Long add(Tweet tweet) {
+    return add(tweet, System.currentTimeMillis());
+  }
+
+  /**
+   * Adds a new tweet before it is emitted.
+   *
+   * @param intendedTime the time in ms the tweet should have been sent
+   * @return Returns the message id of the tweet
+   */
+  public Long add(Tweet tweet, long intendedTime) {
+    Long messageId = m_nextMessageId++; // accept possible overflow
+    m_pending.put(messageId,
+        new Entry(tweet, intendedTime, System.currentTimeMillis()));
+    return messageId;
+  }
+
+  /**
+   * Takes the next failed tweet before it is emitted again.
+   *
+   * @return Returns the message id of the tweet or null if there is none
+   */
+  public Long pollReplay() {
+    while (!m_failed.isEmpty()) {
+      Long messageId = m_failed.removeFirst();
+      Entry entry = m_pending.get(messageId);
+      if (entry != null) {
+        entry.m_emitTime = System.currentTimeMillis();
+        entry.m_replays++;
+        m_replayed.incr();
+        return messageId;
+      }
+    }
+    return null;
+  }
+
+  public Tweet getTweet(Long messageId) {
+    Entry entry = m_pending.get(messageId);
+    return (entry != null) ? entry.m_tweet : null;
+  }
+
+  /**
+   * @return Returns the intended send time in ms of the tweet or null
+   */
+  public Long getIntendedTime(Long messageId) {
+    Entry entry = m_pending.get(messageId);
+    return (entry != null) ? entry.m_intendedTime : null;
+  }
+
+  public void ack(Object messageId) {
+    Entry entry = m_pending.remove(messageId);
+    if (entry != null) {
+      long now = System.currentTimeMillis();
+      m_completeLatency.update(now - entry.m_emitTime);
+      m_intendedLatency.update(now - entry.m_intendedTime);
+      m_acked.incr();
+    }
+  }
+
+  public void fail(Object messageId) {
+    Entry entry = m_pending.get(messageId);
+    if (entry == null) {
+      return;
+    }
+    m_failedCount.incr();
+    if ((m_maxReplays >= 0) && (entry.m_replays >= m_maxReplays)) {
+      m_pending.remove(messageId);
+      m_abandoned.incr();
+      LOG.error("Tweet " + entry.m_tweet.getId() + " failed after "
+          + entry.m_replays + " replays");
+    } else {
+      m_failed.addLast((Long) messageId);
+    }
+  }
+
+}
@@ -0,0 +1,220 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.illecker.sentistorm.spout;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.LinkedList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import at.illecker.sentistorm.commons.Tweet;
+
+/**
+ * FIFO ring of tweets on disk, split into memory-mapped segment files of a
+ * fixed size.
+ *
+ * Records are appended to the last segment in use and read from the first
+ * one, a completely read segment is reused for later writes. The ring is full
+ * if all segments are in use. It is not thread-safe and not persistent, the
+ * segment files are deleted by close.
+ */
+public class SpillRing {
+  private static final Logger LOG = LoggerFactory.getLogger(SpillRing.class);
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  // record: length of text, id, text
+  private static final int RECORD_HEADER_SIZE = 4 + 8;
+  // marks the end of the records of a segment
+  private static final int END_OF_SEGMENT = -1;
+
+  private final File m_directory;
+  private final int m_segmentSize;
+  private final MappedByteBuffer[] m_segments;
+  private final File[] m_segmentFiles;
+  // segments in use, the first one is read and the last one is written
+  private final LinkedList<Integer> m_usedSegments = new LinkedList<Integer>();
+  private final LinkedList<Integer> m_freeSegments = new LinkedList<Integer>();
+  private int m_readPosition = 0;
+  private int m_writePosition = 0;
+  private long m_size = 0;
+
+  /**
+   * @param directory the directory of the segment files
+   * @param segmentSize the size of a segment in bytes
+   * @param maxSegments the max number of segments
+   */
+  public SpillRing(File directory, int segmentSize, int maxSegments) {
+    if ((segmentSize <= RECORD_HEADER_SIZE) || (maxSegments < 1)) {
+      LOG.error("Invalid spill ring size: " + maxSegments + " segments of "
+          + segmentSize + " bytes");
+      throw new RuntimeException();
+    }
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      LOG.error("Could not create spill directory: " + directory);
+      throw new RuntimeException();
+    }
+    m_directory = directory;
+    m_segmentSize = segmentSize;
+    m_segments = new MappedByteBuffer[maxSegments];
+    m_segmentFiles = new File[maxSegments];
+    for (int i = 0; i < maxSegments; i++) {
+      m_freeSegments.add(i);
+    }
+  }
+
+  /**
+   * @return Returns the number of tweets within the ring
+   */
+  public long size() {
+    return m_size;
+  }
+
+  public boolean isEmpty() {
+    return m_size == 0;
+  }
+
+  /**
+   * Appends a tweet to the ring.
+   *
+   * @return Returns false if the ring is full or the tweet exceeds a segment
+   */
+  public boolean offer(Tweet tweet) {
+    byte[] text = tweet.getText().getBytes(UTF8);
+    int recordSize = RECORD_HEADER_SIZE + text.length;
+    if (recordSize > m_segmentSize) {
+      return false;
+    }
+
+    if (m_usedSegments.isEmpty()
+        || (m_writePosition + recordSize > m_segmentSize)) {
+      if (m_freeSegments.isEmpty()) {
+        return false;
+      }
+      if (!m_usedSegments.isEmpty()) {
+        // close the current segment
+        MappedByteBuffer segment = m_segments[m_usedSegments.getLast()];
+        if (m_writePosition + 4 <= m_segmentSize) {
+          segment.putInt(m_writePosition, END_OF_SEGMENT);
+        }
+      }
+      m_usedSegments.addLast(mapSegment(m_freeSegments.removeFirst()));
+      m_writePosition = 0;
+    }
+
+    MappedByteBuffer segment = m_segments[m_usedSegments.getLast()];
+    segment.putInt(m_writePosition, text.length);
+    segment.putLong(m_writePosition + 4, tweet.getId());
+    ByteBuffer record = segment.duplicate();
+    record.position(m_writePosition + RECORD_HEADER_SIZE);
+    record.put(text);
+    m_writePosition += recordSize;
+    m_size++;
+    return true;
+  }
+
+  /**
+   * Removes the oldest tweet of the ring.
+   *
+   * @return Returns the tweet or null if the ring is empty
+   */
+  public Tweet poll() {
+    if (m_size == 0) {
+      return null;
+    }
+
+    MappedByteBuffer segment = m_segments[m_usedSegments.getFirst()];
+    if ((m_usedSegments.size() > 1)
+        && ((m_readPosition + 4 > m_segmentSize) || (segment
+            .getInt(m_readPosition) == END_OF_SEGMENT))) {
+      // continue with the next segment and reuse the read one
+      m_freeSegments.addLast(m_usedSegments.removeFirst());
+      segment = m_segments[m_usedSegments.getFirst()];
+      m_readPosition = 0;
+    }
+
+    int length = segment.getInt(m_readPosition);
+    long id = segment.getLong(m_readPosition + 4);
+    byte[] text = new byte[length];
+    ByteBuffer record = segment.duplicate();
+    record.position(m_readPosition + RECORD_HEADER_SIZE);
+    record.get(text);
+    m_readPosition += RECORD_HEADER_SIZE + length;
+    m_size--;
+
+    if (m_size == 0) {
+      // empty, start again with all segments free
+      m_usedSegments.clear();
+      m_freeSegments.clear();
+      for (int i = 0; i < m_segments.length; i++) {
+        m_freeSegments.add(i);
+      }
+      m_readPosition = 0;
+      m_writePosition = 0;
+    }
+    return new Tweet(id, new String(text, UTF8));
+  }
+
+  /**
+   * Deletes the segment files, the mapped memory is released by the garbage
+   * collection.
+   */
+  public void close() {
+    for (int i = 0; i < m_segmentFiles.length; i++) {
+      m_segments[i] = null;
+      if ((m_segmentFiles[i] != null) && !m_segmentFiles[i].delete()) {
+        m_segmentFiles[i].deleteOnExit();
+      }
+    }
+    m_usedSegments.clear();
+    m_size = 0;
+  }
+
+  private int mapSegment(int index) {
+    if (m_segments[index] == null) {
+      RandomAccessFile raf = null;
+      try {
+        File file = File.createTempFile("spill-" + index + "-", ".seg",
+            m_directory);
+        file.deleteOnExit();
+        raf = new RandomAccessFile(file, "rw");
+        raf.setLength(m_segmentSize);
+        m_segments[index] = raf.getChannel().map(
+            FileChannel.MapMode.READ_WRITE, 0, m_segmentSize);
+        m_segmentFiles[index] = file;
+        LOG.info("Mapped spill segment " + file);
+      } catch (IOException e) {
+        LOG.error("IOException: " + e.getMessage());
+        throw new RuntimeException(e);
+      } finally {
+        if (raf != null) {
+          try {
+            raf.close();
+          } catch (IOException ignore) {
+          }
+        }
+      }
+    }
+    return index;
+  }
+
+}
@@ -16,8 +16,11 @@
  */
 package at.illecker.sentistorm.spout;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.LinkedBlockingQueue;
 
 import twitter4j.FilterQuery;
 import twitter4j.StallWarning;
@@ -28,8 +31,11 @@ import twitter4j.TwitterStream;
 import twitter4j.TwitterStreamFactory;
 import twitter4j.auth.AccessToken;
 import twitter4j.conf.ConfigurationBuilder;
-import at.illecker.sentistorm.commons.util.TimeUtils;
+import at.illecker.sentistorm.commons.ReadinessGate;
+import at.illecker.sentistorm.commons.StartupLoader;
+import at.illecker.sentistorm.commons.Tweet;
 import backtype.storm.Config;
+import backtype.storm.metric.api.IMetric;
 import backtype.storm.spout.SpoutOutputCollector;
 import backtype.storm.task.TopologyContext;
 import backtype.storm.topology.OutputFieldsDeclarer;
@@ -39,11 +45,30 @@ import backtype.storm.tuple.Values;
 
 public class TwitterStreamSpout extends BaseRichSpout {
   public static final String ID = "twitter-stream-spout";
+  public static final String CONF_STARTUP_TIMEOUT_MS = ID
+      + ".startup.timeout.ms";
+  public static final long DEFAULT_STARTUP_TIMEOUT_MS = 300000;
   public static final String CONF_STARTUP_SLEEP_MS = ID + ".startup.sleep.ms";
+  public static final long DEFAULT_STARTUP_SLEEP_MS = 20000;
+  public static final String CONF_BUFFER_CAPACITY = ID + ".buffer.capacity";
+  public static final String CONF_BATCH_SIZE = ID + ".batch.size";
+  public static final String CONF_SPILL_DIR = ID + ".spill.dir";
+  public static final String CONF_SPILL_SEGMENT_MB = ID + ".spill.segment.mb";
+  public static final String CONF_SPILL_SEGMENTS = ID + ".spill.segments";
+  public static final String CONF_REPLAY_FILE = ID + ".replay.file";
+  public static final String CONF_REPLAY_TWEETS_PER_SEC = ID
+      + ".replay.tweets.per.sec";
+  public static final String CONF_REPLAY_LOOP = ID + ".replay.loop";
+  public static final String CONF_RELIABLE = ID + ".reliable";
+  public static final String CONF_MAX_REPLAYS = ID + ".max.replays";
   private static final long serialVersionUID = -4657730220755697034L;
   private SpoutOutputCollector m_collector;
-  private LinkedBlockingQueue<Status> m_tweetsQueue = null;
-  private TwitterStream m_twitterStream;
+  private IngestBuffer m_ingestBuffer = null;
+  private int m_batchSize;
+  private List<Tweet> m_batch;
+  private TwitterStream m_twitterStream = null;
+  private FileReplaySource m_replaySource = null;
+  private PendingTuples m_pendingTuples = null;
   private String m_consumerKey;
   private String m_consumerSecret;
   private String m_accessToken;
@@ -72,13 +97,84 @@ public class TwitterStreamSpout extends BaseRichSpout {
   public void open(Map config, TopologyContext context,
       SpoutOutputCollector collector) {
     m_collector = collector;
-    m_tweetsQueue = new LinkedBlockingQueue<Status>(1000);
 
-    // Optional startup sleep to finish bolt preparation
-    // before spout starts emitting
+    // Bounded ingest buffer, its overflow spills to disk
+    int capacity = getInt(config, CONF_BUFFER_CAPACITY, 1000);
+    m_batchSize = getInt(config, CONF_BATCH_SIZE, 100);
+    m_batch = new ArrayList<Tweet>(m_batchSize);
+    SpillRing spillRing = null;
+    int spillSegments = getInt(config, CONF_SPILL_SEGMENTS, 8);
+    if (spillSegments > 0) {
+      String spillDir = (String) config.get(CONF_SPILL_DIR);
+      if (spillDir == null) {
+        spillDir = System.getProperty("java.io.tmpdir") + File.separator
+            + "sentistorm-spill";
+      }
+      spillRing = new SpillRing(new File(spillDir, context.getStormId() + "-"
+          + context.getThisTaskId()), getInt(config, CONF_SPILL_SEGMENT_MB, 16)
+          * 1024 * 1024, spillSegments);
+    }
+    m_ingestBuffer = new IngestBuffer(capacity, spillRing);
+
+    // Report depth and overflow of the ingest buffer
+    final IngestBuffer ingestBuffer = m_ingestBuffer;
+    context.registerMetric("ingest-buffer", new IMetric() {
+      @Override
+      public Object getValueAndReset() {
+        Map<String, Long> values = new HashMap<String, Long>();
+        values.put("depth", ingestBuffer.getDepth());
+        values.put("spill.depth", ingestBuffer.getSpillDepth());
+        values.put("received", ingestBuffer.getReceived());
+        values.put("spilled", ingestBuffer.getSpilled());
+        values.put("dropped", ingestBuffer.getDropped());
+        return values;
+      }
+    }, 60);
+
+    // Optional reliable mode, tweets are emitted with message ids and failed
+    // tweets are replayed
+    boolean reliable = false;
+    if (config.get(CONF_RELIABLE) != null) {
+      reliable = (Boolean) config.get(CONF_RELIABLE);
+    }
+    if (reliable) {
+      m_pendingTuples = new PendingTuples(getInt(config,
+          Config.TOPOLOGY_MAX_SPOUT_PENDING, PendingTuples.DEFAULT_MAX_PENDING),
+          getInt(config, CONF_MAX_REPLAYS, 3));
+      m_pendingTuples.registerMetrics(context, 60);
+    }
+
+    // Start loading the shared resources of the worker and wait until all
+    // downstream bolts of the worker finished their preparation, bolts of
+    // other workers are given the startup sleep
+    StartupLoader.start();
+    long startupTimeoutMs = DEFAULT_STARTUP_TIMEOUT_MS;
+    if (config.get(CONF_STARTUP_TIMEOUT_MS) != null) {
+      startupTimeoutMs = ((Number) config.get(CONF_STARTUP_TIMEOUT_MS))
+          .longValue();
+    }
+    long startupSleepMs = DEFAULT_STARTUP_SLEEP_MS;
     if (config.get(CONF_STARTUP_SLEEP_MS) != null) {
-      long startupSleepMillis = (Long) config.get(CONF_STARTUP_SLEEP_MS);
-      TimeUtils.sleepMillis(startupSleepMillis);
+      startupSleepMs = ((Number) config.get(CONF_STARTUP_SLEEP_MS))
+          .longValue();
+    }
+    ReadinessGate.awaitDownstream(context, startupTimeoutMs, startupSleepMs);
+
+    // Replay a local file instead of the live stream
+    String replayFile = (String) config.get(CONF_REPLAY_FILE);
+    if (replayFile != null) {
+      long tweetsPerSecond = 0;
+      if (config.get(CONF_REPLAY_TWEETS_PER_SEC) != null) {
+        tweetsPerSecond = ((Number) config.get(CONF_REPLAY_TWEETS_PER_SEC))
+            .longValue();
+      }
+      boolean loop = false;
+      if (config.get(CONF_REPLAY_LOOP) != null) {
+        loop = (Boolean) config.get(CONF_REPLAY_LOOP);
+      }
+      m_replaySource = new FileReplaySource(replayFile, tweetsPerSecond, loop);
+      m_replaySource.start(m_ingestBuffer);
+      return;
     }
 
     TwitterStream twitterStream = new TwitterStreamFactory(
@@ -89,7 +185,8 @@ public class TwitterStreamSpout extends BaseRichSpout {
     twitterStream.addListener(new StatusListener() {
       @Override
       public void onStatus(Status status) {
-        m_tweetsQueue.offer(status); // add tweet into queue
+        // add tweet into buffer
+        m_ingestBuffer.offer(new Tweet(status.getId(), status.getText()));
       }
 
       @Override
@@ -133,22 +230,53 @@ public class TwitterStreamSpout extends BaseRichSpout {
     tweetFilterQuery.language(new String[] { m_filterLanguage });
 
     twitterStream.filter(tweetFilterQuery);
+    m_twitterStream = twitterStream;
   }
 
   @Override
   public void nextTuple() {
-    Status tweet = m_tweetsQueue.poll();
-    if (tweet == null) {
-      TimeUtils.sleepMillis(50); // sleep 50 ms
-    } else {
-      // Emit tweet
-      m_collector.emit(new Values(tweet.getId(), tweet.getText(), null));
+    if (m_pendingTuples == null) {
+      // Emit a batch of buffered tweets, an empty batch lets the spout wait
+      // strategy of Storm back off
+      m_ingestBuffer.drainTo(m_batch, m_batchSize);
+      for (Tweet tweet : m_batch) {
+        m_collector.emit(new Values(tweet.getId(), tweet.getText(), null));
+      }
+      m_batch.clear();
+      return;
+    }
+
+    // Replay failed tweets first
+    int emitted = 0;
+    Long messageId;
+    while ((emitted < m_batchSize)
+        && ((messageId = m_pendingTuples.pollReplay()) != null)) {
+      Tweet tweet = m_pendingTuples.getTweet(messageId);
+      m_collector.emit(new Values(tweet.getId(), tweet.getText(), null),
+          messageId);
+      emitted++;
+    }
+
+    // Emit new tweets as long as the pending map is not full, otherwise they
+    // stay within the ingest buffer
+    m_ingestBuffer.drainTo(m_batch, Math.min(m_batchSize - emitted,
+        m_pendingTuples.remainingCapacity()));
+    for (Tweet tweet : m_batch) {
+      m_collector.emit(new Values(tweet.getId(), tweet.getText(), null),
+          m_pendingTuples.add(tweet));
     }
+    m_batch.clear();
   }
 
   @Override
   public void close() {
-    m_twitterStream.shutdown();
+    if (m_twitterStream != null) {
+      m_twitterStream.shutdown();
+    }
+    if (m_replaySource != null) {
+      m_replaySource.stop();
+    }
+    m_ingestBuffer.close();
   }
 
   @Override
@@ -158,11 +286,22 @@ public class TwitterStreamSpout extends BaseRichSpout {
     return ret;
   }
 
+  private static int getInt(Map config, String key, int defaultValue) {
+    Object value = config.get(key);
+    return (value != null) ? ((Number) value).intValue() : defaultValue;
+  }
+
   @Override
   public void ack(Object id) {
+    if (m_pendingTuples != null) {
+      m_pendingTuples.ack(id);
+    }
   }
 
   @Override
   public void fail(Object id) {
+    if (m_pendingTuples != null) {
+      m_pendingTuples.fail(id);
+    }
   }
 }